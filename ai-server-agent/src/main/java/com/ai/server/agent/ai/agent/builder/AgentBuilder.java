@@ -10,8 +10,6 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -217,30 +215,18 @@ public class AgentBuilder<T extends BaseAgent<?>> {
 
     /**
      * 构建Agent实例
+     * 构造方法和各注入方式按Agent类解析一次后缓存，重复构建同一类Agent时不再反射查找
      * @param promptManager PromptManager实例
      * @return Agent实例
      */
+    @SuppressWarnings("unchecked")
     public T build(PromptManager promptManager) {
         try {
-            T agent;
-            
+            AgentConstructionPlan plan = AgentConstructionPlan.of(agentClass);
+
             // 根据构造方法参数创建Agent实例
-            if (StrUtil.isNotBlank(agentName)) {
-                // 使用带有系统提示词类型和PromptManager的构造方法
-                try {
-                    // 优先尝试三个参数的构造方法（ChatClient, String, PromptManager）
-                    // 传递agentName作为systemPromptType，用于从PromptManager获取模板
-                    agent = agentClass.getConstructor(ChatClient.class, String.class, PromptManager.class)
-                            .newInstance(chatClient, agentName, promptManager);
-                } catch (NoSuchMethodException e) {
-                    // 如果没有三个参数的构造方法，尝试两个参数的构造方法
-                    agent = agentClass.getConstructor(ChatClient.class, String.class)
-                            .newInstance(chatClient, agentName);
-                }
-            } else {
-                // 使用只有ChatClient的构造方法
-                agent = agentClass.getConstructor(ChatClient.class).newInstance(chatClient);
-            }
+            // 有Agent名称时传递agentName作为systemPromptType，用于从PromptManager获取模板
+            T agent = (T) plan.newInstance(chatClient, agentName, promptManager);
 
             // 设置默认提示词变量
             if (!defaultPromptVariables.isEmpty()) {
@@ -254,123 +240,59 @@ public class AgentBuilder<T extends BaseAgent<?>> {
                 agent.setChatMemory(chatMemory);
             }
 
-            // 注入AiGlobalSseEmitterManager
+            // 注入AiGlobalSseEmitterManager，优先通过setSseEmitterManager方法，没有时直接设置字段
             if (this.sseEmitterManager != null) {
-                // 尝试通过setSseEmitterManager方法注入
-                String setMethodName = "setSseEmitterManager";
                 try {
-                    Method setMethod = agent.getClass().getMethod(setMethodName, this.sseEmitterManager.getClass());
-                    setMethod.invoke(agent, this.sseEmitterManager);
-                    log.info("Successfully injected AiGlobalSseEmitterManager into agent: {}", agent.getClass().getSimpleName());
-                } catch (NoSuchMethodException e) {
-                    // 如果没有setSseEmitterManager方法，尝试直接设置字段
-                    try {
-                        Field sseEmitterManagerField = agent.getClass().getDeclaredField("sseEmitterManager");
-                        sseEmitterManagerField.setAccessible(true);
-                        sseEmitterManagerField.set(agent, this.sseEmitterManager);
-                        log.info("Successfully injected AiGlobalSseEmitterManager via field into agent: {}", agent.getClass().getSimpleName());
-                    } catch (NoSuchFieldException fieldEx) {
-                        // 如果没有sseEmitterManager字段，跳过注入
-                        log.info("Agent does not support AiGlobalSseEmitterManager injection: {}", fieldEx.getMessage());
+                    if (plan.injectSseEmitterManager(agent, this.sseEmitterManager)) {
+                        log.debug("Injected AiGlobalSseEmitterManager into agent: {}", agent.getClass().getSimpleName());
+                    } else {
+                        log.info("Agent does not support AiGlobalSseEmitterManager injection: {}", agent.getClass().getSimpleName());
                     }
-                } catch (Exception e) {
+                } catch (Throwable e) {
                     log.error("Failed to inject AiGlobalSseEmitterManager into agent: {}", agent.getClass().getSimpleName(), e);
                 }
             }
 
-            // 通过反射注入工具和依赖服务
-            injectToolsAndDependencies(agent);
+            // 注入工具和依赖服务
+            injectToolsAndDependencies(plan, agent);
 
             // 设置Agent名称和类型（如果Agent支持）
-            setAgentNameAndType(agent);
+            setAgentNameAndType(plan, agent);
 
             return agent;
-        } catch (Exception e) {
+        } catch (Throwable e) {
             throw new RuntimeException("Failed to build agent: " + e.getMessage(), e);
         }
     }
 
     /**
-     * 通过反射注入工具和依赖服务
+     * 注入工具和依赖服务
+     * @param plan 构建计划
      * @param agent Agent实例
      */
-    private void injectToolsAndDependencies(T agent) throws Exception {
-        // 注入工具
-        if (!tools.isEmpty()) {
-            try {
-                // 尝试传统的setTools方法注入
-                Method setToolsMethod = agent.getClass().getMethod("setTools", List.class);
-                setToolsMethod.invoke(agent, tools);
-            } catch (NoSuchMethodException e) {
-                // 如果Agent没有setTools方法，检查是否是ChatClient类型
-                // 针对ChatClient及其实现类，使用tools方法注入
-                try {
-                    // 检查agent是否有client字段，可能是使用ChatClient的代理类
-                    Field clientField = agent.getClass().getDeclaredField("client");
-                    clientField.setAccessible(true);
-                    Object client = clientField.get(agent);
-                    
-                    // 如果是ChatClient类型，直接在ChatClient上添加工具
-                    if (client instanceof ChatClient) {
-                        ChatClient chatClient = (ChatClient) client;
-                        // 使用mutate()方法创建新的ChatClient构建器并添加工具
-                        ChatClient.Builder builder = chatClient.mutate();
-                        // 调用defaultTools方法添加工具数组
-                        builder = builder.defaultTools(tools.toArray(new Object[0]));
-                        // 构建新的ChatClient并设置回agent
-                        ChatClient updatedChatClient = builder.build();
-                        clientField.set(agent, updatedChatClient);
-                        log.info("Successfully injected tools into ChatClient for agent: {}", agent.getClass().getSimpleName());
-                    } else {
-                        log.info("Agent does not support tools injection: {}", e.getMessage());
-                    }
-                } catch (NoSuchFieldException fieldEx) {
-                    // 如果没有client字段，跳过工具注入
-                    log.info("Agent does not support tools injection: {}", fieldEx.getMessage());
-                }
-            }
+    private void injectToolsAndDependencies(AgentConstructionPlan plan, T agent) throws Throwable {
+        // 注入工具，没有setTools方法时在client字段的ChatClient上添加默认工具
+        if (!tools.isEmpty() && !plan.injectTools(agent, tools)) {
+            log.info("Agent does not support tools injection: {}", agent.getClass().getSimpleName());
         }
 
-        // 注入依赖服务
+        // 注入依赖服务，Agent没有对应的set方法时跳过该依赖
         for (Map.Entry<String, Object> entry : dependencies.entrySet()) {
-            String dependencyName = entry.getKey();
-            Object dependency = entry.getValue();
-            
-            // 尝试查找set方法
-            String methodName = "set" + StrUtil.upperFirst(dependencyName);
-            try {
-                Method setMethod = agent.getClass().getMethod(methodName, dependency.getClass());
-                setMethod.invoke(agent, dependency);
-            } catch (NoSuchMethodException e) {
-                // 如果Agent没有对应的set方法，跳过该依赖注入
-                // 可以根据需要记录日志或抛出异常
-            }
+            plan.injectDependency(agent, entry.getKey(), entry.getValue());
         }
     }
 
     /**
      * 设置Agent名称和类型（如果Agent支持）
+     * @param plan 构建计划
      * @param agent Agent实例
      */
-    private void setAgentNameAndType(T agent) throws Exception {
-        // 设置Agent名称
+    private void setAgentNameAndType(AgentConstructionPlan plan, T agent) throws Throwable {
         if (agentName != null) {
-            try {
-                Method setAgentNameMethod = agent.getClass().getMethod("setAgentName", String.class);
-                setAgentNameMethod.invoke(agent, agentName);
-            } catch (NoSuchMethodException e) {
-                // 如果Agent没有setAgentName方法，跳过名称设置
-            }
+            plan.injectAgentName(agent, agentName);
         }
-
-        // 设置Agent类型
         if (agentType != null) {
-            try {
-                Method setAgentTypeMethod = agent.getClass().getMethod("setAgentType", String.class);
-                setAgentTypeMethod.invoke(agent, agentType);
-            } catch (NoSuchMethodException e) {
-                // 如果Agent没有setAgentType方法，跳过类型设置
-            }
+            plan.injectAgentType(agent, agentType);
         }
     }
 
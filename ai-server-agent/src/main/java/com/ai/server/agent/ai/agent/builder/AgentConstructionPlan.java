@@ -0,0 +1,220 @@
+package com.ai.server.agent.ai.agent.builder;
+
+import cn.hutool.core.util.StrUtil;
+import com.ai.server.agent.ai.agent.manager.PromptManager;
+import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agent类的构建计划，首次构建某个Agent类时解析构造方法、setter和字段并转换为MethodHandle，之后的构建直接复用
+ * 不支持的注入方式解析为null，构建时跳过，与逐次反射查找时的行为一致
+ */
+@Slf4j
+final class AgentConstructionPlan {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // 统一的调用签名，调用时使用invokeExact，避免每次调用时的类型适配
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final Map<Class<?>, AgentConstructionPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final Class<?> agentClass;
+
+    // 构造方法：(ChatClient, String, PromptManager)、(ChatClient, String)、(ChatClient)
+    private final MethodHandle promptManagerConstructor;
+    private final MethodHandle promptTypeConstructor;
+    private final MethodHandle chatClientConstructor;
+
+    // SSE管理器优先通过setter注入，没有setter时直接写字段
+    private final MethodHandle sseEmitterManagerSetter;
+
+    // 工具优先通过setTools注入，没有时读写client字段上的ChatClient
+    private final MethodHandle toolsSetter;
+    private final MethodHandle clientGetter;
+    private final MethodHandle clientSetter;
+
+    private final MethodHandle agentNameSetter;
+    private final MethodHandle agentTypeSetter;
+
+    // 依赖注入的setter，key为依赖名称和依赖的实际类型，没有对应setter时为空
+    private final Map<String, Optional<MethodHandle>> dependencySetters = new ConcurrentHashMap<>();
+
+    private AgentConstructionPlan(Class<?> agentClass) {
+        this.agentClass = agentClass;
+        this.promptManagerConstructor = constructor(agentClass, ChatClient.class, String.class, PromptManager.class);
+        this.promptTypeConstructor = constructor(agentClass, ChatClient.class, String.class);
+        this.chatClientConstructor = constructor(agentClass, ChatClient.class);
+        MethodHandle sseSetter = setter(agentClass, "setSseEmitterManager", AiGlobalSseEmitterManager.class);
+        this.sseEmitterManagerSetter = sseSetter != null ? sseSetter : fieldSetter(agentClass, "sseEmitterManager");
+        this.toolsSetter = setter(agentClass, "setTools", List.class);
+        this.clientGetter = toolsSetter == null ? fieldGetter(agentClass, "client") : null;
+        this.clientSetter = toolsSetter == null ? fieldSetter(agentClass, "client") : null;
+        this.agentNameSetter = setter(agentClass, "setAgentName", String.class);
+        this.agentTypeSetter = setter(agentClass, "setAgentType", String.class);
+    }
+
+    /**
+     * 获取Agent类的构建计划，每个类只解析一次
+     * @param agentClass Agent类
+     * @return 构建计划
+     */
+    static AgentConstructionPlan of(Class<?> agentClass) {
+        return PLANS.computeIfAbsent(agentClass, AgentConstructionPlan::new);
+    }
+
+    /**
+     * 创建Agent实例
+     * 有Agent名称时优先使用(ChatClient, String, PromptManager)构造方法，其次(ChatClient, String)，否则使用(ChatClient)
+     */
+    Object newInstance(ChatClient chatClient, String agentName, PromptManager promptManager) throws Throwable {
+        if (StrUtil.isNotBlank(agentName)) {
+            if (promptManagerConstructor != null) {
+                return promptManagerConstructor.invokeExact((Object) chatClient, (Object) agentName, (Object) promptManager);
+            }
+            return require(promptTypeConstructor, "(ChatClient, String)")
+                    .invokeExact((Object) chatClient, (Object) agentName);
+        }
+        return require(chatClientConstructor, "(ChatClient)").invokeExact((Object) chatClient);
+    }
+
+    /**
+     * 注入SSE管理器
+     * @return 是否支持注入
+     */
+    boolean injectSseEmitterManager(Object agent, AiGlobalSseEmitterManager sseEmitterManager) throws Throwable {
+        return invokeSetter(sseEmitterManagerSetter, agent, sseEmitterManager);
+    }
+
+    /**
+     * 注入工具，没有setTools方法时在client字段的ChatClient上添加默认工具
+     * @return 是否支持注入
+     */
+    boolean injectTools(Object agent, List<Object> tools) throws Throwable {
+        if (toolsSetter != null) {
+            toolsSetter.invokeExact(agent, (Object) tools);
+            return true;
+        }
+        if (clientGetter == null || clientSetter == null) {
+            return false;
+        }
+        Object client = clientGetter.invokeExact(agent);
+        if (!(client instanceof ChatClient chatClient)) {
+            return false;
+        }
+        ChatClient updatedChatClient = chatClient.mutate().defaultTools(tools.toArray(new Object[0])).build();
+        clientSetter.invokeExact(agent, (Object) updatedChatClient);
+        return true;
+    }
+
+    /**
+     * 通过set+依赖名称的方法注入依赖，setter参数类型需与依赖的实际类型一致
+     * @return 是否支持注入
+     */
+    boolean injectDependency(Object agent, String dependencyName, Object dependency) throws Throwable {
+        String methodName = "set" + StrUtil.upperFirst(dependencyName);
+        Class<?> dependencyType = dependency.getClass();
+        MethodHandle setter = dependencySetters.computeIfAbsent(methodName + "#" + dependencyType.getName(),
+                key -> Optional.ofNullable(setter(agentClass, methodName, dependencyType))).orElse(null);
+        return invokeSetter(setter, agent, dependency);
+    }
+
+    boolean injectAgentName(Object agent, String agentName) throws Throwable {
+        return invokeSetter(agentNameSetter, agent, agentName);
+    }
+
+    boolean injectAgentType(Object agent, String agentType) throws Throwable {
+        return invokeSetter(agentTypeSetter, agent, agentType);
+    }
+
+    private static boolean invokeSetter(MethodHandle setter, Object target, Object value) throws Throwable {
+        if (setter == null) {
+            return false;
+        }
+        setter.invokeExact(target, value);
+        return true;
+    }
+
+    private MethodHandle require(MethodHandle constructor, String signature) {
+        if (constructor == null) {
+            throw new IllegalStateException("No constructor " + signature + " found on " + agentClass.getName());
+        }
+        return constructor;
+    }
+
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(type.getConstructor(parameterTypes));
+            return handle.asType(MethodType.genericMethodType(parameterTypes.length));
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            log.warn("Constructor of {} is not accessible: {}", type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static MethodHandle setter(Class<?> type, String methodName, Class<?> parameterType) {
+        try {
+            return LOOKUP.unreflect(type.getMethod(methodName, parameterType)).asType(SETTER_TYPE);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            log.warn("Method {} of {} is not accessible: {}", methodName, type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static MethodHandle fieldSetter(Class<?> type, String fieldName) {
+        Field field = declaredField(type, fieldName);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            log.warn("Field {} of {} is not writable: {}", fieldName, type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static MethodHandle fieldGetter(Class<?> type, String fieldName) {
+        Field field = declaredField(type, fieldName);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            log.warn("Field {} of {} is not readable: {}", fieldName, type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 查找Agent类自身声明的字段，与原先getDeclaredField的查找范围一致
+     */
+    private static Field declaredField(Class<?> type, String fieldName) {
+        try {
+            Field field = type.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            return null;
+        } catch (RuntimeException e) {
+            log.warn("Field {} of {} is not accessible: {}", fieldName, type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.ai.server.agent.ai.agent.core;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 import org.springframework.ai.chat.messages.UserMessage;
+import reactor.core.publisher.Flux;
 
 import java.util.Map;
 
@@ -20,6 +23,30 @@ public interface Agent<T> {
 
     void chatStream(Request request) throws Exception;
 
+    /**
+     * 响应式流式对话，直接返回模型输出的内容流，由调用方订阅，不经过SSE管理器推送
+     * @param request 请求对象
+     * @return 模型输出的内容片段
+     */
+    Flux<String> chatFlux(Request request);
+
+    /**
+     * 推测执行用的流式对话，读取但不写入聊天记忆，结果被采用后需调用commitSpeculation写入本轮对话
+     * @param request 请求对象
+     * @return 模型输出的内容片段，不支持推测执行时返回null
+     */
+    default Flux<String> speculativeFlux(Request request) {
+        return null;
+    }
+
+    /**
+     * 提交被采用的推测执行结果，将本轮用户消息和完整回答写入聊天记忆
+     * @param request 推测执行时的请求对象
+     * @param answer 完整回答
+     */
+    default void commitSpeculation(Request request, String answer) {
+    }
+
     @Data
     @SuperBuilder
     @AllArgsConstructor
@@ -28,6 +55,28 @@ public interface Agent<T> {
         private Map<String,Object> context;
         private Boolean isStreaming;
         private String sessionId;
+
+        /**
+         * 流式任务完全结束（完成、出错或取消）时的回调，由调用方设置
+         * chatStream的实现需在模型响应流结束时通过fireTerminate触发
+         */
+        @EqualsAndHashCode.Exclude
+        @ToString.Exclude
+        private Runnable onTerminate;
+
+        /**
+         * 触发结束回调，多次调用只执行一次
+         */
+        public void fireTerminate() {
+            Runnable callback;
+            synchronized (this) {
+                callback = onTerminate;
+                onTerminate = null;
+            }
+            if (callback != null) {
+                callback.run();
+            }
+        }
     }
     @Data
     @SuperBuilder
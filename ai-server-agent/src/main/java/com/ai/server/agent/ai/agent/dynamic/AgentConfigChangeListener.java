@@ -1,24 +1,31 @@
 package com.ai.server.agent.ai.agent.dynamic;
 
 import com.ai.server.agent.ai.agent.dynamic.repository.AgentConfigRepository;
+import com.ai.server.agent.ai.agent.dynamic.repository.ConfigTableWatermark;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.Date;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Agent配置变更监听器，用于检测配置变更并触发安全更新
- * 使用定时轮询机制，定期检查数据库中的配置是否发生变化
+ * 使用定时轮询机制，按各配置表的update_time水位增量检测变化：
+ * 空闲时每次轮询只执行一条水位查询，水位变化时只查询并重建发生变更的Agent
  */
 @Component
 @Slf4j
 public class AgentConfigChangeListener {
 
+    // 空表没有水位，有新记录时从该时间开始查询
+    private static final String EPOCH = "1970-01-01 00:00:00";
+
     @Autowired
     private DynamicAgentManager dynamicAgentManager;
 
@@ -26,92 +33,122 @@ public class AgentConfigChangeListener {
     private AgentConfigRepository agentConfigRepository;
 
     /**
-     * 本地配置版本缓存，key: agentName, value: 最后更新时间
+     * 上一次检查时各配置表的水位，key: 表名，首次检查前为null
      */
-    private final Map<String, Date> localConfigVersions = new ConcurrentHashMap<>();
+    private volatile Map<String, ConfigTableWatermark> watermarks;
 
     /**
      * 定时检查配置变更，每30秒执行一次
-     * 1. 获取所有启用的Agent配置
-     * 2. 对比本地缓存的配置版本
-     * 3. 如果配置变更，触发安全更新
+     * 1. 查询各配置表的最大更新时间和行数
+     * 2. 水位没有变化则直接返回
+     * 3. 行数或校验和变化说明有记录被新增或删除，删除不会留下更新时间，改为加载全部配置
+     * 4. 否则只有记录被修改，查询最大更新时间之后有更新的agent_id，只加载这些Agent的配置
+     * 5. 与当前运行的配置比较，实际发生变化的Agent才触发安全更新
      */
     @Scheduled(fixedDelay = 30000)
-    public void checkConfigChanges() {
-        log.info("Checking for agent config changes...");
+    public synchronized void checkConfigChanges() {
+        log.debug("Checking for agent config changes...");
 
         try {
-            // 获取所有启用的Agent配置
-            List<DynamicAgentConfig> latestConfigs = agentConfigRepository.findAllEnabledAgents();
-
-            for (DynamicAgentConfig config : latestConfigs) {
-                String agentName = config.getAgentName();
-                Date lastUpdateTime = getLastUpdateTime(config);
-                Date localVersion = localConfigVersions.get(agentName);
-                // 检查配置是否变更
-                if (isConfigChanged(localVersion, lastUpdateTime)) {
-                    log.info("Agent config changed: {}, updating...", agentName);
-                    // 触发安全更新
-                    dynamicAgentManager.safeReloadAgent(agentName);
-                    // 更新本地版本缓存
-                    localConfigVersions.put(agentName, lastUpdateTime);
-                    log.info("Agent config updated successfully: {}", agentName);
-                }
+            Map<String, ConfigTableWatermark> latest = new LinkedHashMap<>();
+            for (ConfigTableWatermark watermark : agentConfigRepository.findConfigWatermarks()) {
+                latest.put(watermark.getTableName(), watermark);
             }
 
-            // 处理已删除的Agent配置
-            cleanupDeletedAgents(latestConfigs);
+            Map<String, ConfigTableWatermark> previous = this.watermarks;
+            boolean reloaded = true;
+            if (previous == null) {
+                // 首次检查，与启动时加载的配置全量比较一次，之后按水位增量检测
+                reloaded = reloadChangedAgents(agentConfigRepository.findAllEnabledAgents());
+            } else if (latest.equals(previous)) {
+                return;
+            } else if (hasRowSetChanged(previous, latest)) {
+                log.info("Config rows inserted or deleted, comparing all agent configs");
+                reloaded = reloadChangedAgents(agentConfigRepository.findAllEnabledAgents());
+            } else {
+                Map<String, String> sinceByTable = advancedTables(previous, latest);
+                if (!sinceByTable.isEmpty()) {
+                    Set<String> agentIds = agentConfigRepository.findAgentIdsUpdatedSince(sinceByTable);
+                    log.info("Config tables updated: {}, changed agent ids: {}", sinceByTable.keySet(), agentIds);
+                    if (!agentIds.isEmpty()) {
+                        List<DynamicAgentConfig> configs = agentConfigRepository.findEnabledAgentsByIds(agentIds);
+                        if (configs.size() < agentIds.size()) {
+                            log.info("{} changed agent(s) are disabled or deleted, keeping current instances",
+                                    agentIds.size() - configs.size());
+                        }
+                        reloaded = reloadChangedAgents(configs);
+                    }
+                }
+            }
 
+            // 全部处理成功后才推进水位，失败时下次轮询重新检测
+            if (!reloaded) {
+                log.warn("Some agents failed to reload, keeping previous watermarks to retry on next check");
+                return;
+            }
+            this.watermarks = latest;
         } catch (Exception e) {
             log.error("Error checking for agent config changes: {}", e.getMessage(), e);
         }
     }
 
     /**
-     * 从配置中获取最后更新时间
-     * 由于DynamicAgentConfig没有直接包含updateTime字段，需要从数据库重新查询
-     * @param config Agent配置
-     * @return 最后更新时间
+     * 与当前运行的配置比较，只重建新增或实际发生变化的Agent
+     * 水位按秒比较且查询包含边界时间，同一秒内已处理过的Agent会再次查出，这里依靠配置比较过滤
+     * safeReloadAgent失败时保留旧实例而不抛出异常，以重新加载后的运行配置是否与最新配置一致判断是否成功
+     * @param latestConfigs 最新的Agent配置列表
+     * @return 全部Agent是否都已使用最新配置
      */
-    private Date getLastUpdateTime(DynamicAgentConfig config) {
-        // 这里需要从数据库查询配置的最后更新时间
-        // 由于DynamicAgentConfig没有包含updateTime字段，我们使用当前时间作为临时解决方案
-        // 实际实现中应该修改DynamicAgentConfig类，添加updateTime字段
-        return new Date();
+    private boolean reloadChangedAgents(List<DynamicAgentConfig> latestConfigs) {
+        boolean allReloaded = true;
+        for (DynamicAgentConfig config : latestConfigs) {
+            String agentName = config.getAgentName();
+            if (config.equals(dynamicAgentManager.getAgentConfig(agentName))) {
+                continue;
+            }
+            log.info("Agent config changed: {}, updating...", agentName);
+            dynamicAgentManager.safeReloadAgent(agentName);
+            if (config.equals(dynamicAgentManager.getAgentConfig(agentName))) {
+                log.info("Agent config updated successfully: {}", agentName);
+            } else {
+                log.warn("Agent config update failed or superseded: {}, will retry on next check", agentName);
+                allReloaded = false;
+            }
+        }
+        return allReloaded;
     }
 
     /**
-     * 检查配置是否发生变更
-     * @param localVersion 本地缓存的版本时间
-     * @param dbVersion 数据库中的版本时间
-     * @return 是否发生变更
+     * 是否有表新增或删除了记录
+     * 删除与新增同时发生时行数可能不变，新增的记录也可能使最大更新时间推进而掩盖删除，
+     * 因此行数或按agent_id计算的校验和任一变化都视为记录集合发生变化
      */
-    private boolean isConfigChanged(Date localVersion, Date dbVersion) {
-        if (localVersion == null) {
-            // 新配置，需要加载
-            return true;
-        }
-        if (dbVersion == null) {
-            // 数据库中没有配置，不需要更新
-            return false;
+    private boolean hasRowSetChanged(Map<String, ConfigTableWatermark> previous, Map<String, ConfigTableWatermark> latest) {
+        for (ConfigTableWatermark watermark : latest.values()) {
+            ConfigTableWatermark old = previous.get(watermark.getTableName());
+            if (old == null || watermark.getRowCount() != old.getRowCount()
+                    || watermark.getAgentChecksum() != old.getAgentChecksum()) {
+                return true;
+            }
         }
-        // 比较更新时间，数据库版本更新则需要更新
-        return dbVersion.after(localVersion);
+        return false;
     }
 
     /**
-     * 清理已删除的Agent配置
-     * @param latestConfigs 最新的Agent配置列表
+     * 找出最大更新时间推进的表
+     * @return 表名 -> 上一次的最大更新时间，作为增量查询的起始时间
      */
-    private void cleanupDeletedAgents(List<DynamicAgentConfig> latestConfigs) {
-        // 获取最新的Agent名称集合
-        Map<String, Boolean> latestAgentNames = new ConcurrentHashMap<>();
-        for (DynamicAgentConfig config : latestConfigs) {
-            latestAgentNames.put(config.getAgentName(), true);
+    private Map<String, String> advancedTables(Map<String, ConfigTableWatermark> previous,
+                                               Map<String, ConfigTableWatermark> latest) {
+        Map<String, String> sinceByTable = new LinkedHashMap<>();
+        for (ConfigTableWatermark watermark : latest.values()) {
+            ConfigTableWatermark old = previous.get(watermark.getTableName());
+            String since = old != null && old.getMaxUpdateTime() != null ? old.getMaxUpdateTime() : EPOCH;
+            if (watermark.getMaxUpdateTime() != null && !Objects.equals(watermark, old)) {
+                sinceByTable.put(watermark.getTableName(), since);
+            }
         }
-
-        // 清理本地缓存中不存在的Agent配置
-        localConfigVersions.keySet().removeIf(agentName -> !latestAgentNames.containsKey(agentName));
+        return sinceByTable;
     }
 
     /**
@@ -123,10 +160,11 @@ public class AgentConfigChangeListener {
     }
 
     /**
-     * 获取本地配置版本缓存
-     * @return 配置版本缓存
+     * 获取上一次检查时各配置表的水位
+     * @return 表名 -> 水位
      */
-    public Map<String, Date> getLocalConfigVersions() {
-        return localConfigVersions;
+    public Map<String, ConfigTableWatermark> getWatermarks() {
+        Map<String, ConfigTableWatermark> current = this.watermarks;
+        return current != null ? Collections.unmodifiableMap(current) : Collections.emptyMap();
     }
 }
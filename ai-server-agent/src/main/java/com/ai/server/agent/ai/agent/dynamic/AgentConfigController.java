@@ -2,6 +2,12 @@ package com.ai.server.agent.ai.agent.dynamic;
 
 import com.ai.server.agent.ai.agent.core.Agent;
 import com.ai.server.agent.ai.agent.dynamic.repository.AgentConfigRepository;
+import com.ai.server.agent.ai.common.cache.AgentResponseCache;
+import com.ai.server.agent.ai.common.data.TranscodeDictIndex;
+import com.ai.server.agent.ai.common.vector.SimilarQuestionIndex;
+import com.ai.server.agent.ai.strategy.classifier.IntentPreClassifierChain;
+import com.ai.server.agent.ai.strategy.classifier.IntentResultCache;
+import com.ai.server.agent.ai.strategy.context.IntentSpeculationStats;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,7 +15,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Agent配置变更API，用于手动触发Agent配置更新
@@ -28,6 +36,24 @@ public class AgentConfigController {
     @Autowired
     private AgentConfigRepository agentConfigRepository;
 
+    @Autowired
+    private IntentResultCache intentResultCache;
+
+    @Autowired
+    private IntentPreClassifierChain intentPreClassifierChain;
+
+    @Autowired
+    private IntentSpeculationStats intentSpeculationStats;
+
+    @Autowired
+    private AgentResponseCache agentResponseCache;
+
+    @Autowired
+    private SimilarQuestionIndex similarQuestionIndex;
+
+    @Autowired
+    private TranscodeDictIndex transcodeDictIndex;
+
     /**
      * 手动触发指定Agent的配置更新
      * @param agentName Agent名称
@@ -140,6 +166,47 @@ public class AgentConfigController {
         }
     }
 
+    /**
+     * 获取意图识别相关统计：结果缓存、本地预分类、推测执行和相似问题索引
+     * @return 统计信息
+     */
+    @GetMapping("/intent/metrics")
+    public ResponseEntity<Map<String, Object>> getIntentMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cache", intentResultCache.snapshot());
+        metrics.put("preClassifier", intentPreClassifierChain.snapshot());
+        metrics.put("speculation", intentSpeculationStats.snapshot());
+        metrics.put("similarQuestion", similarQuestionIndex.snapshot());
+        return ResponseEntity.ok(metrics);
+    }
+
+    /**
+     * 获取智能体回答缓存统计
+     * @return 统计信息
+     */
+    @GetMapping("/response-cache/metrics")
+    public ResponseEntity<Map<String, Object>> getResponseCacheMetrics() {
+        return ResponseEntity.ok(agentResponseCache.snapshot());
+    }
+
+    /**
+     * 获取转码字典内存索引状态
+     * @return 统计信息
+     */
+    @GetMapping("/transcode-dict/metrics")
+    public ResponseEntity<Map<String, Object>> getTranscodeDictMetrics() {
+        return ResponseEntity.ok(transcodeDictIndex.snapshot());
+    }
+
+    /**
+     * 获取启动时创建Agent的耗时报告
+     * @return 各阶段耗时及每个Agent的创建耗时
+     */
+    @GetMapping("/startup/report")
+    public ResponseEntity<Map<String, Object>> getStartupReport() {
+        return ResponseEntity.ok(dynamicAgentManager.getStartupReport());
+    }
+
     /**
      * Agent配置更新结果
      */
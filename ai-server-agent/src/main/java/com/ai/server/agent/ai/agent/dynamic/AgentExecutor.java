@@ -35,9 +35,9 @@ public class AgentExecutor {
         // 记录任务开始
         taskStatusManager.incrementTaskCount(agentName);
         
-        // 获取Agent实例
-        Agent<T> agent = agentManager.getAgent(agentName);
-        if (agent == null) {
+        // 获取Agent当前代次的引用，执行期间Agent被重新加载也继续使用该实例
+        AgentHandle handle = agentManager.acquireAgent(agentName);
+        if (handle == null) {
             log.error("Agent not found: {}", agentName);
             taskStatusManager.decrementTaskCount(agentName);
             throw new IllegalArgumentException("Agent not found: " + agentName);
@@ -45,12 +45,14 @@ public class AgentExecutor {
         
         try {
             // 执行任务
+            Agent<T> agent = handle.getAgent();
             return agent.chat(request, type);
         } catch (Exception e) {
             log.error("Failed to execute agent task: agentName={}, type={}", agentName, type, e);
             throw new RuntimeException("Failed to execute agent task: " + e.getMessage(), e);
         } finally {
             // 记录任务完成
+            handle.close();
             taskStatusManager.decrementTaskCount(agentName);
         }
     }
@@ -115,6 +117,7 @@ public class AgentExecutor {
     
     /**
      * 执行Agent流式聊天任务
+     * chatStream发起模型请求后即返回，任务计数和代次引用在响应流结束时才释放
      * @param agentName Agent名称
      * @param request Agent请求
      * @throws Exception 执行异常
@@ -125,23 +128,31 @@ public class AgentExecutor {
         // 记录任务开始
         taskStatusManager.incrementTaskCount(agentName);
         
-        // 获取Agent实例
-        Agent<?> agent = agentManager.getAgent(agentName);
-        if (agent == null) {
+        // 获取Agent当前代次的引用
+        AgentHandle handle = agentManager.acquireAgent(agentName);
+        if (handle == null) {
             log.error("Agent not found: {}", agentName);
             taskStatusManager.decrementTaskCount(agentName);
             throw new IllegalArgumentException("Agent not found: " + agentName);
         }
         
+        // 响应流结束时记录任务完成，保留调用方设置的回调
+        Runnable onTerminate = request.getOnTerminate();
+        request.setOnTerminate(() -> {
+            handle.close();
+            taskStatusManager.decrementTaskCount(agentName);
+            if (onTerminate != null) {
+                onTerminate.run();
+            }
+        });
+        
         try {
             // 执行流式任务
-            agent.chatStream(request);
+            handle.getAgent().chatStream(request);
         } catch (Exception e) {
             log.error("Failed to execute agent stream task: agentName={}", agentName, e);
+            request.fireTerminate();
             throw e;
-        } finally {
-            // 记录任务完成
-            taskStatusManager.decrementTaskCount(agentName);
         }
     }
     
@@ -0,0 +1,98 @@
+package com.ai.server.agent.ai.agent.dynamic;
+
+import com.ai.server.agent.ai.agent.core.Agent;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Agent的一个实例代次，每次创建或重新加载产生新的代次
+ * 引用计数：注册表持有一个引用，每个进行中的请求持有一个引用；
+ * 代次被替换后注册表释放自己的引用，计数归零时该代次退役
+ */
+public class AgentGeneration {
+
+    @Getter
+    private final String agentName;
+
+    @Getter
+    private final long generation;
+
+    @Getter
+    private final Agent<?> agent;
+
+    @Getter
+    private final DynamicAgentConfig config;
+
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private final AtomicBoolean retiring = new AtomicBoolean(false);
+
+    private final CompletableFuture<Void> retired = new CompletableFuture<>();
+
+    AgentGeneration(String agentName, long generation, Agent<?> agent, DynamicAgentConfig config) {
+        this.agentName = agentName;
+        this.generation = generation;
+        this.agent = agent;
+        this.config = config;
+    }
+
+    /**
+     * 为请求增加引用，代次已退役时失败
+     * @return 是否成功
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = refs.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放一个引用，计数归零时标记退役
+     */
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            retired.complete(null);
+        }
+    }
+
+    /**
+     * 代次被替换或注销后释放注册表持有的引用，重复调用无效
+     */
+    void retire() {
+        if (retiring.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    /**
+     * 是否已从注册表中移除
+     */
+    public boolean isRetiring() {
+        return retiring.get();
+    }
+
+    /**
+     * 进行中的请求数
+     */
+    public int getActiveRequests() {
+        int count = refs.get() - (retiring.get() ? 0 : 1);
+        return Math.max(count, 0);
+    }
+
+    /**
+     * 代次退役时完成，即已从注册表移除且没有进行中的请求
+     * @return 退役通知
+     */
+    public CompletableFuture<Void> whenRetired() {
+        return retired;
+    }
+}
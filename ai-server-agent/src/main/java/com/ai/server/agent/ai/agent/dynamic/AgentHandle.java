@@ -0,0 +1,47 @@
+package com.ai.server.agent.ai.agent.dynamic;
+
+import com.ai.server.agent.ai.agent.core.Agent;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 请求持有的Agent代次引用，请求开始时获取，结束时关闭
+ * 持有期间即使Agent被重新加载，请求仍使用开始时的实例，该代次在所有引用关闭后退役
+ */
+public class AgentHandle implements AutoCloseable {
+
+    private final AgentGeneration generation;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    AgentHandle(AgentGeneration generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * 获取请求开始时的Agent实例
+     * @param <T> Agent类型
+     * @return Agent实例
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Agent<T> getAgent() {
+        return (Agent<T>) generation.getAgent();
+    }
+
+    /**
+     * 获取代次号
+     */
+    public long getGeneration() {
+        return generation.getGeneration();
+    }
+
+    /**
+     * 释放引用，重复调用只释放一次
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            generation.release();
+        }
+    }
+}
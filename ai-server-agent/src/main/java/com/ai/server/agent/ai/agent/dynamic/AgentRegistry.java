@@ -0,0 +1,130 @@
+package com.ai.server.agent.ai.agent.dynamic;
+
+import com.ai.server.agent.ai.agent.core.Agent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Agent注册表，以不可变快照的形式保存所有Agent的当前代次
+ * 读取直接访问当前快照，不加锁；写入复制快照后原子替换，被替换或移除的代次释放注册表持有的引用
+ */
+public class AgentRegistry {
+
+    private final AtomicReference<Map<String, AgentGeneration>> snapshot = new AtomicReference<>(Map.of());
+
+    private final AtomicLong generationSequence = new AtomicLong();
+
+    /**
+     * 获取Agent的当前代次
+     * @param agentName Agent名称
+     * @return 当前代次，不存在时返回null
+     */
+    public AgentGeneration get(String agentName) {
+        return agentName != null ? snapshot.get().get(agentName) : null;
+    }
+
+    /**
+     * 获取Agent的当前实例
+     * @param agentName Agent名称
+     * @return Agent实例，不存在时返回null
+     */
+    public Agent<?> getAgent(String agentName) {
+        AgentGeneration generation = get(agentName);
+        return generation != null ? generation.getAgent() : null;
+    }
+
+    /**
+     * 获取Agent的当前配置
+     * @param agentName Agent名称
+     * @return Agent配置，不存在时返回null
+     */
+    public DynamicAgentConfig getConfig(String agentName) {
+        AgentGeneration generation = get(agentName);
+        return generation != null ? generation.getConfig() : null;
+    }
+
+    /**
+     * 是否包含Agent
+     */
+    public boolean contains(String agentName) {
+        return get(agentName) != null;
+    }
+
+    /**
+     * 当前快照中的Agent名称，不可修改
+     */
+    public Set<String> names() {
+        return snapshot.get().keySet();
+    }
+
+    /**
+     * 当前Agent数量
+     */
+    public int size() {
+        return snapshot.get().size();
+    }
+
+    /**
+     * 获取Agent当前代次的引用，请求结束时需关闭
+     * 获取时恰好遇到代次被替换则重新读取快照，保证拿到的代次在关闭前不会退役
+     * @param agentName Agent名称
+     * @return 代次引用，Agent不存在时返回null
+     */
+    public AgentHandle acquire(String agentName) {
+        while (true) {
+            AgentGeneration generation = get(agentName);
+            if (generation == null) {
+                return null;
+            }
+            if (generation.tryAcquire()) {
+                return new AgentHandle(generation);
+            }
+        }
+    }
+
+    /**
+     * 放入Agent的新代次，替换掉的旧代次开始退役
+     * @param agentName Agent名称
+     * @param agent Agent实例
+     * @param config Agent配置
+     * @return 被替换的旧代次，不存在时返回null
+     */
+    public AgentGeneration put(String agentName, Agent<?> agent, DynamicAgentConfig config) {
+        AgentGeneration generation = new AgentGeneration(agentName, generationSequence.incrementAndGet(), agent, config);
+        while (true) {
+            Map<String, AgentGeneration> current = snapshot.get();
+            Map<String, AgentGeneration> next = new HashMap<>(current);
+            AgentGeneration previous = next.put(agentName, generation);
+            if (snapshot.compareAndSet(current, Map.copyOf(next))) {
+                if (previous != null) {
+                    previous.retire();
+                }
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * 移除Agent，被移除的代次开始退役
+     * @param agentName Agent名称
+     * @return 被移除的代次，不存在时返回null
+     */
+    public AgentGeneration remove(String agentName) {
+        while (true) {
+            Map<String, AgentGeneration> current = snapshot.get();
+            if (!current.containsKey(agentName)) {
+                return null;
+            }
+            Map<String, AgentGeneration> next = new HashMap<>(current);
+            AgentGeneration removed = next.remove(agentName);
+            if (snapshot.compareAndSet(current, Map.copyOf(next))) {
+                removed.retire();
+                return removed;
+            }
+        }
+    }
+}
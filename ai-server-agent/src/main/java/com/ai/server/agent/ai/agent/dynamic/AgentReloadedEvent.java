@@ -0,0 +1,21 @@
+package com.ai.server.agent.ai.agent.dynamic;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Agent实例被替换、新增或注销后发布的事件，供依赖Agent配置的缓存失效
+ */
+@Getter
+public class AgentReloadedEvent extends ApplicationEvent {
+
+    /**
+     * Agent名称
+     */
+    private final String agentName;
+
+    public AgentReloadedEvent(Object source, String agentName) {
+        super(source);
+        this.agentName = agentName;
+    }
+}
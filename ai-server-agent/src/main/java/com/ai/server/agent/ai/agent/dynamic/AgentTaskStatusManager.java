@@ -4,48 +4,49 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Agent任务状态管理器，用于管理Agent的任务执行状态
  * 主要功能：
- * 1. 记录每个Agent的活跃任务数
+ * 1. 记录每个Agent的活跃任务数，流式任务从开始计数到响应流结束
  * 2. 提供任务状态查询接口
- * 3. 支持安全更新Agent配置
+ * 3. 活跃任务数归零时通知等待方，支持非阻塞地等待Agent任务排空
  */
 @Slf4j
 @Component
 public class AgentTaskStatusManager {
 
     /**
-     * 任务计数器，key: agentName, value: 活跃任务数
+     * 任务跟踪器，key: agentName
      * 使用ConcurrentHashMap保证线程安全
      */
-    private final Map<String, AtomicInteger> taskCounters = new ConcurrentHashMap<>();
+    private final Map<String, TaskTracker> taskTrackers = new ConcurrentHashMap<>();
 
     /**
      * 记录Agent任务开始执行
      * @param agentName Agent名称
      */
     public void incrementTaskCount(String agentName) {
-        AtomicInteger counter = taskCounters.computeIfAbsent(agentName, k -> new AtomicInteger(0));
-        int count = counter.incrementAndGet();
+        int count = tracker(agentName).increment();
         log.debug("Agent [{}] task count incremented to: {}", agentName, count);
     }
 
     /**
-     * 记录Agent任务执行完成
+     * 记录Agent任务执行完成，活跃任务数归零时通知等待方
      * @param agentName Agent名称
      */
     public void decrementTaskCount(String agentName) {
-        AtomicInteger counter = taskCounters.get(agentName);
-        if (counter != null) {
-            int count = counter.decrementAndGet();
-            log.debug("Agent [{}] task count decremented to: {}", agentName, count);
-            if (count <= 0) {
-                taskCounters.remove(agentName);
-                log.debug("Agent [{}] has no active tasks, removed from task counters", agentName);
+        TaskTracker tracker = taskTrackers.get(agentName);
+        if (tracker != null) {
+            CompletableFuture<Void> drained = tracker.decrement();
+            if (drained != null) {
+                log.debug("Agent [{}] has no active tasks", agentName);
+                drained.complete(null);
             }
         }
     }
@@ -56,8 +57,7 @@ public class AgentTaskStatusManager {
      * @return 是否有活跃任务
      */
     public boolean hasActiveTasks(String agentName) {
-        AtomicInteger counter = taskCounters.get(agentName);
-        return counter != null && counter.get() > 0;
+        return getActiveTaskCount(agentName) > 0;
     }
 
     /**
@@ -66,8 +66,22 @@ public class AgentTaskStatusManager {
      * @return 活跃任务数
      */
     public int getActiveTaskCount(String agentName) {
-        AtomicInteger counter = taskCounters.get(agentName);
-        return counter != null ? counter.get() : 0;
+        TaskTracker tracker = taskTrackers.get(agentName);
+        return tracker != null ? tracker.active() : 0;
+    }
+
+    /**
+     * 获取Agent当前活跃任务全部结束的通知，不阻塞调用线程
+     * @param agentName Agent名称
+     * @return 当前没有活跃任务时返回已完成的Future，否则在活跃任务数归零时完成
+     */
+    public CompletableFuture<Void> whenDrained(String agentName) {
+        TaskTracker tracker = taskTrackers.get(agentName);
+        if (tracker == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 返回副本，避免调用方完成或取消共享的Future
+        return tracker.drained().copy();
     }
 
     /**
@@ -77,29 +91,61 @@ public class AgentTaskStatusManager {
      * @return 是否在超时时间内完成
      */
     public boolean waitForTasksCompletion(String agentName, long timeoutMs) {
-        long startTime = System.currentTimeMillis();
         log.info("Waiting for agent [{}] tasks to complete, timeout: {}ms", agentName, timeoutMs);
-        
-        while (System.currentTimeMillis() - startTime < timeoutMs) {
-            if (!hasActiveTasks(agentName)) {
-                log.info("Agent [{}] has no active tasks, can be safely updated", agentName);
-                return true;
+        try {
+            whenDrained(agentName).get(timeoutMs, TimeUnit.MILLISECONDS);
+            log.info("Agent [{}] has no active tasks, can be safely updated", agentName);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("Timeout waiting for agent [{}] tasks to complete, still has {} active tasks",
+                    agentName, getActiveTaskCount(agentName));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Wait for agent [{}] tasks completion interrupted", agentName);
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("Wait for agent [{}] tasks completion failed: {}", agentName, e.getMessage());
+            return false;
+        }
+    }
+
+    private TaskTracker tracker(String agentName) {
+        return taskTrackers.computeIfAbsent(agentName, k -> new TaskTracker());
+    }
+
+    /**
+     * 单个Agent的任务跟踪器，活跃任务数从0变为1时开启新一轮排空通知，归零时完成该通知
+     */
+    private static class TaskTracker {
+
+        private int active;
+
+        private CompletableFuture<Void> drained = CompletableFuture.completedFuture(null);
+
+        synchronized int increment() {
+            if (active++ == 0) {
+                drained = new CompletableFuture<>();
             }
-            
-            try {
-                // 每100毫秒检查一次
-                Thread.sleep(100);
-                log.debug("Agent [{}] still has {} active tasks, waiting...", 
-                        agentName, getActiveTaskCount(agentName));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("Wait for agent [{}] tasks completion interrupted", agentName);
-                return false;
+            return active;
+        }
+
+        /**
+         * @return 活跃任务数归零时返回需要完成的通知，由调用方在锁外完成
+         */
+        synchronized CompletableFuture<Void> decrement() {
+            if (active == 0) {
+                return null;
             }
+            return --active == 0 ? drained : null;
+        }
+
+        synchronized int active() {
+            return active;
+        }
+
+        synchronized CompletableFuture<Void> drained() {
+            return drained;
         }
-        
-        log.warn("Timeout waiting for agent [{}] tasks to complete, still has {} active tasks", 
-                agentName, getActiveTaskCount(agentName));
-        return false;
     }
 }
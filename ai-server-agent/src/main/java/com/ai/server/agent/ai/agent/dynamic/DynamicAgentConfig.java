@@ -65,6 +65,26 @@ public class DynamicAgentConfig {
      * 是否关联工具
      */
     private boolean hasTools;
+
+    /**
+     * SSE回答片段合并的单帧字节上限，0表示不合并，为空时使用全局配置
+     */
+    private Integer sseBatchMaxBytes;
+
+    /**
+     * SSE回答片段合并的最长等待毫秒数，为空时使用全局配置
+     */
+    private Integer sseBatchMaxLatencyMs;
+
+    /**
+     * 是否缓存回答，仅适用于与用户无关的问答
+     */
+    private boolean responseCacheEnabled;
+
+    /**
+     * 回答缓存有效期（秒），为空时使用全局配置
+     */
+    private Integer responseCacheTtlSeconds;
     
     /**
      * 设置工具名称列表，并自动计算hasTools字段
@@ -4,26 +4,28 @@ import com.ai.server.agent.ai.agent.builder.AgentBuilder;
 import com.ai.server.agent.ai.agent.core.Agent;
 import com.ai.server.agent.ai.agent.dynamic.repository.AgentConfigRepository;
 import com.ai.server.agent.ai.agent.manager.PromptManager;
+import com.ai.server.agent.ai.common.cache.AgentResponseCache;
 import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
+import com.ai.server.agent.ai.config.AgentStartupProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
-import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
-import org.springframework.beans.factory.BeanCurrentlyInCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Scope;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 动态Agent管理器，负责Agent的创建、管理和执行
@@ -35,19 +37,29 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class DynamicAgentManager {
     
     /**
-     * Agent实例映射，key为agentName
+     * Agent注册表，key为agentName，读取无锁，写入时替换整个快照
      */
-    private final Map<String, Agent<?>> agentMap = new ConcurrentHashMap<>();
-    
+    private final AgentRegistry registry = new AgentRegistry();
+
     /**
-     * Agent配置映射，key为agentName
+     * 延迟创建模式下尚未创建的Agent配置，key为agentName，首次使用时创建并移入注册表
      */
-    private final Map<String, DynamicAgentConfig> agentConfigMap = new ConcurrentHashMap<>();
-    
+    private final Map<String, DynamicAgentConfig> pendingAgents = new ConcurrentHashMap<>();
+
+    /**
+     * 启动耗时报告，包括各阶段耗时和每个Agent的创建耗时
+     */
+    private final Map<String, Object> startupReport = new ConcurrentHashMap<>();
+
+    /**
+     * 每个Agent的创建耗时（毫秒），key为agentName，延迟创建的Agent在首次使用时记录
+     */
+    private final Map<String, Long> agentBuildMillis = new ConcurrentHashMap<>();
+
     /**
-     * 读写锁，保护Agent实例的并发访问
+     * 按Agent名称划分的重新加载锁，保证同一Agent的提示词注册、实例创建和替换按顺序整体完成
      */
-    private final ReentrantReadWriteLock agentLock = new ReentrantReadWriteLock();
+    private final Map<String, Object> reloadLocks = new ConcurrentHashMap<>();
     
     @Autowired
     private ChatClient chatClient;
@@ -70,6 +82,12 @@ public class DynamicAgentManager {
     @Autowired
     private AiGlobalSseEmitterManager sseEmitterManager;
     
+    @Autowired
+    private AgentStartupProperties agentStartupProperties;
+    
+    @Autowired
+    private ToolCallbackRegistry toolCallbackRegistry;
+    
     /**
      * 初始化标记，确保只执行一次初始化
      * 使用静态变量，确保所有实例共享同一个初始化状态
@@ -95,34 +113,41 @@ public class DynamicAgentManager {
             
             log.info("Initializing DynamicAgentManager...");
             
+            long initStart = System.currentTimeMillis();
             try {
                 // 从配置中心加载Agent配置
                 List<DynamicAgentConfig> configs = loadAgentConfigs();
+                long loadedAt = System.currentTimeMillis();
+                startupReport.put("loadConfigMs", loadedAt - initStart);
                 
                 // 1. 先注册所有提示词模板到PromptManager
                 for (DynamicAgentConfig config : configs) {
                     if (config.isEnabled() && config.getSystemPrompt() != null) {
                         // 使用agentName作为promptType，方便后续获取
-                        promptManager.registerPromptTemplate(config.getAgentName(), config.getSystemPrompt());
+                        promptManager.registerPromptTemplate(config.getAgentName(), config.getSystemPrompt(),
+                                config.getPromptVariables());
                         log.info("Registered prompt template for agent: {}", config.getAgentName());
                     }
                 }
+                long registeredAt = System.currentTimeMillis();
+                startupReport.put("registerPromptMs", registeredAt - loadedAt);
                 
-                // 2. 为每个配置创建Agent实例
-                for (DynamicAgentConfig config : configs) {
-                    if (config.isEnabled()) {
-                        try {
-                            Agent<?> agent = createAgent(config);
-                            agentMap.put(config.getAgentName(), agent);
-                            agentConfigMap.put(config.getAgentName(), config);
-                            log.info("Created agent: {}", config.getAgentName());
-                        } catch (Exception e) {
-                            log.error("Failed to create agent: {}", config.getAgentName(), e);
-                        }
+                // 2. 为每个配置创建Agent实例，延迟创建模式下只记录配置
+                List<DynamicAgentConfig> enabledConfigs = configs.stream().filter(DynamicAgentConfig::isEnabled).toList();
+                if (agentStartupProperties.isLazy()) {
+                    for (DynamicAgentConfig config : enabledConfigs) {
+                        pendingAgents.put(config.getAgentName(), config);
                     }
+                    log.info("Lazy agent creation enabled, {} agents will be created on first use", pendingAgents.size());
+                } else {
+                    createAgentsInParallel(enabledConfigs);
                 }
+                startupReport.put("createAgentsMs", System.currentTimeMillis() - registeredAt);
+                startupReport.put("totalMs", System.currentTimeMillis() - initStart);
                 
-                log.info("DynamicAgentManager initialized with {} agents", agentMap.size());
+                log.info("DynamicAgentManager initialized with {} agents, {} pending, took {}ms",
+                        registry.size(), pendingAgents.size(), System.currentTimeMillis() - initStart);
+                logStartupTimings();
             } catch (Exception e) {
                 log.error("Failed to initialize DynamicAgentManager: {}", e.getMessage(), e);
             } finally {
@@ -134,6 +159,108 @@ public class DynamicAgentManager {
 
 
     
+    /**
+     * 在有界线程池中并行创建Agent，创建失败的Agent记录日志后跳过
+     * @param configs 启用的Agent配置
+     */
+    private void createAgentsInParallel(List<DynamicAgentConfig> configs) {
+        if (configs.isEmpty()) {
+            return;
+        }
+        int parallelism = agentStartupProperties.getParallelism() > 0
+                ? agentStartupProperties.getParallelism() : Runtime.getRuntime().availableProcessors();
+        parallelism = Math.min(parallelism, configs.size());
+        startupReport.put("parallelism", parallelism);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("agent-init-"));
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(configs.size());
+            for (DynamicAgentConfig config : configs) {
+                futures.add(CompletableFuture.runAsync(() -> buildAndRegister(config), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * 创建Agent并放入注册表，记录创建耗时
+     * @param config Agent配置
+     * @return Agent实例，创建失败时返回null
+     */
+    private Agent<?> buildAndRegister(DynamicAgentConfig config) {
+        String agentName = config.getAgentName();
+        long start = System.currentTimeMillis();
+        try {
+            Agent<?> agent = createAgent(config);
+            registry.put(agentName, agent, config);
+            long elapsed = System.currentTimeMillis() - start;
+            agentBuildMillis.put(agentName, elapsed);
+            log.info("Created agent: {}, took {}ms", agentName, elapsed);
+            return agent;
+        } catch (Exception e) {
+            agentBuildMillis.put(agentName, -1L);
+            log.error("Failed to create agent: {}, took {}ms", agentName, System.currentTimeMillis() - start, e);
+            return null;
+        }
+    }
+    
+    /**
+     * 延迟创建模式下首次使用时创建Agent
+     * @param agentName Agent名称
+     * @return Agent实例，不在待创建列表中或创建失败时返回null
+     */
+    private Agent<?> materializeAgent(String agentName) {
+        if (agentName == null || !pendingAgents.containsKey(agentName)) {
+            return null;
+        }
+        synchronized (reloadLock(agentName)) {
+            Agent<?> existing = registry.getAgent(agentName);
+            if (existing != null) {
+                return existing;
+            }
+            // 无论成功与否都移出待创建列表，失败的Agent可通过重新加载恢复，避免每次请求都重复创建
+            DynamicAgentConfig config = pendingAgents.remove(agentName);
+            if (config == null) {
+                return null;
+            }
+            log.info("Creating agent on first use: {}", agentName);
+            return buildAndRegister(config);
+        }
+    }
+    
+    /**
+     * 按耗时从高到低输出每个Agent的创建耗时
+     */
+    private void logStartupTimings() {
+        if (agentBuildMillis.isEmpty()) {
+            return;
+        }
+        StringBuilder report = new StringBuilder("Agent startup timings (ms):");
+        agentBuildMillis.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> report.append(System.lineSeparator()).append("  ").append(entry.getKey())
+                        .append(": ").append(entry.getValue() < 0 ? "failed" : entry.getValue()));
+        log.info(report.toString());
+    }
+    
+    /**
+     * 获取启动耗时报告
+     * @return 各阶段耗时、并行度、待创建的Agent数以及每个Agent的创建耗时（-1表示创建失败）
+     */
+    public Map<String, Object> getStartupReport() {
+        Map<String, Object> report = new LinkedHashMap<>(startupReport);
+        report.put("lazy", agentStartupProperties.isLazy());
+        report.put("pendingAgents", new TreeSet<>(pendingAgents.keySet()));
+        Map<String, Long> timings = new LinkedHashMap<>();
+        agentBuildMillis.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> timings.put(entry.getKey(), entry.getValue()));
+        report.put("agentBuildMillis", timings);
+        return report;
+    }
+
     /**
      * 从数据库加载Agent配置
      * @return Agent配置列表
@@ -166,9 +293,6 @@ public class DynamicAgentManager {
         // 使用PromptManager获取提示词模板并创建提示词
         String systemPrompt = null;
         if (promptManager.containsPromptType(config.getAgentName())) {
-            // 从PromptManager获取提示词模板
-            PromptTemplate promptTemplate = promptManager.getPromptTemplate(config.getAgentName());
-            
             // 创建提示词变量映射
             Map<String, Object> promptVariables = new HashMap<>();
             if (config.getPromptVariables() != null) {
@@ -176,20 +300,15 @@ public class DynamicAgentManager {
             }
             
             // 1. 自动添加常见变量，不依赖模板内容检测
-            // 添加当前日期到变量映射，适用于所有模板
-            String currentDate = new java.util.Date().toString();
-            promptVariables.put("current_date", currentDate);
-            promptVariables.put("current_data", currentDate);
-            
+            // 当前日期不在创建时固定，由GenericDynamicAgent在每次渲染时填充
             // 添加agent信息到变量映射，适用于所有模板
             promptVariables.put("agent_name", config.getAgentName());
             promptVariables.put("agent_type", config.getAgentType());
             
             // 2. 添加try-catch处理，确保即使模板中有未替换的变量，也能成功创建提示词
             try {
-                // 创建提示词
-                Prompt prompt = promptTemplate.create(promptVariables);
-                systemPrompt = prompt.getInstructions().toString();
+                // 使用预编译的模板渲染提示词
+                systemPrompt = promptManager.render(config.getAgentName(), promptVariables);
                 log.info("Created prompt for agent: {} using template", config.getAgentName());
             } catch (IllegalStateException e) {
                 // 处理未替换的变量
@@ -220,28 +339,15 @@ public class DynamicAgentManager {
             builder.withDefaultPromptVariables(config.getPromptVariables());
         }
         
-        // 加载工具
-        List<Object> tools = loadTools(config.getToolNames());
-        // 对于simpleChatClient，检查是否已经包含dateTool，如果没有则添加
-        if ("simpleChatClient".equals(config.getAgentName())) {
-            // 检查配置中是否已经包含dateTool
-            boolean hasDateTool = false;
-            if (config.getToolNames() != null) {
-                for (String toolName : config.getToolNames()) {
-                    if ("dateTool".equals(toolName)) {
-                        hasDateTool = true;
-                        break;
-                    }
-                }
-            }
-            // 如果配置中没有dateTool，则添加
-            if (!hasDateTool && applicationContext.containsBean("dateTool")) {
-                // 使用延迟加载机制创建dateTool代理
-                Object dateToolProxy = createToolProxy("dateTool");
-                tools.add(dateToolProxy);
-            }
+        // 工具名称列表，对于simpleChatClient，配置中没有dateTool时自动添加
+        List<String> toolNames = new ArrayList<>();
+        if (config.getToolNames() != null) {
+            toolNames.addAll(config.getToolNames());
+        }
+        if ("simpleChatClient".equals(config.getAgentName()) && !toolNames.contains("dateTool")
+                && toolCallbackRegistry.contains("dateTool")) {
+            toolNames.add("dateTool");
         }
-        builder.withTools(tools);
         
         // 设置聊天记忆配置，让Agent在调用时构建ChatMemory
         if (config.getChatMemoryConfig() != null) {
@@ -259,12 +365,25 @@ public class DynamicAgentManager {
         // 使用AgentBuilder构建Agent实例
         GenericDynamicAgent agent = builder.build(promptManager);
         
+        // 注入预先解析的工具回调，模型调用工具时直接调用工具Bean的方法
+        agent.setToolCallbacks(toolCallbackRegistry.resolve(toolNames));
+        
         // 设置动态和运行时变量键名
         agent.setDynamicPromptVariableKeys(config.getDynamicPromptVariableKeys());
         agent.setRuntimePromptVariableKeys(config.getRuntimePromptVariableKeys());
         
         // 设置聊天记忆配置，让Agent在调用时构建ChatMemory
         agent.setChatMemoryConfig(config.getChatMemoryConfig());
+
+        // 设置SSE回答片段合并参数，未配置时使用全局配置
+        agent.setSseBatchMaxBytes(config.getSseBatchMaxBytes());
+        agent.setSseBatchMaxLatencyMs(config.getSseBatchMaxLatencyMs());
+
+        // 开启回答缓存的Agent注入共享的回答缓存
+        if (config.isResponseCacheEnabled()) {
+            agent.setResponseCache(applicationContext.getBean(AgentResponseCache.class));
+            agent.setResponseCacheTtlSeconds(config.getResponseCacheTtlSeconds());
+        }
         
         // 设置Spring应用上下文，用于获取ChatMemoryRepository
         agent.setApplicationContext(applicationContext);
@@ -302,148 +421,45 @@ public class DynamicAgentManager {
     }
     
     /**
-     * 根据工具名称列表加载工具实例，实现延迟加载避免循环依赖
-     * @param toolNames 工具名称列表
-     * @return 工具实例列表
-     */
-    private List<Object> loadTools(List<String> toolNames) {
-        List<Object> tools = new ArrayList<>();
-        
-        if (toolNames != null && !toolNames.isEmpty()) {
-            for (String toolName : toolNames) {
-                try {
-                    // 延迟加载：检查工具是否存在，但不直接获取实例
-                    // 而是在工具实际使用时通过代理动态获取
-                    if (applicationContext.containsBean(toolName)) {
-                        // 创建工具代理，在实际调用时才获取真实实例
-                        Object toolProxy = createToolProxy(toolName);
-                        // 现在createToolProxy总是返回代理对象，不会返回null
-                        tools.add(toolProxy);
-                        log.info("Added proxy for tool: {} to agent", toolName);
-                    } else {
-                        log.warn("Tool not found in context: {}", toolName);
-                    }
-                } catch (Exception e) {
-                    log.error("Failed to process tool: {}", toolName, e);
-                }
-            }
-        }
-        
-        return tools;
-    }
-    
-    /**
-     * 创建工具代理，实现延迟加载
-     * @param toolName 工具名称
-     * @return 工具代理对象
-     */
-    private Object createToolProxy(String toolName) {
-        // 获取工具的所有接口
-        Class<?> toolClass = applicationContext.getType(toolName);
-        if (toolClass == null) {
-            throw new IllegalArgumentException("Tool class not found: " + toolName);
-        }
-        
-        Class<?>[] interfaces = toolClass.getInterfaces();
-        if (interfaces.length == 0) {
-            // 如果工具类没有实现任何接口，直接尝试获取实例
-            // 简化实现，避免复杂的CGLIB代理可能带来的问题
-            log.info("Tool {} has no interfaces, trying to get direct instance with retry mechanism", toolName);
-            return getRealToolInstance(toolName);
-        } else {
-            // 如果工具类实现了接口，返回基于接口的代理
-            return createJdkProxy(toolName, interfaces);
-        }
-    }
-    
-    /**
-     * 创建JDK动态代理
-     * @param toolName 工具名称
-     * @param interfaces 接口数组
-     * @return 代理对象
+     * 根据Agent名称获取Agent实例
+     * @param agentName Agent名称
+     * @param <T> Agent类型
+     * @return Agent实例
      */
     @SuppressWarnings("unchecked")
-    private <T> T createJdkProxy(String toolName, Class<?>... interfaces) {
-        return (T) java.lang.reflect.Proxy.newProxyInstance(
-            getClass().getClassLoader(),
-            interfaces,
-            (proxy, method, args) -> {
-                // 当代理方法被调用时，才从ApplicationContext获取真实工具实例
-                Object realTool = getRealToolInstance(toolName);
-                if (realTool == null) {
-                    log.error("Failed to get real tool instance for {} when invoking method {}", toolName, method.getName());
-                    throw new IllegalStateException("Tool instance not available: " + toolName);
-                }
-                // 调用真实工具的方法
-                return method.invoke(realTool, args);
-            }
-        );
+    public <T> Agent<T> getAgent(String agentName) {
+        Agent<?> agent = registry.getAgent(agentName);
+        if (agent == null) {
+            agent = materializeAgent(agentName);
+        }
+        return (Agent<T>) agent;
     }
     
     /**
-     * 获取真实工具实例，带重试机制
-     * @param toolName 工具名称
-     * @return 工具实例，如果获取失败返回null
+     * 获取Agent当前代次的引用，请求期间固定使用该实例，结束时需关闭
+     * @param agentName Agent名称
+     * @return 代次引用，Agent不存在时返回null
      */
-    private Object getRealToolInstance(String toolName) {
-        Object realTool = null;
-        int retryCount = 3;
-        long retryDelay = 100;
-        
-        for (int i = 0; i < retryCount; i++) {
-            try {
-                if (applicationContext.containsBean(toolName)) {
-                    realTool = applicationContext.getBean(toolName);
-                    if (realTool != null) {
-                        log.info("Successfully got real tool instance for: {}", toolName);
-                        break;
-                    }
-                }
-                log.warn("Tool {} not available, retrying in {}ms... (Attempt {}/{})", toolName, retryDelay, i+1, retryCount);
-                Thread.sleep(retryDelay);
-                retryDelay *= 2; // 指数退避
-            } catch (BeanCurrentlyInCreationException e) {
-                log.warn("Tool {} is still in creation, retrying in {}ms... (Attempt {}/{})", toolName, retryDelay, i+1, retryCount);
-                try {
-                    Thread.sleep(retryDelay);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-                retryDelay *= 2; // 指数退避
-            } catch (Exception e) {
-                log.error("Error getting real tool instance for {}: {}, Attempt {}/{}", toolName, e.getMessage(), i+1, retryCount);
-                try {
-                    Thread.sleep(retryDelay);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-                retryDelay *= 2; // 指数退避
-            }
-        }
-        
-        if (realTool == null) {
-            log.error("Failed to get real tool instance for {} after {} attempts", toolName, retryCount);
+    public AgentHandle acquireAgent(String agentName) {
+        AgentHandle handle = registry.acquire(agentName);
+        if (handle == null && materializeAgent(agentName) != null) {
+            handle = registry.acquire(agentName);
         }
-        
-        return realTool;
+        return handle;
     }
-    
+
     /**
-     * 根据Agent名称获取Agent实例
+     * 获取按名称引用的Agent，每次调用时记录任务并获取当前代次的引用，调用或响应流结束时释放
+     * 策略等长期持有Agent的调用方应使用该方法，避免请求期间Agent被重新加载时使用已退役的实例
      * @param agentName Agent名称
      * @param <T> Agent类型
-     * @return Agent实例
+     * @return Agent，不存在时返回null
      */
-    @SuppressWarnings("unchecked")
-    public <T> Agent<T> getAgent(String agentName) {
-        agentLock.readLock().lock();
-        try {
-            return (Agent<T>) agentMap.get(agentName);
-        } finally {
-            agentLock.readLock().unlock();
+    public <T> Agent<T> getManagedAgent(String agentName) {
+        if (getAgent(agentName) == null) {
+            return null;
         }
+        return new ManagedAgent<>(this, taskStatusManager, agentName);
     }
     
     /**
@@ -452,7 +468,8 @@ public class DynamicAgentManager {
      * @return Agent配置
      */
     public DynamicAgentConfig getAgentConfig(String agentName) {
-        return agentConfigMap.get(agentName);
+        DynamicAgentConfig config = registry.getConfig(agentName);
+        return config != null ? config : pendingAgents.get(agentName);
     }
     
     /**
@@ -460,21 +477,31 @@ public class DynamicAgentManager {
      * @return Agent名称列表
      */
     public Set<String> getAllAgentNames() {
-        return agentMap.keySet();
+        if (pendingAgents.isEmpty()) {
+            return registry.names();
+        }
+        Set<String> names = new HashSet<>(registry.names());
+        names.addAll(pendingAgents.keySet());
+        return Collections.unmodifiableSet(names);
     }
     
     /**
      * 安全重新加载Agent配置并更新Agent实例
-     * 1. 等待正在执行的任务完成
-     * 2. 更新PromptManager中的提示词模板
-     * 3. 原子替换Agent实例
-     * 4. 更新配置缓存
+     * 1. 更新PromptManager中的提示词模板
+     * 2. 创建新的Agent实例
+     * 3. 原子替换注册表中的代次，新请求立即使用新实例
+     * 4. 旧代次上进行中的请求继续使用旧实例，全部结束后旧代次退役，不阻塞重新加载
      * @param agentName Agent名称
      * @return 更新后的Agent实例
      */
     public Agent<?> safeReloadAgent(String agentName) {
         log.info("Safe reloading agent: {}", agentName);
-        
+        synchronized (reloadLock(agentName)) {
+            return doSafeReloadAgent(agentName);
+        }
+    }
+
+    private Agent<?> doSafeReloadAgent(String agentName) {
         try {
             // 1. 从数据库重新加载该Agent的配置
             DynamicAgentConfig config = agentConfigRepository.findByAgentName(agentName);
@@ -483,31 +510,18 @@ public class DynamicAgentManager {
                 return null;
             }
             
-            // 2. 更新PromptManager中的提示词模板
-            if (config.getSystemPrompt() != null) {
-                promptManager.registerPromptTemplate(agentName, config.getSystemPrompt());
-                log.info("Updated prompt template for agent: {}", agentName);
-            }
+            // 2. 更新PromptManager中的提示词模板，新实例固定引用新版本，旧实例仍使用原版本
+            registerSystemPrompt(config);
+            toolCallbackRegistry.refresh(config.getToolNames());
             
             // 3. 创建新的Agent实例
             Agent<?> newAgent = createAgent(config);
             
-            // 4. 等待活跃任务完成（最多等待30秒）
-            boolean tasksCompleted = taskStatusManager.waitForTasksCompletion(agentName, 30000);
-            if (!tasksCompleted) {
-                log.warn("Timeout waiting for tasks to complete, forcing reload: {}", agentName);
-            }
-            
-            // 5. 原子替换Agent实例
-            agentLock.writeLock().lock();
-            try {
-                Agent<?> oldAgent = agentMap.put(agentName, newAgent);
-                agentConfigMap.put(agentName, config);
-                log.info("Successfully reloaded agent: {}", agentName);
-                return newAgent;
-            } finally {
-                agentLock.writeLock().unlock();
-            }
+            // 4. 原子替换Agent实例，旧代次在进行中的请求结束后退役
+            replaceAgent(agentName, newAgent, config);
+            log.info("Successfully reloaded agent: {}", agentName);
+            publishAgentReloaded(agentName);
+            return newAgent;
         } catch (Exception e) {
             log.error("Failed to reload agent: {}", agentName, e);
             return getAgent(agentName); // 返回旧实例
@@ -519,21 +533,25 @@ public class DynamicAgentManager {
      * @param agentName Agent名称
      * @return 更新后的Agent实例
      */
-    public synchronized Agent<?> reloadAgent(String agentName) {
+    public Agent<?> reloadAgent(String agentName) {
         log.info("Reloading agent: {}", agentName);
         
         // 从配置中心重新加载该Agent的配置
         DynamicAgentConfig config = loadAgentConfig(agentName);
         if (config != null && config.isEnabled()) {
-            try {
-                Agent<?> agent = createAgent(config);
-                agentMap.put(agentName, agent);
-                agentConfigMap.put(agentName, config);
-                log.info("Reloaded agent: {}", agentName);
-                return agent;
-            } catch (Exception e) {
-                log.error("Failed to reload agent: {}", agentName, e);
-                return agentMap.get(agentName); // 返回旧实例
+            synchronized (reloadLock(agentName)) {
+                try {
+                    registerSystemPrompt(config);
+                    toolCallbackRegistry.refresh(config.getToolNames());
+                    Agent<?> agent = createAgent(config);
+                    replaceAgent(agentName, agent, config);
+                    log.info("Reloaded agent: {}", agentName);
+                    publishAgentReloaded(agentName);
+                    return agent;
+                } catch (Exception e) {
+                    log.error("Failed to reload agent: {}", agentName, e);
+                    return getAgent(agentName); // 返回旧实例
+                }
             }
         }
         
@@ -555,23 +573,26 @@ public class DynamicAgentManager {
      * @param config Agent配置
      * @return 新创建的Agent实例
      */
-    public synchronized Agent<?> registerAgent(DynamicAgentConfig config) {
+    public Agent<?> registerAgent(DynamicAgentConfig config) {
         log.info("Registering new agent: {}", config.getAgentName());
         
-        if (agentMap.containsKey(config.getAgentName())) {
-            log.warn("Agent already exists: {}", config.getAgentName());
-            return agentMap.get(config.getAgentName());
-        }
-        
-        try {
-            Agent<?> agent = createAgent(config);
-            agentMap.put(config.getAgentName(), agent);
-            agentConfigMap.put(config.getAgentName(), config);
-            log.info("Registered new agent: {}", config.getAgentName());
-            return agent;
-        } catch (Exception e) {
-            log.error("Failed to register agent: {}", config.getAgentName(), e);
-            return null;
+        synchronized (reloadLock(config.getAgentName())) {
+            if (registry.contains(config.getAgentName()) || pendingAgents.containsKey(config.getAgentName())) {
+                log.warn("Agent already exists: {}", config.getAgentName());
+                return getAgent(config.getAgentName());
+            }
+            
+            try {
+                registerSystemPrompt(config);
+                Agent<?> agent = createAgent(config);
+                registry.put(config.getAgentName(), agent, config);
+                log.info("Registered new agent: {}", config.getAgentName());
+                publishAgentReloaded(config.getAgentName());
+                return agent;
+            } catch (Exception e) {
+                log.error("Failed to register agent: {}", config.getAgentName(), e);
+                return null;
+            }
         }
     }
     
@@ -580,26 +601,84 @@ public class DynamicAgentManager {
      * @param agentName Agent名称
      * @return 是否注销成功
      */
-    public synchronized boolean unregisterAgent(String agentName) {
+    public boolean unregisterAgent(String agentName) {
         log.info("Unregistering agent: {}", agentName);
         
-        // 等待所有任务完成
-        taskStatusManager.waitForTasksCompletion(agentName, 30000);
-        
-        agentLock.writeLock().lock();
-        try {
-            Agent<?> removedAgent = agentMap.remove(agentName);
-            DynamicAgentConfig removedConfig = agentConfigMap.remove(agentName);
-            
-            if (removedAgent != null && removedConfig != null) {
-                log.info("Unregistered agent: {}", agentName);
-                return true;
-            }
-            
+        // 移除后不再接受新请求，进行中的任务继续使用原实例，不阻塞调用线程
+        AgentGeneration removed;
+        DynamicAgentConfig pending;
+        synchronized (reloadLock(agentName)) {
+            removed = registry.remove(agentName);
+            pending = pendingAgents.remove(agentName);
+        }
+        if (removed == null && pending == null) {
             log.warn("Agent not found: {}", agentName);
             return false;
-        } finally {
-            agentLock.writeLock().unlock();
+        }
+        log.info("Unregistered agent: {}, {} task(s) still in flight", agentName,
+                taskStatusManager.getActiveTaskCount(agentName));
+        taskStatusManager.whenDrained(agentName).thenRun(() ->
+                log.info("All tasks of unregistered agent [{}] completed", agentName));
+        publishAgentReloaded(agentName);
+        return true;
+    }
+    
+    /**
+     * 获取Agent当前活跃任务全部结束的通知，用于重新加载或注销后非阻塞地确认旧任务已排空
+     * @param agentName Agent名称
+     * @return 活跃任务数归零时完成的Future
+     */
+    public CompletableFuture<Void> whenTasksDrained(String agentName) {
+        return taskStatusManager.whenDrained(agentName);
+    }
+
+    /**
+     * 替换注册表中的Agent代次，旧代次退役时记录日志
+     * @param agentName Agent名称
+     * @param agent 新的Agent实例
+     * @param config 新的Agent配置
+     */
+    private void replaceAgent(String agentName, Agent<?> agent, DynamicAgentConfig config) {
+        AgentGeneration previous = registry.put(agentName, agent, config);
+        pendingAgents.remove(agentName);
+        if (previous == null) {
+            return;
+        }
+        int activeRequests = previous.getActiveRequests();
+        if (activeRequests > 0) {
+            log.info("Agent [{}] generation {} retiring, {} request(s) still in flight",
+                    agentName, previous.getGeneration(), activeRequests);
+        }
+        previous.whenRetired().thenRun(() ->
+                log.info("Agent [{}] generation {} retired", agentName, previous.getGeneration()));
+    }
+
+    /**
+     * 注册或更新Agent的系统提示词模板，使用agentName作为promptType
+     * @param config Agent配置
+     */
+    private void registerSystemPrompt(DynamicAgentConfig config) {
+        if (config.getSystemPrompt() == null) {
+            return;
+        }
+        promptManager.registerPromptTemplate(config.getAgentName(), config.getSystemPrompt(), config.getPromptVariables());
+        log.info("Updated prompt template for agent: {}, version: {}", config.getAgentName(),
+                promptManager.getTemplateVersion(config.getAgentName()).getVersion());
+    }
+
+    private Object reloadLock(String agentName) {
+        return reloadLocks.computeIfAbsent(agentName, k -> new Object());
+    }
+
+    /**
+     * 发布Agent变更事件，事件处理异常不影响Agent的替换结果
+     * @param agentName Agent名称
+     */
+    private void publishAgentReloaded(String agentName) {
+        try {
+            applicationContext.publishEvent(new AgentReloadedEvent(this, agentName));
+        } catch (Exception e) {
+            log.error("Failed to publish agent reloaded event: {}", agentName, e);
         }
     }
 }
\ No newline at end of file
@@ -3,6 +3,9 @@ package com.ai.server.agent.ai.agent.dynamic;
 import com.ai.server.agent.ai.agent.core.Agent;
 import com.ai.server.agent.ai.agent.manager.PromptManager;
 import com.ai.server.agent.ai.agent.template.BaseAgent;
+import com.ai.server.agent.ai.common.cache.AgentResponseCache;
+import com.ai.server.agent.ai.common.memory.CachingChatMemoryRepository;
+import com.ai.server.agent.ai.config.ChatMemoryProperties;
 import com.ai.server.agent.ai.interceptor.UserContextHolder;
 import com.ai.server.agent.ai.rest.response.ResponseAi;
 import com.ai.server.agent.ai.util.ChatResponseToEntity;
@@ -11,17 +14,28 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
-import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.publisher.Flux;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 通用动态Agent实现类，支持动态配置和运行时调整
  */
 @Slf4j
 public class GenericDynamicAgent extends BaseAgent<Object> {
+
+    /**
+     * 每次渲染时由系统填充的当前日期变量，current_data为历史模板中的拼写
+     */
+    private static final List<String> CURRENT_DATE_KEYS = List.of("current_date", "current_data");
     
     /**
      * Agent名称
@@ -38,6 +52,11 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
      */
     private List<Object> tools;
     
+    /**
+     * 预先解析好的工具回调，由ToolCallbackRegistry按工具Bean名称解析
+     */
+    private List<ToolCallback> toolCallbacks;
+    
     /**
      * 需要动态传入的提示词变量键名列表（var_type为dynamic）
      */
@@ -52,9 +71,29 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
      * 聊天记忆配置
      */
     private ChatMemoryConfig chatMemoryConfig;
+
+    /**
+     * SSE回答片段合并的单帧字节上限，为空时使用全局配置
+     */
+    private Integer sseBatchMaxBytes;
+
+    /**
+     * SSE回答片段合并的最长等待毫秒数，为空时使用全局配置
+     */
+    private Integer sseBatchMaxLatencyMs;
+
+    /**
+     * 回答缓存，未开启回答缓存时为null
+     */
+    private AgentResponseCache responseCache;
+
+    /**
+     * 回答缓存有效期（秒），为空时使用全局配置
+     */
+    private Integer responseCacheTtlSeconds;
     
     /**
-     * JdbcTemplate，用于更新聊天记录的agent_name
+     * JdbcTemplate，用于调试时查询聊天记录
      */
     private JdbcTemplate jdbcTemplate;
     
@@ -63,6 +102,12 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
      */
     private org.springframework.context.ApplicationContext applicationContext;
 
+    /**
+     * 按Agent实例缓存的ChatClient和ChatMemory，首次使用时构建
+     * 配置变更时DynamicAgentManager会整体替换Agent实例，缓存随旧实例一起失效
+     */
+    private volatile CachedChatClients cachedChatClients;
+
     /**
      * 构造方法
      * @param chatClient ChatClient实例
@@ -94,27 +139,16 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
     protected Object doChat(Agent.Request request, String type) {
         String content = null;
         String res = null;
-        // 创建final变量保存agentName，确保在更新时不会被意外修改
-        final String finalAgentName = this.agentName;
-        
         // 检测动态和运行时变量是否被传入
         checkRequiredVariables(request);
         
-        // 获取基础ChatClient
-        ChatClient chatClient = getChatClient();
-        
-        // 在调用时构建ChatMemory，确保每次使用最新的记忆配置
-        ChatMemory chatMemory = buildChatMemory(false);
-        if (chatMemory != null) {
-            // 创建带有ChatMemory的ChatClient
-            chatClient = createChatClientWithMemory(chatClient, chatMemory);
-            log.info("已创建带有ChatMemory的ChatClient");
-        }
+        // 获取缓存的ChatClient（已按配置挂载ChatMemory）
+        ChatClient chatClient = getCachedChatClients().callClient;
 
         
         // 保存原sessionId，用于存入session_id字段
         String sessionId = null;
-        // 保存conversationId，用于更新聊天记录
+        // 保存conversationId，用于关联聊天记录
         String conversationId = null;
 
         // 根据请求类型处理
@@ -132,7 +166,8 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
             // 创建final临时变量，用于lambda表达式
             final String finalConversationId = conversationId;
 
-            // 调试：查询并打印当前会话的记忆记录
+            registerMemoryConversation(conversationId, userId, sessionId);
+            // 调试：按采样比例查询并打印当前会话的记忆记录
             debugSessionMemory(sessionId, this.agentName);
             
             // 处理多请求类型，设置conversation_id关联历史记录
@@ -148,12 +183,9 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
             ChatClient.ChatClientRequestSpec promptSpec = chatClient.prompt();
             
             // 如果有系统提示词类型，动态创建带有变量填充的系统提示词
-            if (getSystemPromptType() != null && getPromptManager() != null) {
-                // 1. 从PromptManager获取PromptTemplate
-                PromptTemplate promptTemplate = getPromptTemplate(getSystemPromptType());
-                // 2. 使用request.getContext()填充模板变量，创建完整的系统提示词字符串
-                String systemPrompt = promptTemplate.render(request.getContext());
-                // 3. 使用字符串类型的system方法
+            String systemPrompt = renderSystemPrompt(request);
+            if (systemPrompt != null) {
+                // 使用字符串类型的system方法
                 promptSpec = promptSpec.system(systemPrompt);
             }
             
@@ -169,7 +201,8 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
             // 创建final临时变量，用于lambda表达式
             final String finalConversationId = conversationId;
 
-            // 调试：查询并打印当前会话的记忆记录
+            registerMemoryConversation(conversationId, userId, sessionId);
+            // 调试：按采样比例查询并打印当前会话的记忆记录
             debugSessionMemory(sessionId, this.agentName);
             
             // 调用AI模型并获取响应，设置conversation_id关联历史记录
@@ -184,11 +217,6 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
             log.info(content);
             res = ThinkContentUtil.removeBeforeThink(content);
         }
-       // 聊天完成后，更新本次会话的记录：设置agent_name和session_id
-        if (conversationId != null) {
-            updateChatMemoryAgentName(finalAgentName, sessionId, conversationId);
-        }
-        
         return ChatResponseToEntity.getJson(res);
     }
     
@@ -207,7 +235,7 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
         
         // 检测dynamic类型变量
         for (String dynamicKey : dynamicPromptVariableKeys) {
-            if (!providedKeys.contains(dynamicKey)) {
+            if (!providedKeys.contains(dynamicKey) && !CURRENT_DATE_KEYS.contains(dynamicKey)) {
                 log.warn("Agent [{}] - Dynamic variable [{}] is required but not provided", 
                         agentName, dynamicKey);
             }
@@ -224,117 +252,299 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
     
     @Override
     protected void doChatStream(Agent.Request request) throws Exception {
-        // 检测动态和运行时变量是否被传入
+        String connId = request.getConnId();
+        String systemPrompt = renderSystemPrompt(request);
+        List<Message> history = loadResponseCacheHistory(request);
+        String cacheKey = responseCacheKey(request, systemPrompt, history);
+        String message = history != null ? ((Agent.ChatRequest) request).getMessage() : null;
+        String cachedAnswer = cacheKey != null ? responseCache.get(cacheKey, message) : null;
+        if (cachedAnswer != null) {
+            // 命中回答缓存，一次性发送完整回答，不再逐片段回放
+            log.info("Agent [{}] 命中回答缓存", agentName);
+            if (connId != null) {
+                getSseEmitterManager().sendEvent(connId, ResponseAi.ofMessage(cachedAnswer));
+            } else {
+                log.debug("Agent [{}] 缓存回答没有连接可写出，长度: {}", agentName, cachedAnswer.length());
+            }
+            appendExchange(request, cachedAnswer);
+            completeMessageStream(connId);
+            request.fireTerminate();
+            return;
+        }
+        String conversationId = history != null ? resolveConversationId(request) : null;
+        ChatClient.ChatClientRequestSpec promptSpec = history != null
+                ? buildDetachedPrompt(request, systemPrompt, history)
+                : buildStreamPrompt(request, systemPrompt);
+        if (promptSpec == null) {
+            completeMessageStream(connId);
+            request.fireTerminate();
+            return;
+        }
+        if (connId != null && (sseBatchMaxBytes != null || sseBatchMaxLatencyMs != null)) {
+            getSseEmitterManager().configureBatching(connId, sseBatchMaxBytes, sseBatchMaxLatencyMs);
+        }
+        // 启用回答缓存时累积完整回答，正常结束后写入聊天记忆，可缓存时同时写入缓存
+        StringBuilder answer = history != null ? new StringBuilder() : null;
+        promptSpec.stream()
+                .content()
+                // 完成、出错或取消后通知调用方，任务计数覆盖整个流的生命周期
+                .doFinally(signal -> request.fireTerminate())
+                .subscribe(
+                        content -> {
+                            if (answer != null) {
+                                answer.append(content);
+                            }
+                            // 通过SSE发送到前端
+                            if (connId != null) {
+                                getSseEmitterManager().sendEvent(connId, ResponseAi.ofMessage(content));
+                            } else {
+                                // 如果没有连接ID，打印到控制台
+                                System.out.print(content);
+                            }
+                        },
+                        error -> {
+                            log.error("流式聊天发生错误", error);
+                            completeMessageStream(connId);
+                        },
+                        () -> {
+                            log.info("已完成聊天记录的流式响应");
+                            if (answer != null) {
+                                appendExchange(conversationId, message, answer.toString());
+                            }
+                            if (cacheKey != null) {
+                                responseCache.put(cacheKey, message, answer.toString(), responseCacheTtlSeconds);
+                            }
+                            completeMessageStream(connId);
+                        }
+                );
+    }
+
+    @Override
+    protected Flux<String> doChatFlux(Agent.Request request) {
+        // 响应流完成、出错或被取消时触发结束回调
+        return chatFluxSource(request).doFinally(signal -> request.fireTerminate());
+    }
+
+    /**
+     * 构建响应式流式对话的内容流
+     * @param request 请求对象
+     * @return 模型输出的内容片段
+     */
+    private Flux<String> chatFluxSource(Agent.Request request) {
+        // 提示词在调用线程中构建（需持有用户上下文），模型请求在订阅时发出
+        String systemPrompt = renderSystemPrompt(request);
+        List<Message> history = loadResponseCacheHistory(request);
+        String cacheKey = responseCacheKey(request, systemPrompt, history);
+        String message = history != null ? ((Agent.ChatRequest) request).getMessage() : null;
+        String cachedAnswer = cacheKey != null ? responseCache.get(cacheKey, message) : null;
+        String conversationId = history != null ? resolveConversationId(request) : null;
+        if (cachedAnswer != null) {
+            log.info("Agent [{}] 命中回答缓存", agentName);
+            return Flux.just(cachedAnswer)
+                    .doOnComplete(() -> appendExchange(conversationId, message, cachedAnswer));
+        }
+        if (history == null) {
+            ChatClient.ChatClientRequestSpec promptSpec = buildStreamPrompt(request, systemPrompt);
+            return promptSpec != null ? promptSpec.stream().content() : Flux.empty();
+        }
+        ChatClient.ChatClientRequestSpec promptSpec = buildDetachedPrompt(request, systemPrompt, history);
+        return Flux.defer(() -> {
+            StringBuilder answer = new StringBuilder();
+            return promptSpec.stream().content()
+                    .doOnNext(answer::append)
+                    .doOnComplete(() -> {
+                        appendExchange(conversationId, message, answer.toString());
+                        if (cacheKey != null) {
+                            responseCache.put(cacheKey, message, answer.toString(), responseCacheTtlSeconds);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    protected Flux<String> doSpeculativeFlux(Agent.Request request) {
+        if (!(request instanceof Agent.ChatRequest)) {
+            return null;
+        }
+        // 不挂载记忆顾问，手动拼接历史记录，避免被取消的推测执行写入聊天记忆
+        ChatMemory memory = getCachedChatClients().chatMemory;
+        List<Message> history = memory != null ? memory.get(resolveConversationId(request)) : Collections.emptyList();
+        ChatClient.ChatClientRequestSpec promptSpec = buildDetachedPrompt(request, renderSystemPrompt(request), history);
+        String connId = request.getConnId();
+        if (connId != null && (sseBatchMaxBytes != null || sseBatchMaxLatencyMs != null)) {
+            getSseEmitterManager().configureBatching(connId, sseBatchMaxBytes, sseBatchMaxLatencyMs);
+        }
+        return promptSpec.stream().content()
+                .doFinally(signal -> request.fireTerminate());
+    }
+
+    @Override
+    public void commitSpeculation(Agent.Request request, String answer) {
+        appendExchange(request, answer);
+    }
+
+    /**
+     * 将一问一答写入聊天记忆，用于未经过记忆顾问的回答（推测执行、回答缓存）
+     * @param request 请求对象
+     * @param answer 完整回答
+     */
+    private void appendExchange(Agent.Request request, String answer) {
+        if (getCachedChatClients().chatMemory == null || !(request instanceof Agent.ChatRequest)) {
+            return;
+        }
+        appendExchange(resolveConversationId(request), ((Agent.ChatRequest) request).getMessage(), answer);
+    }
+
+    private void appendExchange(String conversationId, String message, String answer) {
+        ChatMemory memory = getCachedChatClients().chatMemory;
+        if (memory == null) {
+            return;
+        }
+        List<Message> exchange = new ArrayList<>(2);
+        exchange.add(new UserMessage(message));
+        exchange.add(new AssistantMessage(answer));
+        memory.add(conversationId, exchange);
+    }
+
+    /**
+     * 启用回答缓存的聊天请求读取一次会话历史，同时用于判断是否可缓存和构建提示词
+     * 这类请求不经过记忆顾问，避免顾问再次读取历史，回答结束后由appendExchange写入聊天记忆
+     * @param request 请求对象
+     * @return 会话历史，未启用记忆时为空列表；未启用回答缓存或不是聊天请求时返回null
+     */
+    private List<Message> loadResponseCacheHistory(Agent.Request request) {
+        if (responseCache == null || !(request instanceof Agent.ChatRequest)) {
+            return null;
+        }
+        ChatMemory memory = getCachedChatClients().chatMemory;
+        return memory != null ? memory.get(resolveConversationId(request)) : Collections.emptyList();
+    }
+
+    /**
+     * 计算回答缓存键
+     * 只缓存单轮聊天请求，且要求当前会话没有历史记录，保证回答与用户上下文无关
+     * @param request 请求对象
+     * @param systemPrompt 渲染后的系统提示词
+     * @param history loadResponseCacheHistory读取的会话历史
+     * @return 缓存键，不可缓存时返回null
+     */
+    private String responseCacheKey(Agent.Request request, String systemPrompt, List<Message> history) {
+        if (history == null || !history.isEmpty()) {
+            return null;
+        }
+        return responseCache.keyOf(agentName, systemPrompt, ((Agent.ChatRequest) request).getMessage());
+    }
+
+    /**
+     * 使用不挂载记忆顾问的流式ChatClient构建聊天请求的提示词，历史记录由调用方传入
+     * @param request 聊天请求
+     * @param systemPrompt 渲染后的系统提示词
+     * @param history 会话历史
+     * @return 提示词
+     */
+    private ChatClient.ChatClientRequestSpec buildDetachedPrompt(Agent.Request request, String systemPrompt,
+                                                                 List<Message> history) {
         checkRequiredVariables(request);
-        // 确保工具被注入到ChatClient中
-        ChatClient chatClient = getChatClient();
-        if (tools != null && !tools.isEmpty()) {
-            chatClient = chatClient.mutate().defaultTools(tools.toArray(new Object[0])).build();
+        ChatClient.ChatClientRequestSpec promptSpec = getCachedChatClients().detachedStreamClient.prompt();
+        if (systemPrompt != null) {
+            promptSpec = promptSpec.system(systemPrompt);
         }
-        
-        // 在调用时构建ChatMemory，确保每次使用最新的记忆配置
-        ChatMemory chatMemory = buildChatMemory(true);
-        if (chatMemory != null) {
-            // 创建带有ChatMemory的ChatClient
-            chatClient = createChatClientWithMemory(chatClient, chatMemory);
-            log.info("已创建带有ChatMemory的ChatClient（流式）");
+        if (!history.isEmpty()) {
+            promptSpec = promptSpec.messages(history);
         }
-        
-        // 创建final变量保存agentName，确保在更新时不会被意外修改
-        final String finalAgentName = this.agentName;
-        
-        // 保存原sessionId，用于存入session_id字段
-        String sessionId;
-        
-        // 根据请求类型处理
+        return promptSpec.user(((Agent.ChatRequest) request).getMessage());
+    }
+
+    /**
+     * 使用请求上下文填充系统提示词模板
+     * @param request 请求对象
+     * @return 完整的系统提示词，未配置系统提示词时返回null
+     */
+    private String renderSystemPrompt(Agent.Request request) {
+        if (!(request instanceof Agent.ChatRequest) || getSystemPromptType() == null || getPromptManager() == null) {
+            return null;
+        }
+        // 使用PromptManager中预编译的模板，以request.getContext()填充模板变量，当前日期按渲染时间填充
+        return renderPrompt(getSystemPromptType(), withCurrentDate(request.getContext()));
+    }
+
+    /**
+     * 补充当前日期变量，请求上下文中已传入时以传入值为准
+     * @param context 请求上下文
+     * @return 模板变量
+     */
+    private static Map<String, Object> withCurrentDate(Map<String, Object> context) {
+        Map<String, Object> variables = context != null ? new HashMap<>(context) : new HashMap<>();
+        String currentDate = java.time.LocalDate.now().toString();
+        for (String key : CURRENT_DATE_KEYS) {
+            variables.putIfAbsent(key, currentDate);
+        }
+        return variables;
+    }
+
+    /**
+     * 获取会话记忆的conversation_id：基于session_id、userId和agent_name生成，确保同一用户同一会话同一智能体共享记忆
+     * 同时登记会话元数据，供记忆写入时填充字段
+     * @param request 请求对象
+     * @return conversation_id
+     */
+    private String resolveConversationId(Agent.Request request) {
+        // 获取会话ID（sessionId），用于存入session_id字段
+        String sessionId = request.getSessionId();
+        // 获取用户ID，确保不同用户之间的聊天记忆隔离
+        String userId = UserContextHolder.getInstance().getUserId();
+        userId = userId != null ? userId : "test";
+        String conversationId = sessionId + "_" + userId + "_" + this.agentName;
+        registerMemoryConversation(conversationId, userId, sessionId);
+        return conversationId;
+    }
+
+    /**
+     * 构建流式对话的提示词，设置conversation_id关联历史记录
+     * @param request 请求对象
+     * @param systemPrompt 渲染后的系统提示词
+     * @return 提示词，不支持的请求类型返回null
+     */
+    private ChatClient.ChatClientRequestSpec buildStreamPrompt(Agent.Request request, String systemPrompt) {
+        // 检测动态和运行时变量是否被传入
+        checkRequiredVariables(request);
+        // 获取缓存的流式ChatClient（已注入工具并按配置挂载ChatMemory）
+        ChatClient chatClient = getCachedChatClients().streamClient;
+
+        if (!(request instanceof Agent.MultiRequest) && !(request instanceof Agent.ChatRequest)) {
+            return null;
+        }
+        final String conversationId = resolveConversationId(request);
+
         if (request instanceof Agent.MultiRequest) {
             Agent.MultiRequest multiRequest = (Agent.MultiRequest) request;
-            // 获取会话ID（sessionId），用于存入session_id字段
-            sessionId = multiRequest.getSessionId();
-            
-            // 获取用户ID，确保不同用户之间的聊天记忆隔离
-            String userId = UserContextHolder.getInstance().getUserId();
-            userId = userId != null ? userId : "test";
-            
-            // 确定最终会话ID：基于session_id、userId和agent_name生成，确保同一用户同一会话同一智能体共享记忆
-            final String conversationId = sessionId + "_" + userId + "_" + this.agentName;
-
             // 处理多请求类型的流式响应，设置conversation_id关联历史记录
-            chatClient.prompt()
+            return chatClient.prompt()
                     .messages(multiRequest.getMessage())
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .stream()
-                    .content()
-                    .subscribe(
-                            content -> {
-                                // 通过SSE发送到前端
-                                if (multiRequest.getConnId() != null) {
-                                    getSseEmitterManager().sendEvent(multiRequest.getConnId(), ResponseAi.ofMessage(content));
-                                } else {
-                                    // 如果没有连接ID，打印到控制台
-                                    System.out.print(content);
-                                }
-                            },
-                            error -> {
-                                log.error("流式聊天发生错误", error);
-                            },
-                            () -> {
-                                log.info("已完成聊天记录的流式响应");
-                                // 聊天完成后，更新本次会话的记录：设置agent_name和session_id
-                                updateChatMemoryAgentName(finalAgentName, sessionId, conversationId);
-                            }
-                    );
-        } else if (request instanceof Agent.ChatRequest) {
-            Agent.ChatRequest chatRequest = (Agent.ChatRequest) request;
-            // 处理聊天请求的流式响应，使用Spring AI推荐的方式构建提示词
-            ChatClient.ChatClientRequestSpec promptSpec = chatClient.prompt();
-            
-            // 如果有系统提示词类型，动态创建带有变量填充的系统提示词
-            if (getSystemPromptType() != null && getPromptManager() != null) {
-                // 1. 从PromptManager获取PromptTemplate
-                PromptTemplate promptTemplate = getPromptTemplate(getSystemPromptType());
-                // 2. 使用request.getContext()填充模板变量，创建完整的系统提示词字符串
-                String systemPrompt = promptTemplate.render(request.getContext());
-                // 3. 使用字符串类型的system方法
-                promptSpec = promptSpec.system(systemPrompt);
-            }
-            
-            // 获取会话ID（sessionId），用于存入session_id字段
-            sessionId = chatRequest.getSessionId();
-            
-            // 获取用户ID，确保不同用户之间的聊天记忆隔离
-            String userId = UserContextHolder.getInstance().getUserId();
-            userId = userId != null ? userId : "test";
-            
-            // 确定最终会话ID：基于session_id、userId和agent_name生成，确保同一用户同一会话同一智能体共享记忆
-            final String conversationId = sessionId + "_" + userId + "_" + this.agentName;
-
-            // 调用AI模型并获取流式响应，设置conversation_id关联历史记录
-            promptSpec.user(chatRequest.getMessage())
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .stream()
-                    .content()
-                    .subscribe(
-                            content -> {
-                                // 通过SSE发送到前端
-                                if (chatRequest.getConnId() != null) {
-                                    getSseEmitterManager().sendEvent(chatRequest.getConnId(), ResponseAi.ofMessage(content));
-                                } else {
-                                    // 如果没有连接ID，打印到控制台
-                                    System.out.print(content);
-                                }
-                            },
-                            error -> {
-                                log.error("流式聊天发生错误", error);
-                            },
-                            () -> {
-                                log.info("已完成聊天记录的流式响应");
-                                // 流式响应完成后，更新当前会话的记录：设置agent_name和session_id
-                                updateChatMemoryAgentName(finalAgentName, sessionId, conversationId);
-                            }
-                    );
-        } else {
-            sessionId = null;
+                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId));
+        }
+
+        Agent.ChatRequest chatRequest = (Agent.ChatRequest) request;
+        // 处理聊天请求的流式响应，使用Spring AI推荐的方式构建提示词
+        ChatClient.ChatClientRequestSpec promptSpec = chatClient.prompt();
+
+        // 如果有系统提示词，使用字符串类型的system方法
+        if (systemPrompt != null) {
+            promptSpec = promptSpec.system(systemPrompt);
+        }
+
+        // 调用AI模型并获取流式响应，设置conversation_id关联历史记录
+        return promptSpec.user(chatRequest.getMessage())
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId));
+    }
+    
+    /**
+     * 流式回答结束（完成或出错），通知SSE管理器写出聚合的回答
+     * @param connId 连接ID
+     */
+    private void completeMessageStream(String connId) {
+        if (connId != null && getSseEmitterManager() != null) {
+            getSseEmitterManager().completeMessageStream(connId);
         }
     }
     
@@ -363,81 +573,129 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
                 .build();
     }
     
+    /**
+     * 获取缓存的ChatClient，首次调用时构建，之后所有请求复用
+     * @return 缓存的ChatClient集合
+     */
+    private CachedChatClients getCachedChatClients() {
+        CachedChatClients clients = this.cachedChatClients;
+        if (clients == null) {
+            synchronized (this) {
+                clients = this.cachedChatClients;
+                if (clients == null) {
+                    clients = buildCachedChatClients();
+                    this.cachedChatClients = clients;
+                }
+            }
+        }
+        return clients;
+    }
+
+    /**
+     * 构建同步和流式两种ChatClient，流式ChatClient额外注入工具
+     * @return 缓存的ChatClient集合
+     */
+    private CachedChatClients buildCachedChatClients() {
+        ChatMemory memory = buildChatMemory();
+
+        ChatClient callClient = getChatClient();
+        ChatClient streamClient = getChatClient();
+        // 确保工具被注入到流式ChatClient中
+        if (tools != null && !tools.isEmpty()) {
+            streamClient = streamClient.mutate().defaultTools(tools.toArray(new Object[0])).build();
+        }
+        if (toolCallbacks != null && !toolCallbacks.isEmpty()) {
+            streamClient = streamClient.mutate().defaultToolCallbacks(toolCallbacks).build();
+        }
+        ChatClient detachedStreamClient = streamClient;
+        if (memory != null) {
+            // 创建带有ChatMemory的ChatClient
+            callClient = createChatClientWithMemory(callClient, memory);
+            streamClient = createChatClientWithMemory(streamClient, memory);
+        }
+        log.info("Agent [{}] ChatClient构建完成，工具数: {}, 工具回调数: {}, ChatMemory: {}", agentName,
+                tools != null ? tools.size() : 0, toolCallbacks != null ? toolCallbacks.size() : 0,
+                memory != null ? "已启用" : "未启用");
+        return new CachedChatClients(callClient, streamClient, detachedStreamClient, memory);
+    }
+
     /**
      * 构建ChatMemory实例
-     * @param isStream 是否为流式请求
-     * @return 构建好的ChatMemory实例
+     * @return 构建好的ChatMemory实例，未启用记忆时返回null
      */
-    private ChatMemory buildChatMemory(boolean isStream) {
+    private ChatMemory buildChatMemory() {
         ChatMemory chatMemory = null;
         if (chatMemoryConfig != null && chatMemoryConfig.isEnabled()) {
-            String logPrefix = isStream ? "（流式）" : "";
-            log.info("正在构建ChatMemory{}{}，配置: memoryType={}, maxMessages={}", 
-                    logPrefix, isStream ? "" : "",
+            log.info("正在构建ChatMemory，配置: memoryType={}, maxMessages={}", 
                     chatMemoryConfig.getMemoryType(), chatMemoryConfig.getMaxMessages());
             
-            // 根据最新配置创建ChatMemory实例
+            // 根据当前配置创建ChatMemory实例
             // 记忆构建使用session_id字段的值，确保构建的记忆是该会话中属于该智能体的记忆
             chatMemory = MessageWindowChatMemory.builder()
-                    .chatMemoryRepository(applicationContext.getBean("chatMemoryRepository", org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository.class))
+                    .chatMemoryRepository(applicationContext.getBean("cachingChatMemoryRepository", ChatMemoryRepository.class))
                     .maxMessages(chatMemoryConfig.getMaxMessages())
                     .build();
-            
-            log.info("ChatMemory{}{}构建完成，maxMessages={}", 
-                    logPrefix, isStream ? "" : "", chatMemoryConfig.getMaxMessages());
         } else {
-            log.info("未构建ChatMemory{}{}，原因: chatMemoryConfig={}, isEnabled={}", 
-                    isStream ? "（流式）" : "", isStream ? "" : "",
+            log.info("未构建ChatMemory，原因: chatMemoryConfig={}, isEnabled={}", 
                     chatMemoryConfig, chatMemoryConfig != null ? chatMemoryConfig.isEnabled() : false);
         }
         return chatMemory;
     }
+
+    /**
+     * 获取该Agent使用的ChatMemory
+     * @return ChatMemory实例，未启用记忆时返回null
+     */
+    public ChatMemory getAgentChatMemory() {
+        return getCachedChatClients().chatMemory;
+    }
     
     /**
-     * 更新聊天记录的agent_name和session_id
-     * @param agentName 智能体名称
-     * @param sessionId 会话ID
+     * 登记本次对话的元数据，写入聊天记忆时直接填充user_id、agent_name和session_id
      * @param conversationId 对话ID
+     * @param userId 用户ID
+     * @param sessionId 会话ID
      */
-    private void updateChatMemoryAgentName(String agentName, String sessionId, String conversationId) {
-        if (jdbcTemplate != null) {
-            String userId = UserContextHolder.getInstance().getUserId();
-            userId = userId != null ? userId : "test";
-            
-            // 更新当前conversation_id下的所有记录：设置agent_name和session_id
-            String updateSql = "UPDATE SPRING_AI_CHAT_MEMORY SET agent_name = ?, session_id = ? WHERE conversation_id = ? AND user_id = ? AND agent_name IS NULL;";
-            int updatedCount = jdbcTemplate.update(updateSql, agentName, sessionId, conversationId, userId);
-            
-            log.info("已更新聊天记录的agent_name: {}, session_id: {}, conversation_id: {}, 用户ID: {}, 更新数量: {}", 
-                    agentName, sessionId, conversationId, userId, updatedCount);
+    private void registerMemoryConversation(String conversationId, String userId, String sessionId) {
+        if (applicationContext == null || chatMemoryConfig == null || !chatMemoryConfig.isEnabled()) {
+            return;
+        }
+        ChatMemoryRepository repository = applicationContext.getBean("cachingChatMemoryRepository", ChatMemoryRepository.class);
+        if (repository instanceof CachingChatMemoryRepository cachingRepository) {
+            cachingRepository.registerConversation(conversationId, userId, agentName, sessionId);
         }
     }
     
     /**
-     * 调试：查询并打印当前会话的记忆记录
+     * 调试：按chat.memory.debug-sample-rate采样查询并打印当前会话的记忆记录
      * @param sessionId 会话ID
      * @param agentName 智能体名称
      */
     private void debugSessionMemory(String sessionId, String agentName) {
-        if (jdbcTemplate != null && sessionId != null) {
-            String userId = UserContextHolder.getInstance().getUserId();
-            userId = userId != null ? userId : "test";
-            
-            // 执行SQL查询，查看当前会话的记忆记录
-            String debugSql = "SELECT id, content, type, conversation_id, timestamp FROM SPRING_AI_CHAT_MEMORY WHERE session_id = ? AND agent_name = ? AND user_id = ? ORDER BY timestamp DESC LIMIT ?";
-            List<Map<String, Object>> memoryRecords = jdbcTemplate.queryForList(debugSql, sessionId, agentName, userId, chatMemoryConfig.getMaxMessages());
-            
-            log.info("=== 调试：当前会话记忆记录查询结果 ===");
-            log.info("SQL: {}", debugSql);
-            log.info("参数: session_id={}, agent_name={}, user_id={}, limit={}", sessionId, agentName, userId, chatMemoryConfig.getMaxMessages());
-            log.info("查询到 {} 条记录", memoryRecords.size());
-            for (int i = 0; i < memoryRecords.size(); i++) {
-                Map<String, Object> record = memoryRecords.get(i);
-                log.info("记录[{}]: id={}, type={}, content={}, timestamp={}, conversation_id={}", 
-                        i, record.get("id"), record.get("type"), record.get("content"), record.get("timestamp"), record.get("conversation_id"));
-            }
-            log.info("=================================");
+        if (jdbcTemplate == null || sessionId == null || chatMemoryConfig == null || applicationContext == null) {
+            return;
         }
+        double sampleRate = applicationContext.getBean(ChatMemoryProperties.class).getDebugSampleRate();
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        String userId = UserContextHolder.getInstance().getUserId();
+        userId = userId != null ? userId : "test";
+        
+        // 执行SQL查询，查看当前会话的记忆记录
+        String debugSql = "SELECT id, content, type, conversation_id, timestamp FROM SPRING_AI_CHAT_MEMORY WHERE session_id = ? AND agent_name = ? AND user_id = ? ORDER BY timestamp DESC LIMIT ?";
+        List<Map<String, Object>> memoryRecords = jdbcTemplate.queryForList(debugSql, sessionId, agentName, userId, chatMemoryConfig.getMaxMessages());
+        
+        log.info("=== 调试：当前会话记忆记录查询结果 ===");
+        log.info("SQL: {}", debugSql);
+        log.info("参数: session_id={}, agent_name={}, user_id={}, limit={}", sessionId, agentName, userId, chatMemoryConfig.getMaxMessages());
+        log.info("查询到 {} 条记录", memoryRecords.size());
+        for (int i = 0; i < memoryRecords.size(); i++) {
+            Map<String, Object> record = memoryRecords.get(i);
+            log.info("记录[{}]: id={}, type={}, content={}, timestamp={}, conversation_id={}", 
+                    i, record.get("id"), record.get("type"), record.get("content"), record.get("timestamp"), record.get("conversation_id"));
+        }
+        log.info("=================================");
     }
     
 
@@ -465,6 +723,16 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
     
     public void setTools(List<Object> tools) {
         this.tools = tools;
+        this.cachedChatClients = null;
+    }
+    
+    public List<ToolCallback> getToolCallbacks() {
+        return toolCallbacks;
+    }
+    
+    public void setToolCallbacks(List<ToolCallback> toolCallbacks) {
+        this.toolCallbacks = toolCallbacks;
+        this.cachedChatClients = null;
     }
     
     public Set<String> getDynamicPromptVariableKeys() {
@@ -497,9 +765,48 @@ public class GenericDynamicAgent extends BaseAgent<Object> {
 
     public void setChatMemoryConfig(ChatMemoryConfig chatMemoryConfig) {
         this.chatMemoryConfig = chatMemoryConfig;
+        this.cachedChatClients = null;
     }
     
+    public void setSseBatchMaxBytes(Integer sseBatchMaxBytes) {
+        this.sseBatchMaxBytes = sseBatchMaxBytes;
+    }
+
+    public void setSseBatchMaxLatencyMs(Integer sseBatchMaxLatencyMs) {
+        this.sseBatchMaxLatencyMs = sseBatchMaxLatencyMs;
+    }
+
+    public void setResponseCache(AgentResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public void setResponseCacheTtlSeconds(Integer responseCacheTtlSeconds) {
+        this.responseCacheTtlSeconds = responseCacheTtlSeconds;
+    }
+
     public void setApplicationContext(org.springframework.context.ApplicationContext applicationContext) {
         this.applicationContext = applicationContext;
+        this.cachedChatClients = null;
+    }
+
+    /**
+     * 缓存的ChatClient集合
+     */
+    private static class CachedChatClients {
+        // 同步调用使用，不注入工具
+        private final ChatClient callClient;
+        // 流式调用使用，注入工具
+        private final ChatClient streamClient;
+        // 推测执行使用，注入工具但不挂载记忆顾问
+        private final ChatClient detachedStreamClient;
+        private final ChatMemory chatMemory;
+
+        CachedChatClients(ChatClient callClient, ChatClient streamClient, ChatClient detachedStreamClient,
+                          ChatMemory chatMemory) {
+            this.callClient = callClient;
+            this.streamClient = streamClient;
+            this.detachedStreamClient = detachedStreamClient;
+            this.chatMemory = chatMemory;
+        }
     }
 }
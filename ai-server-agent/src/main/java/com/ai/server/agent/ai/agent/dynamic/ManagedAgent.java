@@ -0,0 +1,144 @@
+package com.ai.server.agent.ai.agent.dynamic;
+
+import com.ai.server.agent.ai.agent.core.Agent;
+import com.ai.server.agent.ai.common.executor.RequestContextSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * 按名称引用的动态Agent，每次调用时记录任务开始并获取Agent当前代次的引用，调用或响应流结束时记录任务完成并释放
+ * 调用期间Agent被重新加载也继续使用调用开始时的实例，旧代次在所有引用释放后退役
+ * @param <T> 返回结果类型
+ */
+@Slf4j
+final class ManagedAgent<T> implements Agent<T> {
+
+    private final DynamicAgentManager agentManager;
+
+    private final AgentTaskStatusManager taskStatusManager;
+
+    private final String agentName;
+
+    ManagedAgent(DynamicAgentManager agentManager, AgentTaskStatusManager taskStatusManager, String agentName) {
+        this.agentManager = agentManager;
+        this.taskStatusManager = taskStatusManager;
+        this.agentName = agentName;
+    }
+
+    @Override
+    public T chat(Request request, String type) {
+        AgentHandle handle = acquire();
+        try {
+            Agent<T> agent = handle.getAgent();
+            return agent.chat(request, type);
+        } finally {
+            release(handle);
+        }
+    }
+
+    /**
+     * chatStream发起模型请求后即返回，任务计数和代次引用在响应流结束时才释放
+     */
+    @Override
+    public void chatStream(Request request) throws Exception {
+        AgentHandle handle = acquire();
+        releaseOnTerminate(request, handle);
+        try {
+            handle.getAgent().chatStream(request);
+        } catch (Exception e) {
+            request.fireTerminate();
+            throw e;
+        }
+    }
+
+    /**
+     * 任务计数和代次引用在订阅时才获取，未被订阅的响应流（如订阅前已被取消的Flux.concat后续源）不占用代次
+     * 订阅可能发生在其他线程，构建提示词时恢复调用线程的用户上下文
+     */
+    @Override
+    public Flux<String> chatFlux(Request request) {
+        RequestContextSnapshot snapshot = RequestContextSnapshot.capture();
+        return Flux.defer(snapshot.wrapSupplier(() -> openChatFlux(request)));
+    }
+
+    private Flux<String> openChatFlux(Request request) {
+        AgentHandle handle = acquire();
+        releaseOnTerminate(request, handle);
+        try {
+            Agent<T> agent = handle.getAgent();
+            return agent.chatFlux(request).doFinally(signal -> request.fireTerminate());
+        } catch (RuntimeException e) {
+            request.fireTerminate();
+            throw e;
+        }
+    }
+
+    /**
+     * 需要立即判断是否支持推测执行，任务计数和代次引用在调用时获取，调用方拿到响应流后立即订阅
+     */
+    @Override
+    public Flux<String> speculativeFlux(Request request) {
+        AgentHandle handle = acquire();
+        releaseOnTerminate(request, handle);
+        try {
+            Agent<T> agent = handle.getAgent();
+            Flux<String> source = agent.speculativeFlux(request);
+            if (source == null) {
+                request.fireTerminate();
+                return null;
+            }
+            return source.doFinally(signal -> request.fireTerminate());
+        } catch (RuntimeException e) {
+            request.fireTerminate();
+            throw e;
+        }
+    }
+
+    /**
+     * 推测执行的响应流结束后才提交，使用提交时的当前代次写入聊天记忆
+     */
+    @Override
+    public void commitSpeculation(Request request, String answer) {
+        AgentHandle handle = acquire();
+        try {
+            handle.getAgent().commitSpeculation(request, answer);
+        } finally {
+            release(handle);
+        }
+    }
+
+    /**
+     * 记录任务开始并获取Agent当前代次的引用
+     */
+    private AgentHandle acquire() {
+        taskStatusManager.incrementTaskCount(agentName);
+        AgentHandle handle = agentManager.acquireAgent(agentName);
+        if (handle == null) {
+            log.error("Agent not found: {}", agentName);
+            taskStatusManager.decrementTaskCount(agentName);
+            throw new IllegalArgumentException("Agent not found: " + agentName);
+        }
+        return handle;
+    }
+
+    /**
+     * 释放代次引用并记录任务完成
+     */
+    private void release(AgentHandle handle) {
+        handle.close();
+        taskStatusManager.decrementTaskCount(agentName);
+    }
+
+    /**
+     * 请求结束时释放代次引用并记录任务完成，保留调用方设置的回调
+     */
+    private void releaseOnTerminate(Request request, AgentHandle handle) {
+        Runnable onTerminate = request.getOnTerminate();
+        request.setOnTerminate(() -> {
+            release(handle);
+            if (onTerminate != null) {
+                onTerminate.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package com.ai.server.agent.ai.agent.dynamic;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具回调注册表，按Bean名称缓存工具Bean上@Tool方法对应的ToolCallback
+ * 工具Bean只在首次使用、应用上下文刷新或Agent重新加载时解析，模型调用工具时直接调用Bean上的方法
+ */
+@Slf4j
+@Component
+public class ToolCallbackRegistry {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    /**
+     * 工具回调缓存，key为工具Bean名称
+     */
+    private final Map<String, List<ToolCallback>> callbacks = new ConcurrentHashMap<>();
+
+    /**
+     * 按工具Bean名称获取工具回调，按名称顺序合并
+     * @param toolNames 工具Bean名称列表
+     * @return 工具回调列表，不存在或解析失败的工具跳过
+     */
+    public List<ToolCallback> resolve(Collection<String> toolNames) {
+        List<ToolCallback> result = new ArrayList<>();
+        if (toolNames == null) {
+            return result;
+        }
+        for (String toolName : toolNames) {
+            List<ToolCallback> toolCallbacks = callbacks.get(toolName);
+            if (toolCallbacks == null) {
+                toolCallbacks = load(toolName);
+                if (toolCallbacks == null) {
+                    continue;
+                }
+                callbacks.put(toolName, toolCallbacks);
+            }
+            result.addAll(toolCallbacks);
+        }
+        return result;
+    }
+
+    /**
+     * 重新解析指定的工具，用于Agent重新加载
+     * @param toolNames 工具Bean名称列表
+     */
+    public void refresh(Collection<String> toolNames) {
+        if (toolNames != null) {
+            toolNames.forEach(callbacks::remove);
+        }
+    }
+
+    /**
+     * 工具Bean是否存在
+     * @param toolName 工具Bean名称
+     */
+    public boolean contains(String toolName) {
+        return callbacks.containsKey(toolName) || applicationContext.containsBean(toolName);
+    }
+
+    /**
+     * 应用上下文刷新后工具Bean可能已重建，清空缓存
+     */
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() == applicationContext && !callbacks.isEmpty()) {
+            log.info("Application context refreshed, clearing {} cached tool(s)", callbacks.size());
+            callbacks.clear();
+        }
+    }
+
+    /**
+     * 从应用上下文获取工具Bean并解析@Tool方法
+     * @param toolName 工具Bean名称
+     * @return 工具回调，工具不存在或解析失败时返回null
+     */
+    private List<ToolCallback> load(String toolName) {
+        if (!applicationContext.containsBean(toolName)) {
+            log.warn("Tool not found in context: {}", toolName);
+            return null;
+        }
+        try {
+            Object tool = applicationContext.getBean(toolName);
+            ToolCallback[] toolCallbacks = MethodToolCallbackProvider.builder()
+                    .toolObjects(tool)
+                    .build()
+                    .getToolCallbacks();
+            log.info("Resolved tool: {}, {} callback(s)", toolName, toolCallbacks.length);
+            return List.of(toolCallbacks);
+        } catch (Exception e) {
+            log.error("Failed to resolve tool: {}", toolName, e);
+            return null;
+        }
+    }
+}
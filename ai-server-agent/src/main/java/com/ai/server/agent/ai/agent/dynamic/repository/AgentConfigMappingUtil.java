@@ -3,13 +3,171 @@ package com.ai.server.agent.ai.agent.dynamic.repository;
 import com.ai.server.agent.ai.agent.dynamic.ChatMemoryConfig;
 import com.ai.server.agent.ai.agent.dynamic.DynamicAgentConfig;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
 
 /**
  * Agent配置映射工具类，用于将数据库查询结果映射为Agent配置对象
  */
 public class AgentConfigMappingUtil {
 
+    /**
+     * 批量查询关联表时单条SQL中IN列表的最大长度
+     */
+    public static final int IN_BATCH_SIZE = 500;
+
+    /**
+     * 批量加载时查询工具关联的SQL前缀，后接IN列表
+     */
+    public static final String TOOL_SQL_PREFIX = "SELECT agent_id, tool_name FROM agent_tool_rel WHERE agent_id IN ";
+    public static final String TOOL_SQL_SUFFIX = " ORDER BY agent_id, tool_order";
+
+    /**
+     * 批量加载时查询提示词变量的SQL前缀，一次取出static、dynamic和runtime三类变量
+     */
+    public static final String PROMPT_VAR_SQL_PREFIX = "SELECT agent_id, var_key, var_value, var_type FROM agent_prompt_var WHERE agent_id IN ";
+    public static final String PROMPT_VAR_SQL_SUFFIX = " ORDER BY agent_id, id";
+
+    /**
+     * 批量加载时查询聊天记忆配置的SQL前缀
+     */
+    public static final String MEMORY_SQL_PREFIX = "SELECT * FROM chat_memory_config WHERE agent_id IN ";
+
+    /**
+     * 配置相关表，变更检测时查询各表的最大更新时间和行数
+     */
+    public static final List<String> CONFIG_TABLES = List.of("agent_config", "agent_prompt_var", "agent_tool_rel", "chat_memory_config");
+
+    /**
+     * 查询各配置表的水位：最大更新时间（格式化为字符串，便于原样作为参数回传）、行数和按agent_id计算的校验和
+     * 校验和为各行agent_id的CRC32之和，任一Agent的行数变化都会改变校验和，用于发现行数不变时的删除
+     */
+    public static final String WATERMARK_SQL = buildWatermarkSql();
+
+    private static String buildWatermarkSql() {
+        StringJoiner joiner = new StringJoiner(" UNION ALL ");
+        for (String table : CONFIG_TABLES) {
+            joiner.add("SELECT '" + table + "' AS table_name, DATE_FORMAT(MAX(update_time), '%Y-%m-%d %H:%i:%s') AS max_update_time, COUNT(*) AS row_count, "
+                    + "COALESCE(SUM(CRC32(agent_id)), 0) AS agent_checksum FROM " + table);
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 生成查询指定时间之后有更新的agent_id的SQL，每个表一个参数
+     * @param tables 需要查询的表，必须来自CONFIG_TABLES
+     * @return SQL语句
+     */
+    public static String changedAgentIdsSql(List<String> tables) {
+        StringJoiner joiner = new StringJoiner(" UNION ");
+        for (String table : tables) {
+            if (!CONFIG_TABLES.contains(table)) {
+                throw new IllegalArgumentException("Unknown config table: " + table);
+            }
+            joiner.add("SELECT agent_id FROM " + table + " WHERE update_time >= ?");
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 生成IN子句的占位符，如(?, ?, ?)
+     * @param size 参数个数
+     * @return 占位符
+     */
+    public static String inPlaceholders(int size) {
+        StringJoiner joiner = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < size; i++) {
+            joiner.add("?");
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 将Agent ID按IN_BATCH_SIZE分组
+     * @param agentIds Agent ID列表
+     * @return 分组后的Agent ID
+     */
+    public static List<List<Object>> partitionAgentIds(List<String> agentIds) {
+        List<List<Object>> batches = new ArrayList<>();
+        for (int i = 0; i < agentIds.size(); i += IN_BATCH_SIZE) {
+            batches.add(new ArrayList<>(agentIds.subList(i, Math.min(i + IN_BATCH_SIZE, agentIds.size()))));
+        }
+        return batches;
+    }
+
+    /**
+     * 提取Agent配置行中的agent_id
+     * @param agentRows agent_config查询结果
+     * @return Agent ID列表
+     */
+    public static List<String> agentIdsOf(List<Map<String, Object>> agentRows) {
+        List<String> agentIds = new ArrayList<>(agentRows.size());
+        for (Map<String, Object> row : agentRows) {
+            String agentId = (String) row.get("agent_id");
+            if (agentId != null) {
+                agentIds.add(agentId);
+            }
+        }
+        return agentIds;
+    }
+
+    /**
+     * 将批量查询到的Agent配置及其关联的工具、提示词变量和聊天记忆配置在内存中组装
+     * @param agentRows agent_config查询结果
+     * @param toolRows agent_tool_rel查询结果，需按agent_id和tool_order排序
+     * @param promptVarRows agent_prompt_var查询结果
+     * @param memoryRows chat_memory_config查询结果
+     * @return Agent配置列表，顺序与agentRows一致
+     */
+    public static List<DynamicAgentConfig> assembleAgentConfigs(List<Map<String, Object>> agentRows,
+                                                                List<Map<String, Object>> toolRows,
+                                                                List<Map<String, Object>> promptVarRows,
+                                                                List<Map<String, Object>> memoryRows) {
+        Map<String, List<String>> toolNames = new HashMap<>();
+        for (Map<String, Object> row : toolRows) {
+            toolNames.computeIfAbsent((String) row.get("agent_id"), k -> new ArrayList<>())
+                    .add((String) row.get("tool_name"));
+        }
+
+        Map<String, Map<String, Object>> staticVariables = new HashMap<>();
+        Map<String, List<String>> dynamicKeys = new HashMap<>();
+        Map<String, List<String>> runtimeKeys = new HashMap<>();
+        for (Map<String, Object> row : promptVarRows) {
+            String agentId = (String) row.get("agent_id");
+            String varKey = (String) row.get("var_key");
+            String varType = (String) row.get("var_type");
+            if ("static".equals(varType)) {
+                staticVariables.computeIfAbsent(agentId, k -> new HashMap<>()).put(varKey, row.get("var_value"));
+            } else if ("dynamic".equals(varType)) {
+                dynamicKeys.computeIfAbsent(agentId, k -> new ArrayList<>()).add(varKey);
+            } else if ("runtime".equals(varType)) {
+                runtimeKeys.computeIfAbsent(agentId, k -> new ArrayList<>()).add(varKey);
+            }
+        }
+
+        // 每个Agent只取第一条聊天记忆配置
+        Map<String, ChatMemoryConfig> memoryConfigs = new HashMap<>();
+        for (Map<String, Object> row : memoryRows) {
+            memoryConfigs.putIfAbsent((String) row.get("agent_id"), mapToChatMemoryConfig(row));
+        }
+
+        List<DynamicAgentConfig> configs = new ArrayList<>(agentRows.size());
+        for (Map<String, Object> row : agentRows) {
+            String agentId = (String) row.get("agent_id");
+            DynamicAgentConfig config = mapToDynamicAgentConfig(row);
+            config.setToolNames(toolNames.getOrDefault(agentId, new ArrayList<>()));
+            config.setPromptVariables(staticVariables.getOrDefault(agentId, new HashMap<>()));
+            config.setDynamicPromptVariableKeys(dynamicKeys.getOrDefault(agentId, new ArrayList<>()));
+            config.setRuntimePromptVariableKeys(runtimeKeys.getOrDefault(agentId, new ArrayList<>()));
+            config.setChatMemoryConfig(memoryConfigs.get(agentId));
+            configs.add(config);
+        }
+        return configs;
+    }
+
     /**
      * 将数据库查询结果映射为DynamicAgentConfig对象
      * @param map 数据库查询结果
@@ -22,10 +180,29 @@ public class AgentConfigMappingUtil {
         config.setAgentType((String) map.get("agent_type"));
         config.setEnabled((Boolean) map.get("enabled"));
         config.setDescription((String) map.get("description"));
+        config.setSseBatchMaxBytes(toInteger(map.get("sse_batch_max_bytes")));
+        config.setSseBatchMaxLatencyMs(toInteger(map.get("sse_batch_max_latency_ms")));
+        config.setResponseCacheEnabled(toBoolean(map.get("response_cache_enabled")));
+        config.setResponseCacheTtlSeconds(toInteger(map.get("response_cache_ttl_seconds")));
         // hasTools字段会在setToolNames方法中自动设置
         return config;
     }
 
+    /**
+     * 将水位查询结果映射为ConfigTableWatermark对象
+     * @param map 数据库查询结果
+     * @return ConfigTableWatermark对象
+     */
+    public static ConfigTableWatermark mapToWatermark(Map<String, Object> map) {
+        Object maxUpdateTime = map.get("max_update_time");
+        Object rowCount = map.get("row_count");
+        Object agentChecksum = map.get("agent_checksum");
+        return new ConfigTableWatermark((String) map.get("table_name"),
+                maxUpdateTime != null ? maxUpdateTime.toString() : null,
+                rowCount instanceof Number ? ((Number) rowCount).longValue() : 0,
+                agentChecksum instanceof Number ? ((Number) agentChecksum).longValue() : 0);
+    }
+
     /**
      * 将数据库查询结果映射为ChatMemoryConfig对象
      * @param map 数据库查询结果
@@ -48,4 +225,25 @@ public class AgentConfigMappingUtil {
         chatMemoryConfig.setEnabled((Boolean) map.get("enabled"));
         return chatMemoryConfig;
     }
+
+    /**
+     * 将数值类型的字段转换为Integer，为空时返回null
+     * @param value 字段值
+     * @return Integer值
+     */
+    private static Integer toInteger(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    /**
+     * 将TINYINT(1)或BOOLEAN类型的字段转换为boolean，为空时返回false
+     * @param value 字段值
+     * @return boolean值
+     */
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value instanceof Number && ((Number) value).intValue() != 0;
+    }
 }
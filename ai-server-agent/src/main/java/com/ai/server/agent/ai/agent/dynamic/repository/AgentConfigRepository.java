@@ -2,7 +2,10 @@ package com.ai.server.agent.ai.agent.dynamic.repository;
 
 import com.ai.server.agent.ai.agent.dynamic.DynamicAgentConfig;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Agent配置仓库接口，定义Agent配置的访问方法
@@ -21,4 +24,24 @@ public interface AgentConfigRepository {
      * @return Agent配置
      */
     DynamicAgentConfig findByAgentName(String agentName);
+
+    /**
+     * 根据Agent ID批量获取启用的Agent配置
+     * @param agentIds Agent ID集合
+     * @return 启用的Agent配置列表，已禁用或不存在的Agent不返回
+     */
+    List<DynamicAgentConfig> findEnabledAgentsByIds(Collection<String> agentIds);
+
+    /**
+     * 获取各配置表的水位
+     * @return 各配置表的最大更新时间和行数
+     */
+    List<ConfigTableWatermark> findConfigWatermarks();
+
+    /**
+     * 获取指定时间之后有更新的Agent ID
+     * @param sinceByTable 表名 -> 起始更新时间（包含）
+     * @return Agent ID集合
+     */
+    Set<String> findAgentIdsUpdatedSince(Map<String, String> sinceByTable);
 }
@@ -0,0 +1,34 @@
+package com.ai.server.agent.ai.agent.dynamic.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 配置表水位，用于增量检测配置变更
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfigTableWatermark {
+
+    /**
+     * 表名
+     */
+    private String tableName;
+
+    /**
+     * 最大更新时间，格式为yyyy-MM-dd HH:mm:ss，空表为null
+     */
+    private String maxUpdateTime;
+
+    /**
+     * 行数
+     */
+    private long rowCount;
+
+    /**
+     * 各行agent_id的CRC32之和，与行数一起用于发现记录的新增和删除
+     */
+    private long agentChecksum;
+}
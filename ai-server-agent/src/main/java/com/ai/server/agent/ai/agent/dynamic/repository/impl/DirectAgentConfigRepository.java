@@ -1,18 +1,20 @@
 package com.ai.server.agent.ai.agent.dynamic.repository.impl;
 
 import com.ai.server.agent.ai.agent.dynamic.repository.AgentConfigMappingUtil;
-import com.ai.server.agent.ai.agent.dynamic.ChatMemoryConfig;
 import com.ai.server.agent.ai.agent.dynamic.DynamicAgentConfig;
 import com.ai.server.agent.ai.agent.dynamic.repository.AgentConfigRepository;
+import com.ai.server.agent.ai.agent.dynamic.repository.ConfigTableWatermark;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 直接访问数据库的Agent配置仓库实现
@@ -30,37 +32,8 @@ public class DirectAgentConfigRepository implements AgentConfigRepository {
         String sql = "SELECT * FROM agent_config WHERE enabled = 1";
         List<Map<String, Object>> agentConfigs = jdbcTemplate.queryForList(sql);
         
-        List<DynamicAgentConfig> dynamicAgentConfigs = new ArrayList<>();
-        
-        // 2. 为每个Agent配置查询关联的工具、提示词变量和聊天记忆配置
-        for (Map<String, Object> agentConfig : agentConfigs) {
-            DynamicAgentConfig dynamicAgentConfig = AgentConfigMappingUtil.mapToDynamicAgentConfig(agentConfig);
-            
-            // 查询工具列表
-            String agentId = (String) agentConfig.get("agent_id");
-            List<String> toolNames = findToolNamesByAgentId(agentId);
-            dynamicAgentConfig.setToolNames(toolNames);
-            
-            // 查询提示词变量
-            Map<String, Object> promptVariables = findPromptVariablesByAgentId(agentId);
-            dynamicAgentConfig.setPromptVariables(promptVariables);
-            
-            // 查询dynamic类型的提示词变量键名
-            List<String> dynamicKeys = findDynamicPromptVariableKeysByAgentId(agentId);
-            dynamicAgentConfig.setDynamicPromptVariableKeys(dynamicKeys);
-            
-            // 查询runtime类型的提示词变量键名
-            List<String> runtimeKeys = findRuntimePromptVariableKeysByAgentId(agentId);
-            dynamicAgentConfig.setRuntimePromptVariableKeys(runtimeKeys);
-            
-            // 查询聊天记忆配置
-            ChatMemoryConfig chatMemoryConfig = findChatMemoryConfigByAgentId(agentId);
-            dynamicAgentConfig.setChatMemoryConfig(chatMemoryConfig);
-            
-            dynamicAgentConfigs.add(dynamicAgentConfig);
-        }
-        
-        return dynamicAgentConfigs;
+        // 2. 批量查询所有Agent关联的工具、提示词变量和聊天记忆配置
+        return loadAgentConfigs(agentConfigs);
     }
     
     @Override
@@ -73,95 +46,63 @@ public class DirectAgentConfigRepository implements AgentConfigRepository {
             return null;
         }
         
-        Map<String, Object> agentConfig = agentConfigs.get(0);
-        DynamicAgentConfig dynamicAgentConfig = AgentConfigMappingUtil.mapToDynamicAgentConfig(agentConfig);
-        
-        // 查询工具列表
-        String agentId = (String) agentConfig.get("agent_id");
-        List<String> toolNames = findToolNamesByAgentId(agentId);
-        dynamicAgentConfig.setToolNames(toolNames);
-        
-        // 查询提示词变量
-        Map<String, Object> promptVariables = findPromptVariablesByAgentId(agentId);
-        dynamicAgentConfig.setPromptVariables(promptVariables);
-        
-        // 查询dynamic类型的提示词变量键名
-        List<String> dynamicKeys = findDynamicPromptVariableKeysByAgentId(agentId);
-        dynamicAgentConfig.setDynamicPromptVariableKeys(dynamicKeys);
-        
-        // 查询runtime类型的提示词变量键名
-        List<String> runtimeKeys = findRuntimePromptVariableKeysByAgentId(agentId);
-        dynamicAgentConfig.setRuntimePromptVariableKeys(runtimeKeys);
-        
-        // 查询聊天记忆配置
-        ChatMemoryConfig chatMemoryConfig = findChatMemoryConfigByAgentId(agentId);
-        dynamicAgentConfig.setChatMemoryConfig(chatMemoryConfig);
-        
-        return dynamicAgentConfig;
+        return loadAgentConfigs(agentConfigs.subList(0, 1)).get(0);
     }
     
-
-    
-    /**
-     * 根据Agent ID查询工具名称列表
-     * @param agentId Agent ID
-     * @return 工具名称列表
-     */
-    private List<String> findToolNamesByAgentId(String agentId) {
-        String sql = "SELECT tool_name FROM agent_tool_rel WHERE agent_id = ? ORDER BY tool_order";
-        return jdbcTemplate.queryForList(sql, String.class, agentId);
-    }
-    
-    /**
-     * 根据Agent ID查询提示词变量
-     * @param agentId Agent ID
-     * @return 提示词变量映射
-     */
-    private Map<String, Object> findPromptVariablesByAgentId(String agentId) {
-        String sql = "SELECT var_key, var_value FROM agent_prompt_var WHERE agent_id = ?";
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, agentId);
-        
-        Map<String, Object> variables = new HashMap<>();
-        for (Map<String, Object> row : rows) {
-            variables.put((String) row.get("var_key"), row.get("var_value"));
+    @Override
+    public List<DynamicAgentConfig> findEnabledAgentsByIds(Collection<String> agentIds) {
+        List<Map<String, Object>> agentConfigs = new ArrayList<>();
+        for (List<Object> batch : AgentConfigMappingUtil.partitionAgentIds(new ArrayList<>(agentIds))) {
+            String sql = "SELECT * FROM agent_config WHERE enabled = 1 AND agent_id IN " + AgentConfigMappingUtil.inPlaceholders(batch.size());
+            agentConfigs.addAll(jdbcTemplate.queryForList(sql, batch.toArray()));
         }
-        
-        return variables;
+        return loadAgentConfigs(agentConfigs);
     }
     
-    /**
-     * 根据Agent ID查询dynamic类型的提示词变量键名
-     * @param agentId Agent ID
-     * @return dynamic类型的提示词变量键名列表
-     */
-    private List<String> findDynamicPromptVariableKeysByAgentId(String agentId) {
-        String sql = "SELECT var_key FROM agent_prompt_var WHERE agent_id = ? AND var_type = 'dynamic'";
-        return jdbcTemplate.queryForList(sql, String.class, agentId);
+    @Override
+    public List<ConfigTableWatermark> findConfigWatermarks() {
+        List<ConfigTableWatermark> watermarks = new ArrayList<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(AgentConfigMappingUtil.WATERMARK_SQL)) {
+            watermarks.add(AgentConfigMappingUtil.mapToWatermark(row));
+        }
+        return watermarks;
     }
     
-    /**
-     * 根据Agent ID查询runtime类型的提示词变量键名
-     * @param agentId Agent ID
-     * @return runtime类型的提示词变量键名列表
-     */
-    private List<String> findRuntimePromptVariableKeysByAgentId(String agentId) {
-        String sql = "SELECT var_key FROM agent_prompt_var WHERE agent_id = ? AND var_type = 'runtime'";
-        return jdbcTemplate.queryForList(sql, String.class, agentId);
+    @Override
+    public Set<String> findAgentIdsUpdatedSince(Map<String, String> sinceByTable) {
+        Set<String> agentIds = new HashSet<>();
+        if (sinceByTable.isEmpty()) {
+            return agentIds;
+        }
+        List<String> tables = new ArrayList<>(sinceByTable.keySet());
+        String sql = AgentConfigMappingUtil.changedAgentIdsSql(tables);
+        Object[] args = tables.stream().map(sinceByTable::get).toArray();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(sql, args)) {
+            agentIds.add((String) row.get("agent_id"));
+        }
+        return agentIds;
     }
     
     /**
-     * 根据Agent ID查询聊天记忆配置
-     * @param agentId Agent ID
-     * @return 聊天记忆配置
+     * 按agent_id IN (...)批量查询各关联表，每张表每批只查询一次，然后在内存中组装
+     * @param agentConfigs agent_config查询结果
+     * @return Agent配置列表
      */
-    private ChatMemoryConfig findChatMemoryConfigByAgentId(String agentId) {
-        String sql = "SELECT * FROM chat_memory_config WHERE agent_id = ?";
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, agentId);
-        
-        if (rows == null || rows.isEmpty()) {
-            return null;
+    private List<DynamicAgentConfig> loadAgentConfigs(List<Map<String, Object>> agentConfigs) {
+        if (agentConfigs.isEmpty()) {
+            return new ArrayList<>();
         }
-        
-        return AgentConfigMappingUtil.mapToChatMemoryConfig(rows.get(0));
+        List<String> agentIds = AgentConfigMappingUtil.agentIdsOf(agentConfigs);
+        List<Map<String, Object>> toolRows = new ArrayList<>();
+        List<Map<String, Object>> promptVarRows = new ArrayList<>();
+        List<Map<String, Object>> memoryRows = new ArrayList<>();
+        for (List<Object> batch : AgentConfigMappingUtil.partitionAgentIds(agentIds)) {
+            String in = AgentConfigMappingUtil.inPlaceholders(batch.size());
+            Object[] args = batch.toArray();
+            toolRows.addAll(jdbcTemplate.queryForList(AgentConfigMappingUtil.TOOL_SQL_PREFIX + in + AgentConfigMappingUtil.TOOL_SQL_SUFFIX, args));
+            promptVarRows.addAll(jdbcTemplate.queryForList(AgentConfigMappingUtil.PROMPT_VAR_SQL_PREFIX + in + AgentConfigMappingUtil.PROMPT_VAR_SQL_SUFFIX, args));
+            memoryRows.addAll(jdbcTemplate.queryForList(AgentConfigMappingUtil.MEMORY_SQL_PREFIX + in, args));
+        }
+        return AgentConfigMappingUtil.assembleAgentConfigs(agentConfigs, toolRows, promptVarRows, memoryRows);
     }
-}
\ No newline at end of file
+}
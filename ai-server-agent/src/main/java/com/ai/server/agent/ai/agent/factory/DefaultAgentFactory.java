@@ -42,12 +42,11 @@ public class DefaultAgentFactory implements AgentFactory {
      * @param config 配置参数
      * @return Agent实例
      */
-    @SuppressWarnings("unchecked")
     @Override
     public <T> Agent<T> createAgent(String agentType, AgentConfig config) {
-        // 从动态Agent管理器获取Agent
+        // 从动态Agent管理器获取Agent，每次调用时获取当前代次的引用，调用结束时释放
         // 使用agentType作为agentName查找动态配置
-        Agent<T> dynamicAgent = (Agent<T>) dynamicAgentManager.getAgent(agentType);
+        Agent<T> dynamicAgent = dynamicAgentManager.getManagedAgent(agentType);
         if (dynamicAgent != null) {
             log.info("Using dynamically created agent for type: {}", agentType);
             return dynamicAgent;
@@ -63,11 +62,10 @@ public class DefaultAgentFactory implements AgentFactory {
      * @param agentName Agent名称
      * @return Agent实例
      */
-    @SuppressWarnings("unchecked")
     @Override
     public <T> Agent<T> createAgentByName(String agentName) {
-        // 从动态Agent管理器获取Agent
-        Agent<T> agent = (Agent<T>) dynamicAgentManager.getAgent(agentName);
+        // 从动态Agent管理器获取Agent，每次调用时获取当前代次的引用，调用结束时释放
+        Agent<T> agent = dynamicAgentManager.getManagedAgent(agentName);
         if (agent != null) {
             return agent;
         }
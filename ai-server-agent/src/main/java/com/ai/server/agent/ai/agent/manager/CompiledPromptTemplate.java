@@ -0,0 +1,216 @@
+package com.ai.server.agent.ai.agent.manager;
+
+import org.springframework.ai.chat.prompt.PromptTemplate;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 预编译的提示词模板
+ * 注册时将模板解析为文本片段和变量槽，静态变量直接并入文本片段，渲染时只需按顺序拼接
+ * 模板使用了简单变量引用以外的StringTemplate语法，或变量值需要StringTemplate展开时，交由Spring的PromptTemplate渲染
+ */
+public class CompiledPromptTemplate {
+
+    // 与Spring AI模板渲染器的校验提示保持一致，调用方依据该前缀识别缺少变量的情况
+    private static final String MISSING_VARIABLES_MESSAGE =
+            "Not all variables were replaced in the template. Missing variable names are: %s.";
+
+    // StringTemplate保留字，作为变量名时不是简单的变量引用
+    private static final Set<String> RESERVED_WORDS = Set.of("true", "false", "import", "default", "key", "group",
+            "implements", "first", "last", "rest", "trunc", "strip", "trim", "length", "strlen", "reverse",
+            "if", "else", "elseif", "endif", "delimiters", "super");
+
+    // 每个变量槽预估的渲染长度，用于预分配StringBuilder
+    private static final int ESTIMATED_SLOT_LENGTH = 16;
+
+    private final PromptTemplate promptTemplate;
+
+    // 文本片段，比变量槽多一个，渲染时交替拼接；无法预编译时为null
+    private final String[] literals;
+    private final String[] slots;
+
+    // 已并入文本片段的静态变量，请求中传入不同的值时回退到Spring渲染
+    private final Map<String, Object> boundVariables;
+
+    private final int estimatedLength;
+
+    private CompiledPromptTemplate(String template, String[] literals, String[] slots,
+                                   Map<String, Object> boundVariables) {
+        this.promptTemplate = new PromptTemplate(template);
+        this.literals = literals;
+        this.slots = slots;
+        this.boundVariables = boundVariables;
+        int length = 0;
+        if (literals != null) {
+            for (String literal : literals) {
+                length += literal.length();
+            }
+            length += slots.length * ESTIMATED_SLOT_LENGTH;
+        }
+        this.estimatedLength = length;
+    }
+
+    /**
+     * 编译模板
+     * @param template 模板内容
+     * @param staticVariables 静态变量，值在注册后不再变化
+     * @return 编译后的模板
+     */
+    public static CompiledPromptTemplate compile(String template, Map<String, Object> staticVariables) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        if (!parse(template, literals, slots)) {
+            return new CompiledPromptTemplate(template, null, null, Collections.emptyMap());
+        }
+        // 将值为简单类型的静态变量并入相邻的文本片段
+        Map<String, Object> bound = new HashMap<>();
+        List<String> mergedLiterals = new ArrayList<>();
+        List<String> mergedSlots = new ArrayList<>();
+        StringBuilder current = new StringBuilder(literals.get(0));
+        for (int i = 0; i < slots.size(); i++) {
+            String slot = slots.get(i);
+            Object value = staticVariables != null ? staticVariables.get(slot) : null;
+            if (value != null && isSimpleValue(value)) {
+                bound.put(slot, value);
+                current.append(value);
+            } else {
+                mergedLiterals.add(current.toString());
+                mergedSlots.add(slot);
+                current.setLength(0);
+            }
+            current.append(literals.get(i + 1));
+        }
+        mergedLiterals.add(current.toString());
+        return new CompiledPromptTemplate(template, mergedLiterals.toArray(new String[0]),
+                mergedSlots.toArray(new String[0]), bound);
+    }
+
+    /**
+     * 渲染模板
+     * @param variables 模板变量
+     * @return 渲染结果
+     * @throws IllegalStateException 模板中的变量未全部传入
+     */
+    public String render(Map<String, Object> variables) {
+        Map<String, Object> model = variables != null ? variables : Collections.emptyMap();
+        if (literals == null) {
+            return promptTemplate.render(model);
+        }
+        for (Map.Entry<String, Object> bound : boundVariables.entrySet()) {
+            if (model.containsKey(bound.getKey()) && !Objects.equals(model.get(bound.getKey()), bound.getValue())) {
+                return promptTemplate.render(model);
+            }
+        }
+        StringBuilder result = new StringBuilder(estimatedLength);
+        Set<String> missing = null;
+        for (int i = 0; i < slots.length; i++) {
+            result.append(literals[i]);
+            String slot = slots[i];
+            if (!model.containsKey(slot)) {
+                if (missing == null) {
+                    missing = new LinkedHashSet<>();
+                }
+                missing.add(slot);
+                continue;
+            }
+            Object value = model.get(slot);
+            if (value == null) {
+                continue;
+            }
+            if (!isSimpleValue(value)) {
+                return promptTemplate.render(model);
+            }
+            result.append(value);
+        }
+        if (missing != null) {
+            throw new IllegalStateException(String.format(MISSING_VARIABLES_MESSAGE, missing));
+        }
+        result.append(literals[slots.length]);
+        return result.toString();
+    }
+
+    /**
+     * 获取对应的Spring PromptTemplate
+     * @return PromptTemplate实例
+     */
+    public PromptTemplate getPromptTemplate() {
+        return promptTemplate;
+    }
+
+    /**
+     * 是否已预编译，false表示每次渲染都交由Spring处理
+     */
+    public boolean isCompiled() {
+        return literals != null;
+    }
+
+    /**
+     * 解析模板，只接受文本和{变量名}形式的变量引用
+     * @return 是否解析成功，包含转义、表达式、注释等其他语法时返回false
+     */
+    private static boolean parse(String template, List<String> literals, List<String> slots) {
+        StringBuilder literal = new StringBuilder();
+        int length = template.length();
+        int i = 0;
+        while (i < length) {
+            char c = template.charAt(i);
+            if (c == '\\' || c == '}') {
+                return false;
+            }
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            int end = template.indexOf('}', i + 1);
+            if (end < 0) {
+                return false;
+            }
+            String name = template.substring(i + 1, end);
+            if (!isIdentifier(name) || RESERVED_WORDS.contains(name)) {
+                return false;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(name);
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+        return true;
+    }
+
+    private static boolean isIdentifier(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        char first = name.charAt(0);
+        if (!(Character.isLetter(first) && first < 128) && first != '_') {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(Character.isLetterOrDigit(c) && c < 128) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * StringTemplate对这些类型直接输出toString，集合、数组和Map会被展开，需交由Spring渲染
+     */
+    private static boolean isSimpleValue(Object value) {
+        return value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum || value instanceof Date
+                || value instanceof TemporalAccessor;
+    }
+}
@@ -9,12 +9,14 @@ import java.util.Map;
 
 /**
  * 默认提示词管理器实现类，使用单例模式管理提示词模板
+ * 模板在注册时预编译，渲染时不再重复解析
+ * 注册表为不可变快照，注册时复制并整体替换，读取无锁；每种提示词类型的版本号单调递增
  */
 @Component
 public class DefaultPromptManager implements PromptManager {
 
-    // 存储提示词模板的映射，key为提示词类型，value为提示词模板
-    private final Map<String, PromptTemplate> promptTemplates = new HashMap<>();
+    // 提示词模板快照，key为提示词类型，value为当前版本的模板；只读，注册时整体替换
+    private volatile Map<String, PromptTemplateVersion> promptTemplates = Map.of();
 
     /**
      * 获取提示词模板
@@ -23,11 +25,17 @@ public class DefaultPromptManager implements PromptManager {
      */
     @Override
     public PromptTemplate getPromptTemplate(String promptType) {
-        PromptTemplate template = promptTemplates.get(promptType);
-        if (template == null) {
-            throw new IllegalArgumentException("Prompt template not found for type: " + promptType);
-        }
-        return template;
+        return requireTemplateVersion(promptType).getTemplate().getPromptTemplate();
+    }
+
+    /**
+     * 获取提示词模板的当前版本
+     * @param promptType 提示词类型
+     * @return 当前版本，未注册时返回null
+     */
+    @Override
+    public PromptTemplateVersion getTemplateVersion(String promptType) {
+        return promptType != null ? promptTemplates.get(promptType) : null;
     }
 
     /**
@@ -38,8 +46,18 @@ public class DefaultPromptManager implements PromptManager {
      */
     @Override
     public Prompt createPrompt(String promptType, Map<String, Object> variables) {
-        PromptTemplate template = getPromptTemplate(promptType);
-        return template.create(variables);
+        return new Prompt(render(promptType, variables));
+    }
+
+    /**
+     * 使用预编译的模板渲染提示词文本
+     * @param promptType 提示词类型
+     * @param variables 模板变量
+     * @return 提示词文本
+     */
+    @Override
+    public String render(String promptType, Map<String, Object> variables) {
+        return requireTemplateVersion(promptType).render(variables);
     }
 
     /**
@@ -49,10 +67,29 @@ public class DefaultPromptManager implements PromptManager {
      */
     @Override
     public void registerPromptTemplate(String promptType, String templateContent) {
+        registerPromptTemplate(promptType, templateContent, null);
+    }
+
+    /**
+     * 注册提示词模板，静态变量在注册时绑定
+     * @param promptType 提示词类型
+     * @param templateContent 模板内容
+     * @param staticVariables 静态变量
+     */
+    @Override
+    public void registerPromptTemplate(String promptType, String templateContent, Map<String, Object> staticVariables) {
         if (promptType == null || templateContent == null) {
             throw new IllegalArgumentException("Prompt type and template content cannot be null");
         }
-        promptTemplates.put(promptType, new PromptTemplate(templateContent));
+        // 编译在锁外完成，锁内只复制快照
+        CompiledPromptTemplate template = CompiledPromptTemplate.compile(templateContent, staticVariables);
+        synchronized (this) {
+            Map<String, PromptTemplateVersion> snapshot = new HashMap<>(promptTemplates);
+            PromptTemplateVersion current = snapshot.get(promptType);
+            long version = current != null ? current.getVersion() + 1 : 1;
+            snapshot.put(promptType, new PromptTemplateVersion(promptType, version, template));
+            promptTemplates = Map.copyOf(snapshot);
+        }
     }
 
     /**
@@ -62,6 +99,14 @@ public class DefaultPromptManager implements PromptManager {
      */
     @Override
     public boolean containsPromptType(String promptType) {
-        return promptTemplates.containsKey(promptType);
+        return promptType != null && promptTemplates.containsKey(promptType);
+    }
+
+    private PromptTemplateVersion requireTemplateVersion(String promptType) {
+        PromptTemplateVersion template = getTemplateVersion(promptType);
+        if (template == null) {
+            throw new IllegalArgumentException("Prompt template not found for type: " + promptType);
+        }
+        return template;
     }
 }
@@ -17,6 +17,13 @@ public interface PromptManager {
      */
     PromptTemplate getPromptTemplate(String promptType);
 
+    /**
+     * 获取提示词模板的当前版本，用于Agent创建时固定所用的模板
+     * @param promptType 提示词类型
+     * @return 当前版本，未注册时返回null
+     */
+    PromptTemplateVersion getTemplateVersion(String promptType);
+
     /**
      * 创建提示词
      * @param promptType 提示词类型
@@ -25,6 +32,14 @@ public interface PromptManager {
      */
     Prompt createPrompt(String promptType, Map<String, Object> variables);
 
+    /**
+     * 使用预编译的模板渲染提示词文本
+     * @param promptType 提示词类型
+     * @param variables 模板变量
+     * @return 提示词文本
+     */
+    String render(String promptType, Map<String, Object> variables);
+
     /**
      * 注册提示词模板
      * @param promptType 提示词类型
@@ -32,6 +47,14 @@ public interface PromptManager {
      */
     void registerPromptTemplate(String promptType, String templateContent);
 
+    /**
+     * 注册提示词模板，静态变量在注册时绑定
+     * @param promptType 提示词类型
+     * @param templateContent 模板内容
+     * @param staticVariables 静态变量
+     */
+    void registerPromptTemplate(String promptType, String templateContent, Map<String, Object> staticVariables);
+
     /**
      * 检查提示词类型是否存在
      * @param promptType 提示词类型
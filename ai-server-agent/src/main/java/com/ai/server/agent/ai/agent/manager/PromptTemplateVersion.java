@@ -0,0 +1,44 @@
+package com.ai.server.agent.ai.agent.manager;
+
+import java.util.Map;
+
+/**
+ * 某一版本的提示词模板，注册后不可变
+ * Agent创建时固定引用当时的版本，重新加载期间仍在处理的请求使用与自身配置一致的模板
+ */
+public final class PromptTemplateVersion {
+
+    private final String promptType;
+    private final long version;
+    private final CompiledPromptTemplate template;
+
+    PromptTemplateVersion(String promptType, long version, CompiledPromptTemplate template) {
+        this.promptType = promptType;
+        this.version = version;
+        this.template = template;
+    }
+
+    /**
+     * 渲染模板
+     * @param variables 模板变量
+     * @return 渲染结果
+     */
+    public String render(Map<String, Object> variables) {
+        return template.render(variables);
+    }
+
+    public String getPromptType() {
+        return promptType;
+    }
+
+    /**
+     * 版本号，同一提示词类型每次注册递增，从1开始
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public CompiledPromptTemplate getTemplate() {
+        return template;
+    }
+}
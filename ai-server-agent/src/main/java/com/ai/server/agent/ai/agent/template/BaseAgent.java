@@ -1,6 +1,7 @@
 package com.ai.server.agent.ai.agent.template;
 
 import com.ai.server.agent.ai.agent.manager.PromptManager;
+import com.ai.server.agent.ai.agent.manager.PromptTemplateVersion;
 import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
 import com.ai.server.agent.ai.agent.core.Agent;
 import lombok.Setter;
@@ -11,6 +12,7 @@ import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -40,6 +42,11 @@ public abstract class BaseAgent<T> implements Agent<T> {
     protected Map<String, Object> defaultPromptVariables = new ConcurrentHashMap<>();
     protected String systemPromptType;
     protected PromptManager promptManager;
+
+    /**
+     * 创建时固定的系统提示词模板版本，重新加载配置时由新的Agent实例引用新版本
+     */
+    protected PromptTemplateVersion systemPromptTemplate;
     /**
      * -- SETTER --
      *  设置ChatMemory
@@ -91,6 +98,7 @@ public abstract class BaseAgent<T> implements Agent<T> {
         this.chatClient = chatClient;
         this.systemPromptType = systemPromptType;
         this.promptManager = promptManager;
+        this.systemPromptTemplate = promptManager != null ? promptManager.getTemplateVersion(systemPromptType) : null;
     }
 
     /**
@@ -108,16 +116,7 @@ public abstract class BaseAgent<T> implements Agent<T> {
         }
 
         // 公共逻辑：上下文处理
-        if (request.getContext() == null) {
-            request.setContext(new ConcurrentHashMap<>());
-        }
-
-        // 合并默认提示词变量到请求上下文，只添加request中没有的键
-        for (Map.Entry<String, Object> entry : defaultPromptVariables.entrySet()) {
-            if (!request.getContext().containsKey(entry.getKey())) {
-                request.getContext().put(entry.getKey(), entry.getValue());
-            }
-        }
+        prepareContext(request);
 
         // 调用具体Agent的doChat方法处理业务逻辑
         return doChat(request, type);
@@ -136,20 +135,83 @@ public abstract class BaseAgent<T> implements Agent<T> {
             return;
         }
 
-        // 公共逻辑：上下文处理
+        try {
+            // 公共逻辑：上下文处理
+            prepareContext(request);
+
+            // 调用具体Agent的doChatStream方法处理业务逻辑
+            doChatStream(request);
+        } catch (Exception e) {
+            // 未能发起流式响应，直接触发结束回调
+            request.fireTerminate();
+            throw e;
+        }
+    }
+
+    /**
+     * 公共chatFlux方法实现，封装请求校验和上下文处理
+     * @param request 请求对象
+     * @return 模型输出的内容片段
+     */
+    @Override
+    public Flux<String> chatFlux(Request request) {
+        // 公共逻辑：参数校验
+        if (request == null) {
+            log.warn("Request is null");
+            return Flux.empty();
+        }
+
+        try {
+            // 公共逻辑：上下文处理
+            prepareContext(request);
+
+            // 调用具体Agent的doChatFlux方法处理业务逻辑
+            return doChatFlux(request);
+        } catch (RuntimeException e) {
+            // 未能创建响应流，直接触发结束回调
+            request.fireTerminate();
+            throw e;
+        }
+    }
+
+    /**
+     * 公共speculativeFlux方法实现，封装请求校验和上下文处理
+     * @param request 请求对象
+     * @return 模型输出的内容片段，不支持推测执行时返回null
+     */
+    @Override
+    public Flux<String> speculativeFlux(Request request) {
+        if (request == null) {
+            log.warn("Request is null");
+            return null;
+        }
+        try {
+            prepareContext(request);
+            Flux<String> source = doSpeculativeFlux(request);
+            if (source == null) {
+                // 不支持推测执行，不会有响应流，直接触发结束回调
+                request.fireTerminate();
+            }
+            return source;
+        } catch (RuntimeException e) {
+            request.fireTerminate();
+            throw e;
+        }
+    }
+
+    /**
+     * 初始化请求上下文，并合并默认提示词变量，只添加request中没有的键
+     * @param request 请求对象
+     */
+    private void prepareContext(Request request) {
         if (request.getContext() == null) {
             request.setContext(new ConcurrentHashMap<>());
         }
-
-        // 合并默认提示词变量到请求上下文，只添加request中没有的键
         for (Map.Entry<String, Object> entry : defaultPromptVariables.entrySet()) {
             if (!request.getContext().containsKey(entry.getKey())) {
                 request.getContext().put(entry.getKey(), entry.getValue());
             }
         }
-
-        // 调用具体Agent的doChatStream方法处理业务逻辑
-        doChatStream(request);
     }
 
     /**
@@ -165,6 +227,23 @@ public abstract class BaseAgent<T> implements Agent<T> {
         return promptManager.createPrompt(promptType, variables);
     }
 
+    /**
+     * 使用PromptManager中预编译的模板渲染提示词文本
+     * @param promptType 提示词类型
+     * @param variables 模板变量
+     * @return 提示词文本
+     */
+    protected String renderPrompt(String promptType, Map<String, Object> variables) {
+        if (promptManager == null) {
+            throw new IllegalStateException("PromptManager is not initialized");
+        }
+        // 系统提示词使用创建时固定的版本
+        if (systemPromptTemplate != null && systemPromptTemplate.getPromptType().equals(promptType)) {
+            return systemPromptTemplate.render(variables);
+        }
+        return promptManager.render(promptType, variables);
+    }
+
     /**
      * 获取提示词模板
      * @param promptType 提示词类型
@@ -174,6 +253,9 @@ public abstract class BaseAgent<T> implements Agent<T> {
         if (promptManager == null) {
             throw new IllegalStateException("PromptManager is not initialized");
         }
+        if (systemPromptTemplate != null && systemPromptTemplate.getPromptType().equals(promptType)) {
+            return systemPromptTemplate.getTemplate().getPromptTemplate();
+        }
         return promptManager.getPromptTemplate(promptType);
     }
 
@@ -187,11 +269,30 @@ public abstract class BaseAgent<T> implements Agent<T> {
 
     /**
      * 抽象方法，由具体Agent实现特定的chatStream业务逻辑
+     * 实现需在响应流结束时调用request.fireTerminate()
      * @param request 请求对象
      * @throws Exception 异常信息
      */
     protected abstract void doChatStream(Agent.Request request) throws Exception;
 
+    /**
+     * 抽象方法，由具体Agent实现响应式流式对话
+     * 实现需在返回的响应流结束时调用request.fireTerminate()
+     * @param request 请求对象
+     * @return 模型输出的内容片段
+     */
+    protected abstract Flux<String> doChatFlux(Agent.Request request);
+
+    /**
+     * 推测执行的流式对话，默认不支持，由需要的Agent覆盖
+     * 实现需在返回的响应流结束时调用request.fireTerminate()
+     * @param request 请求对象
+     * @return 模型输出的内容片段，不支持时返回null
+     */
+    protected Flux<String> doSpeculativeFlux(Agent.Request request) {
+        return null;
+    }
+
     /**
      * 添加默认提示词变量
      * @param key 键
@@ -223,6 +324,15 @@ public abstract class BaseAgent<T> implements Agent<T> {
      */
     public void setSystemPromptType(String systemPromptType) {
         this.systemPromptType = systemPromptType;
+        this.systemPromptTemplate = promptManager != null ? promptManager.getTemplateVersion(systemPromptType) : null;
+    }
+
+    /**
+     * 获取创建时固定的系统提示词模板版本号
+     * @return 版本号，未注册系统提示词模板时返回0
+     */
+    public long getSystemPromptVersion() {
+        return systemPromptTemplate != null ? systemPromptTemplate.getVersion() : 0;
     }
 
     /**
@@ -239,6 +349,7 @@ public abstract class BaseAgent<T> implements Agent<T> {
      */
     public void setPromptManager(PromptManager promptManager) {
         this.promptManager = promptManager;
+        this.systemPromptTemplate = promptManager != null ? promptManager.getTemplateVersion(systemPromptType) : null;
     }
     
     /**
@@ -0,0 +1,183 @@
+package com.ai.server.agent.ai.common.cache;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.crypto.SecureUtil;
+import com.ai.server.agent.ai.agent.dynamic.AgentReloadedEvent;
+import com.ai.server.agent.ai.common.vector.SimilarQuestionIndex;
+import com.ai.server.agent.ai.config.ResponseCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 智能体回答缓存
+ * 仅用于与用户无关的问答，缓存键为智能体名称、智能体配置版本、渲染后系统提示词的摘要和归一化用户消息的摘要
+ * 智能体重新加载后其配置版本递增，旧回答不再命中并随LRU淘汰或过期
+ * 启用相似问题索引时，精确匹配未命中再查找同一智能体、同一版本、同一系统提示词下相似的历史问题
+ */
+@Slf4j
+@Component
+public class AgentResponseCache {
+
+    // 标点、符号和空白，与意图缓存不同，这里不替换日期，避免不同日期的问题共用回答
+    private static final Pattern PUNCTUATION_AND_SPACE = Pattern.compile("[\\p{P}\\p{S}\\s]+");
+
+    @Autowired
+    private ResponseCacheProperties responseCacheProperties;
+
+    @Autowired
+    private SimilarQuestionIndex similarQuestionIndex;
+
+    // 各智能体的配置版本
+    private final Map<String, AtomicLong> agentVersions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile CacheHolder holder;
+
+    /**
+     * 计算缓存键，查询前计算并在写入时复用，避免生成回答期间智能体重新加载后把旧回答写入新版本
+     * @param agentName 智能体名称
+     * @param systemPrompt 渲染后的系统提示词
+     * @param message 用户消息
+     * @return 缓存键，消息为空时返回null
+     */
+    public String keyOf(String agentName, String systemPrompt, String message) {
+        if (agentName == null || message == null || message.isBlank()) {
+            return null;
+        }
+        long version = agentVersions.computeIfAbsent(agentName, k -> new AtomicLong()).get();
+        return agentName + ":" + version + ":"
+                + SecureUtil.md5(systemPrompt != null ? systemPrompt : "") + ":"
+                + SecureUtil.md5(normalize(message));
+    }
+
+    /**
+     * 查询缓存的回答
+     * @param key 缓存键
+     * @param message 用户消息，精确匹配未命中时用于查找相似问题
+     * @return 回答，未命中时返回null
+     */
+    public String get(String key, String message) {
+        if (key == null) {
+            return null;
+        }
+        LRUCache<String, String> cache = cache();
+        String answer = cache.get(key, false);
+        if (answer != null) {
+            hits.increment();
+            return answer;
+        }
+        // 相似问题的缓存键须与当前请求的缓存键前缀一致，且回答仍未过期
+        String prefix = key.substring(0, key.lastIndexOf(':') + 1);
+        String similarKey = similarQuestionIndex.findSimilar(SimilarQuestionIndex.RESPONSE, message,
+                payload -> payload.startsWith(prefix) && cache.containsKey(payload));
+        answer = similarKey != null ? cache.get(similarKey, false) : null;
+        if (answer != null) {
+            similarHits.increment();
+        } else {
+            misses.increment();
+        }
+        return answer;
+    }
+
+    /**
+     * 缓存回答
+     * @param key 查询时计算的缓存键
+     * @param message 用户消息
+     * @param answer 完整回答
+     * @param ttlSeconds 有效期（秒），为null或不大于0时使用全局配置
+     */
+    public void put(String key, String message, String answer, Integer ttlSeconds) {
+        if (key == null || answer == null || answer.isBlank()
+                || answer.length() > responseCacheProperties.getMaxAnswerChars()) {
+            return;
+        }
+        long ttl = ttlSeconds != null && ttlSeconds > 0 ? ttlSeconds : responseCacheProperties.getDefaultTtlSeconds();
+        cache().put(key, answer, ttl * 1000);
+        stores.increment();
+        similarQuestionIndex.add(SimilarQuestionIndex.RESPONSE, message, key);
+    }
+
+    /**
+     * 智能体配置变更后切换其命名空间
+     */
+    @EventListener
+    public void onAgentReloaded(AgentReloadedEvent event) {
+        if (event.getAgentName() == null) {
+            return;
+        }
+        long version = agentVersions.computeIfAbsent(event.getAgentName(), k -> new AtomicLong()).incrementAndGet();
+        invalidations.increment();
+        log.debug("智能体已重新加载，回答缓存切换到版本: {}, 智能体: {}", version, event.getAgentName());
+    }
+
+    /**
+     * 统计快照
+     * @return 统计项
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum() + similarHits.sum();
+        long total = hitCount + misses.sum();
+        CacheHolder current = this.holder;
+        stats.put("hits", hits.sum());
+        stats.put("similarHits", similarHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0 : (double) hitCount / total);
+        stats.put("stores", stores.sum());
+        stats.put("size", current != null ? current.cache.size() : 0);
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 归一化用户消息：全角转半角、转小写、去除标点和空白
+     */
+    static String normalize(String message) {
+        String normalized = Convert.toDBC(message).toLowerCase();
+        return PUNCTUATION_AND_SPACE.matcher(normalized).replaceAll("");
+    }
+
+    /**
+     * 获取缓存，容量配置变化时重建
+     */
+    private LRUCache<String, String> cache() {
+        int capacity = responseCacheProperties.getCapacity();
+        CacheHolder current = this.holder;
+        if (current == null || current.capacity != capacity) {
+            synchronized (this) {
+                current = this.holder;
+                if (current == null || current.capacity != capacity) {
+                    current = new CacheHolder(capacity);
+                    this.holder = current;
+                }
+            }
+        }
+        return current.cache;
+    }
+
+    private static class CacheHolder {
+        private final int capacity;
+        private final LRUCache<String, String> cache;
+
+        CacheHolder(int capacity) {
+            this.capacity = capacity;
+            this.cache = CacheUtil.newLRUCache(Math.max(1, capacity));
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.ai.server.agent.ai.common.data;
+
+import com.ai.server.agent.ai.config.TranscodingConfig;
+import com.ai.server.agent.ai.feign.dto.R;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 转码字典内存索引
+ * 将ai_transcode_dict整表加载到内存，按dict_type建立编码到值、值到编码、父编码到下级的索引，并支持LIKE模式匹配
+ * 后台定时计算整表校验和，校验和变化时重新加载并整体替换索引；索引未加载成功前由调用方回退到SQL查询
+ */
+@Slf4j
+@Component
+public class TranscodeDictIndex {
+
+    // 由数据库计算行数和逐行CRC的异或，整表未变化时无需传输字典数据
+    private static final String VERSION_SQL = "SELECT COUNT(*) AS row_count, "
+            + "BIT_XOR(CRC32(CONCAT_WS('|', dict_type, dict_code, dict_value, IFNULL(parent_code, '')))) AS checksum "
+            + "FROM ai_transcode_dict";
+
+    private static final String LOAD_SQL = "SELECT dict_type, dict_code, dict_value, parent_code FROM ai_transcode_dict";
+
+    @Autowired
+    private DataSqlExec dataSqlExec;
+
+    @Autowired
+    private TranscodingConfig transcodingConfig;
+
+    /**
+     * 当前索引快照，未加载时为null
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * 索引是否可用
+     */
+    public boolean isReady() {
+        return transcodingConfig.getDict().isEnabled() && snapshot != null;
+    }
+
+    /**
+     * 根据编码获取字典值
+     * @param dictType 字典类型
+     * @param dictCode 字典编码
+     * @return 字典值，不存在时返回空字符串
+     */
+    public String valueOf(String dictType, String dictCode) {
+        DictType type = type(dictType);
+        if (type == null || dictCode == null) {
+            return "";
+        }
+        return type.codeToValue.getOrDefault(dictCode, "");
+    }
+
+    /**
+     * 根据字典值获取编码，值重复时返回先加载的编码
+     * @param dictType 字典类型
+     * @param dictValue 字典值
+     * @return 字典编码，不存在时返回空字符串
+     */
+    public String codeOf(String dictType, String dictValue) {
+        DictType type = type(dictType);
+        if (type == null || dictValue == null) {
+            return "";
+        }
+        return type.valueToCode.getOrDefault(dictValue, "");
+    }
+
+    /**
+     * 按dict_value LIKE模式查询，模式为空时返回该类型的全部字典项
+     * @param dictType 字典类型
+     * @param likeValue LIKE模式，支持%和_，不区分大小写
+     * @return 字典项，顺序与加载顺序一致
+     */
+    public List<DictEntry> findByValueLike(String dictType, String likeValue) {
+        DictType type = type(dictType);
+        if (type == null) {
+            return Collections.emptyList();
+        }
+        if (likeValue == null || likeValue.isBlank()) {
+            return type.entries;
+        }
+        LikePattern pattern = LikePattern.compile(likeValue);
+        List<DictEntry> result = new ArrayList<>();
+        for (DictEntry entry : type.entries) {
+            // 与SQL一致，dict_value为NULL的字典项不参与LIKE匹配
+            if (entry.dictValue != null && pattern.matches(entry.normalizedValue)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查询下级字典项
+     * @param dictType 字典类型
+     * @param parentCode 父编码，为空时返回该类型的全部字典项
+     * @return 字典项，顺序与加载顺序一致
+     */
+    public List<DictEntry> findChildren(String dictType, String parentCode) {
+        DictType type = type(dictType);
+        if (type == null) {
+            return Collections.emptyList();
+        }
+        if (parentCode == null || parentCode.isBlank()) {
+            return type.entries;
+        }
+        return type.children.getOrDefault(parentCode.trim(), Collections.emptyList());
+    }
+
+    /**
+     * 定时检查字典版本，校验和变化时重新加载
+     */
+    @Scheduled(fixedDelayString = "${transcoding.dict.refresh-interval-ms:300000}")
+    public void refresh() {
+        if (!transcodingConfig.getDict().isEnabled()) {
+            return;
+        }
+        try {
+            String version = queryVersion();
+            Snapshot current = this.snapshot;
+            if (current != null && Objects.equals(current.version, version)) {
+                return;
+            }
+            Snapshot loaded = load(version);
+            this.snapshot = loaded;
+            log.info("转码字典索引已加载，版本: {}, 字典项: {}, 类型: {}", version, loaded.size, loaded.types.keySet());
+        } catch (Exception e) {
+            log.warn("转码字典索引刷新失败，继续使用当前索引: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 统计快照
+     * @return 统计项
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Snapshot current = this.snapshot;
+        stats.put("ready", current != null);
+        stats.put("version", current != null ? current.version : null);
+        stats.put("size", current != null ? current.size : 0);
+        return stats;
+    }
+
+    private DictType type(String dictType) {
+        Snapshot current = this.snapshot;
+        return current != null && dictType != null ? current.types.get(dictType) : null;
+    }
+
+    private String queryVersion() {
+        List<Map<String, Object>> rows = query(VERSION_SQL);
+        if (rows.isEmpty()) {
+            return "0:0";
+        }
+        Map<String, Object> row = rows.get(0);
+        return row.get("row_count") + ":" + row.get("checksum");
+    }
+
+    private Snapshot load(String version) {
+        Map<String, List<DictEntry>> entriesByType = new LinkedHashMap<>();
+        List<Map<String, Object>> rows = query(LOAD_SQL);
+        for (Map<String, Object> row : rows) {
+            String dictType = stringOf(row.get("dict_type"));
+            if (dictType == null) {
+                continue;
+            }
+            DictEntry entry = new DictEntry(stringOf(row.get("dict_code")), stringOf(row.get("dict_value")),
+                    stringOf(row.get("parent_code")));
+            entriesByType.computeIfAbsent(dictType, k -> new ArrayList<>()).add(entry);
+        }
+        Map<String, DictType> types = new HashMap<>();
+        entriesByType.forEach((dictType, entries) -> types.put(dictType, new DictType(entries)));
+        return new Snapshot(version, Map.copyOf(types), rows.size());
+    }
+
+    private List<Map<String, Object>> query(String sql) {
+        R<List<Map<String, Object>>> result = dataSqlExec.runSql(sql);
+        if (result == null || result.getData() == null) {
+            throw new IllegalStateException("查询转码字典无返回数据");
+        }
+        return result.getData();
+    }
+
+    private static String stringOf(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * 字典项
+     */
+    @Getter
+    public static class DictEntry {
+        private final String dictCode;
+        private final String dictValue;
+        private final String parentCode;
+
+        // 小写后的字典值，用于不区分大小写的LIKE匹配
+        private final String normalizedValue;
+
+        DictEntry(String dictCode, String dictValue, String parentCode) {
+            this.dictCode = dictCode;
+            this.dictValue = dictValue;
+            this.parentCode = parentCode;
+            this.normalizedValue = dictValue != null ? dictValue.toLowerCase(Locale.ROOT) : "";
+        }
+    }
+
+    /**
+     * 单个字典类型的索引，构建后只读
+     */
+    private static class DictType {
+        private final List<DictEntry> entries;
+        private final Map<String, String> codeToValue = new HashMap<>();
+        private final Map<String, String> valueToCode = new HashMap<>();
+        private final Map<String, List<DictEntry>> children = new HashMap<>();
+
+        DictType(List<DictEntry> entries) {
+            this.entries = Collections.unmodifiableList(entries);
+            for (DictEntry entry : entries) {
+                if (entry.dictCode != null) {
+                    codeToValue.putIfAbsent(entry.dictCode, entry.dictValue != null ? entry.dictValue : "");
+                }
+                if (entry.dictValue != null && entry.dictCode != null) {
+                    valueToCode.putIfAbsent(entry.dictValue, entry.dictCode);
+                }
+                if (entry.parentCode != null) {
+                    children.computeIfAbsent(entry.parentCode.trim(), k -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+    }
+
+    private static class Snapshot {
+        private final String version;
+        private final Map<String, DictType> types;
+        private final int size;
+
+        Snapshot(String version, Map<String, DictType> types, int size) {
+            this.version = version;
+            this.types = types;
+            this.size = size;
+        }
+    }
+
+    /**
+     * SQL LIKE模式，%匹配任意长度字符，_匹配单个字符
+     * 常见的%x%、x%、%x和不含通配符的模式直接使用字符串方法匹配
+     */
+    private static class LikePattern {
+        private final String pattern;
+        private final String literal;
+        private final boolean leadingWildcard;
+        private final boolean trailingWildcard;
+        private final boolean simple;
+
+        private LikePattern(String pattern) {
+            this.pattern = pattern;
+            boolean leading = pattern.startsWith("%");
+            boolean trailing = pattern.length() > (leading ? 1 : 0) && pattern.endsWith("%");
+            String inner = pattern.substring(leading ? 1 : 0, pattern.length() - (trailing ? 1 : 0));
+            this.leadingWildcard = leading;
+            this.trailingWildcard = trailing;
+            this.literal = inner;
+            this.simple = inner.indexOf('%') < 0 && inner.indexOf('_') < 0;
+        }
+
+        static LikePattern compile(String likeValue) {
+            return new LikePattern(likeValue.toLowerCase(Locale.ROOT));
+        }
+
+        boolean matches(String value) {
+            if (simple) {
+                if (leadingWildcard && trailingWildcard) {
+                    return value.contains(literal);
+                }
+                if (leadingWildcard) {
+                    return value.endsWith(literal);
+                }
+                if (trailingWildcard) {
+                    return value.startsWith(literal);
+                }
+                return value.equals(literal);
+            }
+            return matches(value, 0, 0);
+        }
+
+        /**
+         * 通用匹配，遇到%时记录回溯位置，时间复杂度为O(模式长度 × 值长度)
+         */
+        private boolean matches(String value, int valueIndex, int patternIndex) {
+            int starPattern = -1;
+            int starValue = -1;
+            while (valueIndex < value.length()) {
+                if (patternIndex < pattern.length()) {
+                    char p = pattern.charAt(patternIndex);
+                    if (p == '%') {
+                        starPattern = patternIndex++;
+                        starValue = valueIndex;
+                        continue;
+                    }
+                    if (p == '_' || p == value.charAt(valueIndex)) {
+                        patternIndex++;
+                        valueIndex++;
+                        continue;
+                    }
+                }
+                if (starPattern < 0) {
+                    return false;
+                }
+                patternIndex = starPattern + 1;
+                valueIndex = ++starValue;
+            }
+            while (patternIndex < pattern.length() && pattern.charAt(patternIndex) == '%') {
+                patternIndex++;
+            }
+            return patternIndex == pattern.length();
+        }
+    }
+}
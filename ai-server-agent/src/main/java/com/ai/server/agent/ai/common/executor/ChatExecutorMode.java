@@ -0,0 +1,17 @@
+package com.ai.server.agent.ai.common.executor;
+
+/**
+ * 聊天任务执行器模式
+ */
+public enum ChatExecutorMode {
+
+    /**
+     * 固定大小的平台线程池
+     */
+    PLATFORM,
+
+    /**
+     * 每个任务一个虚拟线程，需要JDK 21及以上，低版本JDK自动回退到平台线程池
+     */
+    VIRTUAL
+}
@@ -0,0 +1,16 @@
+package com.ai.server.agent.ai.common.executor;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 任务上下文传递装饰器
+ * 提交任务时捕获UserContextHolder和ConnectionIdContext中的线程变量，在执行线程中恢复，执行结束后清理
+ * 线程池和虚拟线程执行器共用，线程复用时不会残留上一个任务的上下文
+ */
+public class ContextPropagatingTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return RequestContextSnapshot.capture().wrap(runnable);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ai.server.agent.ai.common.executor;
+
+import com.ai.server.agent.ai.common.sse.ConnectionIdContext;
+import com.ai.server.agent.ai.interceptor.UserContextHolder;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 请求线程上下文快照
+ * 捕获UserContextHolder和ConnectionIdContext中的线程变量，在其他线程（线程池、虚拟线程、Reactor线程）中恢复执行
+ */
+public final class RequestContextSnapshot {
+
+    private final Map<String, String> userContext;
+    private final String userContextStr;
+    private final String connectionId;
+
+    private RequestContextSnapshot(Map<String, String> userContext, String userContextStr, String connectionId) {
+        this.userContext = userContext;
+        this.userContextStr = userContextStr;
+        this.connectionId = connectionId;
+    }
+
+    /**
+     * 捕获当前线程的上下文
+     * @return 上下文快照
+     */
+    public static RequestContextSnapshot capture() {
+        UserContextHolder holder = UserContextHolder.getInstance();
+        return new RequestContextSnapshot(holder.getContext(), holder.getContextStr(), ConnectionIdContext.getConnectionId());
+    }
+
+    /**
+     * 包装Runnable，执行期间恢复快照中的上下文，结束后还原执行线程原有的上下文
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            RequestContextSnapshot previous = apply();
+            try {
+                task.run();
+            } finally {
+                previous.apply();
+            }
+        };
+    }
+
+    /**
+     * 包装Supplier，执行期间恢复快照中的上下文，结束后还原执行线程原有的上下文
+     */
+    public <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        return () -> {
+            RequestContextSnapshot previous = apply();
+            try {
+                return supplier.get();
+            } finally {
+                previous.apply();
+            }
+        };
+    }
+
+    /**
+     * 把快照设置到当前线程，空值直接清理，避免线程复用时残留
+     * @return 设置前当前线程的上下文
+     */
+    private RequestContextSnapshot apply() {
+        RequestContextSnapshot previous = capture();
+        UserContextHolder holder = UserContextHolder.getInstance();
+        if (userContext == null && (userContextStr == null || userContextStr.isEmpty())) {
+            holder.clear();
+        } else {
+            holder.setContext(userContext);
+            holder.setContextStr(userContextStr);
+        }
+        if (connectionId == null) {
+            ConnectionIdContext.clear();
+        } else {
+            ConnectionIdContext.setConnectionId(connectionId);
+        }
+        return previous;
+    }
+}
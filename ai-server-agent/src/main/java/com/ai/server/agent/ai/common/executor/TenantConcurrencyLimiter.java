@@ -0,0 +1,85 @@
+package com.ai.server.agent.ai.common.executor;
+
+import com.ai.server.agent.ai.config.ChatExecutorProperties;
+import com.ai.server.agent.ai.interceptor.UserContextHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 租户并发限制器
+ * 按机构ID（无机构时按用户ID）限制同时处理的对话数，避免单个租户占满大模型调用能力
+ */
+@Slf4j
+@Component
+public class TenantConcurrencyLimiter {
+
+    private static final String ANONYMOUS_TENANT = "anonymous";
+
+    private final ConcurrentMap<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ChatExecutorProperties chatExecutorProperties;
+
+    /**
+     * 获取当前线程用户上下文对应的租户标识
+     * @return 租户标识
+     */
+    public String currentTenant() {
+        UserContextHolder holder = UserContextHolder.getInstance();
+        String orgId = holder.getOrgId();
+        if (orgId != null && !orgId.isEmpty()) {
+            return "org:" + orgId;
+        }
+        String userId = holder.getUserId();
+        if (userId != null && !userId.isEmpty()) {
+            return "user:" + userId;
+        }
+        return ANONYMOUS_TENANT;
+    }
+
+    /**
+     * 获取租户许可，不等待，许可已用完时立即失败
+     * 调用方在请求线程中获取，失败时直接返回错误，不占用聊天任务线程
+     * @param tenant 租户标识
+     * @return 许可，获取失败返回null；许可需调用release释放，重复释放无副作用
+     */
+    public Permit tryAcquire(String tenant) {
+        int maxConcurrency = chatExecutorProperties.getTenantMaxConcurrency();
+        if (maxConcurrency <= 0) {
+            return new Permit(null);
+        }
+        Semaphore semaphore = semaphores.computeIfAbsent(tenant, key -> new Semaphore(maxConcurrency));
+        if (semaphore.tryAcquire()) {
+            return new Permit(semaphore);
+        }
+        log.warn("租户并发对话数已达上限，租户: {}, 上限: {}", tenant, maxConcurrency);
+        return null;
+    }
+
+    /**
+     * 租户许可
+     */
+    public static class Permit {
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        /**
+         * 释放许可，只有第一次调用生效
+         */
+        public void release() {
+            if (semaphore != null && released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.ai.server.agent.ai.common.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 带内存缓存的聊天记忆仓库
+ * 在JdbcChatMemoryRepository前增加按conversationId缓存的LRU，活跃会话的读取不再访问数据库；
+ * 写入时与缓存中的窗口比较，只把新增消息和被窗口淘汰的旧消息以增量方式异步写入数据库。
+ * 缓存容量按消息总字节数控制，而不是会话数。
+ * 插入时直接写入id、user_id、agent_name和session_id，不再依赖触发器生成id及事后UPDATE补写字段。
+ * 同一会话的保存和缓存加载按conversationId分段加锁串行执行，避免并发保存基于同一窗口计算增量而重复插入。
+ * 缓存上限不大于0时不使用缓存：读取直接访问数据库，保存时与数据库中的窗口比较并同步写入增量。
+ */
+@Slf4j
+public class CachingChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO SPRING_AI_CHAT_MEMORY (id, conversation_id, content, type, timestamp, user_id, agent_name, session_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_OLDEST_SQL = "DELETE FROM SPRING_AI_CHAT_MEMORY WHERE conversation_id = ? ORDER BY timestamp ASC LIMIT ?";
+
+    private static final String DELETE_ALL_SQL = "DELETE FROM SPRING_AI_CHAT_MEMORY WHERE conversation_id = ?";
+
+    // 单条消息的固定开销估算（对象头、引用、类型等）
+    private static final long MESSAGE_OVERHEAD_BYTES = 64;
+
+    // 单个缓存会话的固定开销估算，空窗口也占用缓存容量，保证按字节上限淘汰
+    private static final long CONVERSATION_OVERHEAD_BYTES = 128;
+
+    // user_id列的默认值，与表结构保持一致
+    private static final String DEFAULT_USER_ID = "test";
+
+    // 会话元数据最多保留的会话数
+    private static final int MAX_METADATA_ENTRIES = 10000;
+
+    // 按conversationId分段的锁数量
+    private static final int CONVERSATION_LOCK_STRIPES = 64;
+
+    private final ChatMemoryRepository delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor writeExecutor;
+    private final long maxBytes;
+
+    // 按访问顺序排列的LRU，所有访问都需持有lock
+    private final LinkedHashMap<String, CachedConversation> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final Object lock = new Object();
+    private long totalBytes;
+
+    // 同一会话的保存和缓存加载持有对应分段锁，不同会话之间互不阻塞
+    private final Object[] conversationLocks = new Object[CONVERSATION_LOCK_STRIPES];
+
+    // 会话元数据，独立于消息缓存按会话数淘汰，需持有lock访问
+    private final LinkedHashMap<String, ConversationMetadata> metadata = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConversationMetadata> eldest) {
+            return size() > MAX_METADATA_ENTRIES;
+        }
+    };
+
+    /**
+     * @param delegate 底层JDBC仓库，负责冷读取和查询
+     * @param jdbcTemplate 用于写入增量
+     * @param writeExecutor 增量写入执行器，必须为单线程以保证写入顺序
+     * @param maxBytes 缓存的最大消息字节数，不大于0时不使用缓存
+     */
+    public CachingChatMemoryRepository(ChatMemoryRepository delegate, JdbcTemplate jdbcTemplate,
+                                       Executor writeExecutor, long maxBytes) {
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeExecutor = writeExecutor;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < conversationLocks.length; i++) {
+            conversationLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 登记会话元数据，写入记忆时用于填充user_id、agent_name和session_id
+     * 需在对话开始前调用，流式响应结束时保存记忆的线程中没有用户上下文
+     * @param conversationId 对话ID
+     * @param userId 用户ID
+     * @param agentName 智能体名称
+     * @param sessionId 会话ID
+     */
+    public void registerConversation(String conversationId, String userId, String agentName, String sessionId) {
+        if (conversationId == null) {
+            return;
+        }
+        synchronized (lock) {
+            metadata.put(conversationId, new ConversationMetadata(userId, agentName, sessionId));
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return delegate.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        if (!isCacheEnabled()) {
+            return delegate.findByConversationId(conversationId);
+        }
+        synchronized (lock) {
+            CachedConversation cached = cache.get(conversationId);
+            if (cached != null) {
+                return new ArrayList<>(cached.messages);
+            }
+        }
+        // 缓存未命中，从数据库加载；持有会话锁，避免加载期间完成的保存被加载到的旧数据覆盖
+        synchronized (conversationLock(conversationId)) {
+            synchronized (lock) {
+                CachedConversation cached = cache.get(conversationId);
+                if (cached != null) {
+                    return new ArrayList<>(cached.messages);
+                }
+            }
+            List<Message> loaded = delegate.findByConversationId(conversationId);
+            synchronized (lock) {
+                put(conversationId, new CachedConversation(loaded, System.currentTimeMillis()));
+            }
+            return new ArrayList<>(loaded);
+        }
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        List<Message> current = messages != null ? new ArrayList<>(messages) : Collections.emptyList();
+        if (!isCacheEnabled()) {
+            saveUncached(conversationId, current);
+            return;
+        }
+        MemoryDelta delta;
+        // 同一会话的保存串行执行：读取旧窗口、计算增量和放入新窗口之间不会插入其他保存
+        synchronized (conversationLock(conversationId)) {
+            List<Message> previous;
+            synchronized (lock) {
+                CachedConversation cached = cache.get(conversationId);
+                previous = cached != null ? cached.messages : null;
+            }
+            if (previous == null) {
+                // 未缓存的会话先加载，用于计算增量；会话锁保证加载期间没有同一会话的写入提交
+                previous = delegate.findByConversationId(conversationId);
+            }
+            synchronized (lock) {
+                // 持有会话锁期间缓存只会被淘汰而不会被其他保存替换，存在时以缓存为准
+                CachedConversation cached = cache.get(conversationId);
+                if (cached != null) {
+                    previous = cached.messages;
+                }
+                delta = MemoryDelta.between(previous, current);
+                if (delta.isEmpty()) {
+                    return;
+                }
+                long lastTimestamp = cached != null ? cached.lastTimestampMillis : System.currentTimeMillis();
+                CachedConversation updated = new CachedConversation(current, lastTimestamp);
+                // 为新增消息分配严格递增的时间戳，保证按timestamp读取的顺序
+                long[] timestamps = new long[delta.appended.size()];
+                for (int i = 0; i < timestamps.length; i++) {
+                    updated.lastTimestampMillis = Math.max(System.currentTimeMillis(), updated.lastTimestampMillis + 1);
+                    timestamps[i] = updated.lastTimestampMillis;
+                }
+                delta.timestamps = timestamps;
+                delta.metadata = metadata.get(conversationId);
+                // 写入完成前不允许淘汰，避免冷读取到未落库的旧数据
+                updated.pendingWrites = (cached != null ? cached.pendingWrites : 0) + 1;
+                put(conversationId, updated);
+            }
+        }
+        submitWrite(conversationId, delta);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        if (!isCacheEnabled()) {
+            // 不使用缓存时保存同步写入，删除也同步执行，保证与之后的保存顺序一致
+            synchronized (conversationLock(conversationId)) {
+                synchronized (lock) {
+                    metadata.remove(conversationId);
+                }
+                delegate.deleteByConversationId(conversationId);
+            }
+            return;
+        }
+        synchronized (lock) {
+            CachedConversation removed = cache.remove(conversationId);
+            if (removed != null) {
+                totalBytes -= removed.bytes;
+            }
+            metadata.remove(conversationId);
+        }
+        // 与增量写入使用同一执行器，保证删除在之前的写入之后执行
+        try {
+            writeExecutor.execute(() -> {
+                try {
+                    delegate.deleteByConversationId(conversationId);
+                } catch (Exception e) {
+                    log.error("删除聊天记忆失败，conversationId: {}", conversationId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("聊天记忆写入队列已满，同步删除，conversationId: {}", conversationId);
+            delegate.deleteByConversationId(conversationId);
+        }
+    }
+
+    /**
+     * 当前缓存的会话数
+     */
+    public int getCachedConversationCount() {
+        synchronized (lock) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * 当前缓存的消息字节数
+     */
+    public long getCachedBytes() {
+        synchronized (lock) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * 不使用缓存时的保存：与数据库中的窗口比较，在调用线程中同步写入增量
+     * 持有会话锁，同一会话的读取窗口与写入增量之间不会插入其他保存
+     */
+    private void saveUncached(String conversationId, List<Message> current) {
+        synchronized (conversationLock(conversationId)) {
+            MemoryDelta delta = MemoryDelta.between(delegate.findByConversationId(conversationId), current);
+            if (delta.isEmpty()) {
+                return;
+            }
+            long lastTimestamp = System.currentTimeMillis();
+            long[] timestamps = new long[delta.appended.size()];
+            for (int i = 0; i < timestamps.length; i++) {
+                lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+                timestamps[i] = lastTimestamp;
+            }
+            delta.timestamps = timestamps;
+            synchronized (lock) {
+                delta.metadata = metadata.get(conversationId);
+            }
+            writeDelta(conversationId, delta);
+        }
+    }
+
+    private void submitWrite(String conversationId, MemoryDelta delta) {
+        try {
+            writeExecutor.execute(() -> applyDelta(conversationId, delta));
+        } catch (RejectedExecutionException e) {
+            log.error("聊天记忆写入队列已满，丢弃本次增量并使缓存失效，conversationId: {}", conversationId);
+            onWriteFinished(conversationId, false);
+        }
+    }
+
+    /**
+     * 在数据库中应用增量：删除被窗口淘汰的旧消息，追加新消息
+     */
+    private void applyDelta(String conversationId, MemoryDelta delta) {
+        onWriteFinished(conversationId, writeDelta(conversationId, delta));
+    }
+
+    /**
+     * 写入增量
+     * @return 是否写入成功
+     */
+    private boolean writeDelta(String conversationId, MemoryDelta delta) {
+        try {
+            if (delta.fullRewrite) {
+                jdbcTemplate.update(DELETE_ALL_SQL, conversationId);
+            } else if (delta.removedCount > 0) {
+                jdbcTemplate.update(DELETE_OLDEST_SQL, conversationId, delta.removedCount);
+            }
+            if (!delta.appended.isEmpty()) {
+                ConversationMetadata meta = delta.metadata;
+                String userId = meta != null && meta.userId != null ? meta.userId : DEFAULT_USER_ID;
+                String agentName = meta != null ? meta.agentName : null;
+                String sessionId = meta != null ? meta.sessionId : null;
+                List<Object[]> batchArgs = new ArrayList<>(delta.appended.size());
+                for (int i = 0; i < delta.appended.size(); i++) {
+                    Message message = delta.appended.get(i);
+                    batchArgs.add(new Object[]{UUID.randomUUID().toString(), conversationId, message.getText(),
+                            message.getMessageType().name(), new Timestamp(delta.timestamps[i]),
+                            userId, agentName, sessionId});
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("写入聊天记忆增量失败，conversationId: {}, 删除: {}, 新增: {}", conversationId,
+                    delta.removedCount, delta.appended.size(), e);
+            return false;
+        }
+    }
+
+    private void onWriteFinished(String conversationId, boolean success) {
+        synchronized (lock) {
+            CachedConversation cached = cache.get(conversationId);
+            if (cached == null) {
+                return;
+            }
+            cached.pendingWrites = Math.max(0, cached.pendingWrites - 1);
+            if (!success) {
+                // 写入失败时缓存与数据库不一致，移除缓存，下次从数据库重新加载
+                cache.remove(conversationId);
+                totalBytes -= cached.bytes;
+            } else {
+                evictIfNecessary();
+            }
+        }
+    }
+
+    /**
+     * 放入缓存并按字节上限淘汰，需持有lock
+     */
+    private void put(String conversationId, CachedConversation conversation) {
+        CachedConversation previous = cache.put(conversationId, conversation);
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += conversation.bytes;
+        evictIfNecessary();
+    }
+
+    /**
+     * 按LRU顺序淘汰没有未完成写入的会话，需持有lock
+     */
+    private void evictIfNecessary() {
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        Iterator<Map.Entry<String, CachedConversation>> iterator = cache.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedConversation conversation = iterator.next().getValue();
+            if (conversation.pendingWrites > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= conversation.bytes;
+        }
+    }
+
+    private boolean isCacheEnabled() {
+        return maxBytes > 0;
+    }
+
+    private Object conversationLock(String conversationId) {
+        return conversationLocks[(Objects.hashCode(conversationId) & Integer.MAX_VALUE) % conversationLocks.length];
+    }
+
+    private static long estimateBytes(List<Message> messages) {
+        long bytes = CONVERSATION_OVERHEAD_BYTES;
+        for (Message message : messages) {
+            String text = message.getText();
+            bytes += MESSAGE_OVERHEAD_BYTES + (text != null ? text.length() * 2L : 0);
+        }
+        return bytes;
+    }
+
+    /**
+     * 缓存的会话窗口
+     */
+    private static class CachedConversation {
+        private final List<Message> messages;
+        private final long bytes;
+        private long lastTimestampMillis;
+        private int pendingWrites;
+
+        CachedConversation(List<Message> messages, long lastTimestampMillis) {
+            this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+            this.bytes = estimateBytes(this.messages);
+            this.lastTimestampMillis = lastTimestampMillis;
+        }
+    }
+
+    /**
+     * 会话元数据
+     */
+    private static class ConversationMetadata {
+        private final String userId;
+        private final String agentName;
+        private final String sessionId;
+
+        ConversationMetadata(String userId, String agentName, String sessionId) {
+            this.userId = userId;
+            this.agentName = agentName;
+            this.sessionId = sessionId;
+        }
+    }
+
+    /**
+     * 新旧窗口之间的增量
+     * 窗口只在尾部追加、在头部淘汰时，表示为删除最早的removedCount条并追加appended；否则整体重写
+     */
+    private static class MemoryDelta {
+        private int removedCount;
+        private List<Message> appended = Collections.emptyList();
+        private boolean fullRewrite;
+        private long[] timestamps;
+        private ConversationMetadata metadata;
+
+        static MemoryDelta between(List<Message> previous, List<Message> current) {
+            MemoryDelta delta = new MemoryDelta();
+            // 寻找最小的k，使previous[k..]恰好是current的前缀
+            for (int k = 0; k <= previous.size(); k++) {
+                int overlap = previous.size() - k;
+                if (overlap <= current.size() && samePrefix(previous, k, current, overlap)) {
+                    delta.removedCount = k;
+                    delta.appended = new ArrayList<>(current.subList(overlap, current.size()));
+                    return delta;
+                }
+            }
+            delta.fullRewrite = true;
+            delta.appended = new ArrayList<>(current);
+            return delta;
+        }
+
+        boolean isEmpty() {
+            return !fullRewrite && removedCount == 0 && appended.isEmpty();
+        }
+
+        private static boolean samePrefix(List<Message> previous, int offset, List<Message> current, int length) {
+            for (int i = 0; i < length; i++) {
+                Message a = previous.get(offset + i);
+                Message b = current.get(i);
+                if (a.getMessageType() != b.getMessageType() || !Objects.equals(a.getText(), b.getText())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -105,4 +105,20 @@ public interface SqlExecutionStrategy {
      * @return true=存在，false=不存在
      */
     boolean tableExists(String tableName);
+
+    /**
+     * 检查指定表的列是否存在
+     * @param tableName 表名
+     * @param columnName 列名
+     * @return true=存在，false=不存在
+     */
+    boolean columnExists(String tableName, String columnName);
+
+    /**
+     * 检查指定表的索引是否存在
+     * @param tableName 表名
+     * @param indexName 索引名
+     * @return true=存在，false=不存在
+     */
+    boolean indexExists(String tableName, String indexName);
 }
@@ -8,7 +8,9 @@ import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.stereotype.Service;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -39,6 +41,29 @@ public class SqlInitializationService {
             "sse_message"
     );
 
+    /**
+     * 已有表需要补充的列，CREATE TABLE IF NOT EXISTS不会为已存在的表增加新列
+     * 表名 -> (列名 -> 列定义)
+     */
+    private static final Map<String, Map<String, String>> TABLE_COLUMN_UPGRADES = Map.of(
+            "agent_config", columns(
+                    "sse_batch_max_bytes", "INT NULL COMMENT 'SSE回答片段合并的字节上限，NULL表示使用全局配置'",
+                    "sse_batch_max_latency_ms", "INT NULL COMMENT 'SSE回答片段合并的最长等待时间（毫秒），NULL表示使用全局配置'",
+                    "response_cache_enabled", "TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否缓存回答，仅适用于与用户无关的问答，0=不缓存，1=缓存'",
+                    "response_cache_ttl_seconds", "INT NULL COMMENT '回答缓存有效期（秒），NULL表示使用全局配置'"),
+            "agent_tool_rel", columns(
+                    "update_time", "DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间，用于配置变更检测'")
+    );
+
+    /**
+     * 已有表需要补充的索引，CREATE TABLE IF NOT EXISTS不会为已存在的表增加新索引
+     * 表名 -> (索引名 -> 索引列)
+     */
+    private static final Map<String, Map<String, String>> TABLE_INDEX_UPGRADES = Map.of(
+            "sse_message", columns(
+                    "idx_sse_message_type_send_time", "`message_type`, `send_time`")
+    );
+
     // 添加一个标志，确保SQL初始化只执行一次
     private static volatile boolean initialized = false;
 
@@ -71,13 +96,6 @@ public class SqlInitializationService {
                     initTable(tableName, strategy);
                 }
 
-                // 执行触发器脚本（作为可选操作，失败不影响整体初始化）
-                try {
-                    initTriggers(strategy);
-                } catch (Exception e) {
-                    log.warn("触发器初始化异常，将跳过触发器初始化", e);
-                }
-
                 log.info("SQL初始化执行完成");
                 initialized = true;
             } catch (Exception e) {
@@ -86,32 +104,6 @@ public class SqlInitializationService {
         }
     }
     
-    /**
-     * 初始化触发器
-     * @param strategy SQL执行策略
-     */
-    private void initTriggers(SqlExecutionStrategy strategy) throws Exception {
-        log.info("开始初始化触发器");
-        
-        try {
-            // 直接执行触发器脚本，使用相对路径
-            String triggerScriptPath = "sql/triggers/spring_ai_chat_memory_triggers.sql";
-            log.info("执行触发器脚本: {}", triggerScriptPath);
-            
-            boolean scriptResult = strategy.executeScript(triggerScriptPath);
-            if (scriptResult) {
-                log.info("触发器脚本执行成功");
-            } else {
-                log.warn("触发器脚本执行失败");
-            }
-        } catch (Exception e) {
-            log.warn("执行触发器脚本异常: {}", e.getMessage());
-            // 不抛出异常，触发器初始化失败不影响整体启动
-        }
-        
-        log.info("触发器初始化完成");
-    }
-
     /**
      * 初始化单个表
      * @param tableName 表名
@@ -142,6 +134,10 @@ public class SqlInitializationService {
             return;
         }
         
+        // 为已存在的表补充新增列和索引
+        upgradeColumns(tableName, strategy);
+        upgradeIndexes(tableName, strategy);
+
         // 插入初始数据
         insertTableData(tableName, strategy);
         
@@ -150,6 +146,60 @@ public class SqlInitializationService {
 
 
 
+    /**
+     * 为已存在的表补充新增列
+     * @param tableName 表名
+     * @param strategy SQL执行策略
+     */
+    private void upgradeColumns(String tableName, SqlExecutionStrategy strategy) {
+        Map<String, String> upgrades = TABLE_COLUMN_UPGRADES.get(tableName);
+        if (upgrades == null) {
+            return;
+        }
+        for (Map.Entry<String, String> column : upgrades.entrySet()) {
+            try {
+                if (strategy.columnExists(tableName, column.getKey())) {
+                    continue;
+                }
+                strategy.execute("ALTER TABLE `" + tableName + "` ADD COLUMN `" + column.getKey() + "` " + column.getValue());
+                log.info("表 {} 已补充列: {}", tableName, column.getKey());
+            } catch (Exception e) {
+                log.error("表 {} 补充列 {} 失败", tableName, column.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 为已存在的表补充新增索引
+     * @param tableName 表名
+     * @param strategy SQL执行策略
+     */
+    private void upgradeIndexes(String tableName, SqlExecutionStrategy strategy) {
+        Map<String, String> upgrades = TABLE_INDEX_UPGRADES.get(tableName);
+        if (upgrades == null) {
+            return;
+        }
+        for (Map.Entry<String, String> index : upgrades.entrySet()) {
+            try {
+                if (strategy.indexExists(tableName, index.getKey())) {
+                    continue;
+                }
+                strategy.execute("ALTER TABLE `" + tableName + "` ADD INDEX `" + index.getKey() + "` (" + index.getValue() + ")");
+                log.info("表 {} 已补充索引: {}", tableName, index.getKey());
+            } catch (Exception e) {
+                log.error("表 {} 补充索引 {} 失败", tableName, index.getKey(), e);
+            }
+        }
+    }
+
+    private static Map<String, String> columns(String... nameAndDefinitions) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < nameAndDefinitions.length; i += 2) {
+            columns.put(nameAndDefinitions[i], nameAndDefinitions[i + 1]);
+        }
+        return columns;
+    }
+
     /**
      * 插入表的初始数据
      * @param tableName 表名
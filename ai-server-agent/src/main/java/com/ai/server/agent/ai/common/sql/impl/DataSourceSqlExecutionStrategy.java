@@ -131,4 +131,30 @@ public class DataSourceSqlExecutionStrategy implements SqlExecutionStrategy {
             return false;
         }
     }
+
+    @Override
+    public boolean columnExists(String tableName, String columnName) {
+        log.debug("使用DataSource检查列是否存在: {}.{}", tableName, columnName);
+        try {
+            String sql = "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, tableName, columnName);
+            return count != null && count > 0;
+        } catch (Exception e) {
+            log.error("检查DataSource列是否存在失败: {}.{}", tableName, columnName, e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean indexExists(String tableName, String indexName) {
+        log.debug("使用DataSource检查索引是否存在: {}.{}", tableName, indexName);
+        try {
+            String sql = "SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, tableName, indexName);
+            return count != null && count > 0;
+        } catch (Exception e) {
+            log.error("检查DataSource索引是否存在失败: {}.{}", tableName, indexName, e);
+            return false;
+        }
+    }
 }
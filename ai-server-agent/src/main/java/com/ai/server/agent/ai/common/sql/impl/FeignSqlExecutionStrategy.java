@@ -409,4 +409,62 @@ public class FeignSqlExecutionStrategy implements SqlExecutionStrategy {
         }
         return false;
     }
+
+    @Override
+    public boolean columnExists(String tableName, String columnName) {
+        log.debug("使用Feign检查列是否存在: {}.{}", tableName, columnName);
+        try {
+            String sql = "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+            RemoteSqlDTO remoteSqlDTO = RemoteSqlDTO.builder()
+                    .appId(appId)
+                    .sql(sql)
+                    .params(List.of(tableName, columnName))
+                    .dataSource(dataSource)
+                    .build();
+            R<List<Map<String, Object>>> result = dataAccessMysqlClient.queryForList(remoteSqlDTO);
+            if (result != null && result.isSuccess() && result.getData() != null && !result.getData().isEmpty()) {
+                Map<String, Object> map = result.getData().get(0);
+                for (Object value : map.values()) {
+                    if (value != null) {
+                        Integer count = Integer.valueOf(String.valueOf(value));
+                        return count > 0;
+                    }
+                }
+            } else {
+                log.error("Feign检查列是否存在失败: {}", result != null ? result.getMessage() : "未知错误");
+            }
+        } catch (Exception e) {
+            log.error("Feign检查列是否存在异常: {}.{}", tableName, columnName, e);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean indexExists(String tableName, String indexName) {
+        log.debug("使用Feign检查索引是否存在: {}.{}", tableName, indexName);
+        try {
+            String sql = "SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+            RemoteSqlDTO remoteSqlDTO = RemoteSqlDTO.builder()
+                    .appId(appId)
+                    .sql(sql)
+                    .params(List.of(tableName, indexName))
+                    .dataSource(dataSource)
+                    .build();
+            R<List<Map<String, Object>>> result = dataAccessMysqlClient.queryForList(remoteSqlDTO);
+            if (result != null && result.isSuccess() && result.getData() != null && !result.getData().isEmpty()) {
+                Map<String, Object> map = result.getData().get(0);
+                for (Object value : map.values()) {
+                    if (value != null) {
+                        Integer count = Integer.valueOf(String.valueOf(value));
+                        return count > 0;
+                    }
+                }
+            } else {
+                log.error("Feign检查索引是否存在失败: {}", result != null ? result.getMessage() : "未知错误");
+            }
+        } catch (Exception e) {
+            log.error("Feign检查索引是否存在异常: {}.{}", tableName, indexName, e);
+        }
+        return false;
+    }
 }
@@ -3,12 +3,15 @@ package com.ai.server.agent.ai.common.sse;
 import com.ai.server.agent.ai.common.sse.entity.SessionInfo;
 import com.ai.server.agent.ai.common.sse.entity.SseMessage;
 import com.ai.server.agent.ai.common.sse.repository.SessionInfoRepository;
-import com.ai.server.agent.ai.common.sse.repository.SseMessageRepository;
+import com.ai.server.agent.ai.config.SseProperties;
+import com.ai.server.agent.ai.constant.ResponseEventConstant;
 import com.ai.server.agent.ai.rest.response.ResponseAi;
 import com.ai.server.agent.ai.interceptor.UserContextHolder;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.context.request.RequestContextHolder;
@@ -17,8 +20,10 @@ import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.Optional;
@@ -30,9 +35,22 @@ public class AiGlobalSseEmitterManager {
     private final ConcurrentMap<String, SseEmitter> emitters = new ConcurrentHashMap<>();
     // 存储连接状态（true表示活跃，false表示已关闭/超时/错误）
     private final ConcurrentMap<String, AtomicBoolean> connectionStates = new ConcurrentHashMap<>();
+    // 存储每个连接的出站写入器
+    private final ConcurrentMap<String, SseConnectionWriter> writers = new ConcurrentHashMap<>();
+    // 存储连接关闭时需要执行的回调
+    private final ConcurrentMap<String, List<Runnable>> closeCallbacks = new ConcurrentHashMap<>();
+    // 存储回答结束时需要执行的回调，回答结束前连接已关闭时随连接关闭执行
+    private final ConcurrentMap<String, List<Runnable>> answerCallbacks = new ConcurrentHashMap<>();
     
     @Autowired
-    private SseMessageRepository sseMessageRepository;
+    private SseMessageWriteBuffer sseMessageWriteBuffer;
+
+    @Autowired
+    private SseProperties sseProperties;
+
+    @Autowired
+    @Qualifier("sseWriterExecutor")
+    private ThreadPoolTaskScheduler sseWriterExecutor;
     
     @Autowired
     private SessionInfoRepository sessionInfoRepository;
@@ -53,14 +71,22 @@ public class AiGlobalSseEmitterManager {
      * 创建发射器并绑定到当前线程，自定义超时时间
      */
     public SseEmitter createEmitterByConnId(String connId, String sessionId, long timeoutMs) {
-        // 创建带自定义超时的发射器
-        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // 创建带自定义超时的发射器，Spring MVC接管时发出就绪信号
+        ReadySignalingSseEmitter emitter = new ReadySignalingSseEmitter(timeoutMs);
         // 添加监听器处理连接完成、错误和超时
         setupEmitterListeners(connId, emitter);
         // 初始化连接状态为活跃
         connectionStates.put(connId, new AtomicBoolean(true));
         // 注册发射器
         emitters.put(connId, emitter);
+        // 注册出站写入器，后续事件统一经由队列异步写出
+        SseConnectionWriter writer = new SseConnectionWriter(connId, emitter,
+                sseProperties.getQueueCapacity(),
+                sseProperties.getOverflowPolicy(),
+                sseProperties.getMaxDrainBatch(),
+                sseProperties.getBatch().toPolicy(),
+                sseWriterExecutor);
+        writers.put(connId, writer);
 
         // 设置响应头禁用缓冲和增强实时推送配置
         disableCacheInResponse();
@@ -71,37 +97,9 @@ public class AiGlobalSseEmitterManager {
         // 创建或更新会话信息
         createOrUpdateSession(sessionId, userId, connId);
 
-        // 发送一个初始事件，确认连接建立并验证实时性
-        try {
-            // 先等待一段时间让handler有机会初始化
-            Thread.sleep(50);
-            // 强制等待handler初始化，传入正确的connectionId
-            waitForHandlerInitialization(emitter, connId);
-            SseEmitter.SseEventBuilder connected = SseEmitter.event().name("connected");
-            // 尝试直接通过Emitter发送原始SSE格式的数据
-            try {
-                emitter.send(connected);
-                log.info("已发送原始格式的初始连接事件，连接ID: {}", connId);
-            } catch (IllegalStateException e) {
-                // 如果直接发送原始数据失败，尝试使用标准builder
-                log.warn("原始初始事件发送失败，尝试标准事件，连接ID: {}", connId, e);
-                try {
-                    SseEmitter.SseEventBuilder initEvent = SseEmitter.event()
-                            .id(String.valueOf(connId))
-                            .name("connected")
-                            .data(ResponseAi.ofMessage("Connection established"))
-                            .reconnectTime(1000);
-                    emitter.send(initEvent);
-                    log.info("已发送标准格式的初始连接事件，连接ID: {}", connId);
-                } catch (Exception ex) {
-                    log.warn("标准初始事件发送也失败，将继续运行，连接ID: {}", connId, ex);
-                }
-            }
-            // 立即执行强制刷新所有缓冲区
-            forceFlushAllBuffers(connId);
-        } catch (Exception e) {
-            log.warn("发送初始连接事件失败，连接ID: {}", connId, e);
-        }
+        // 初始连接事件作为队列中的第一个事件，发射器就绪后立即写出，之后的事件按序跟随
+        writer.offer(new SseConnectionWriter.OutboundEvent("connected", null));
+        emitter.onReady(writer::markReady);
         log.info("创建新的SSE连接并绑定连接ID: {}，会话ID: {}", connId, sessionId);
         return emitter;
     }
@@ -227,176 +225,84 @@ public class AiGlobalSseEmitterManager {
 
 
     /**
-     * 使用反射检查SseEmitter的handler是否已初始化
-     * 这是一个更直接的handler状态检查方法，不会触发实际的发送操作
+     * 发送SSE事件
      */
-    private boolean isHandlerInitialized(SseEmitter emitter) {
-        if (emitter == null) {
-            return false;
-        }
-
-        try {
-            // 使用反射获取父类ResponseBodyEmitter中的handler字段
-            java.lang.reflect.Field handlerField = emitter.getClass().getSuperclass().getDeclaredField("handler");
-            handlerField.setAccessible(true);
-            Object handler = handlerField.get(emitter);
-            boolean initialized = handler != null;
-
-            // 记录handler状态日志（调试级别）
-            if (log.isDebugEnabled()) {
-                log.debug("SSE连接handler状态检查: {}", initialized ? "已初始化" : "未初始化");
-            }
-
-            return initialized;
-        } catch (Exception e) {
-            // 反射访问失败时，不再尝试发送测试消息，直接返回true
-            // 优化：减少不必要的发送操作，提高性能和稳定性
-            log.debug("反射检查handler失败，错误: {}", e.getMessage());
-            return true;
-        }
+    public void sendEvent(String connectionId, Object message) {
+        sendEvent(connectionId, "message", message);
     }
 
     /**
-     * 等待handler初始化完成
-     * 即使不能直接初始化handler，我们可以等待框架自动初始化
+     * 发送带类型的SSE事件
+     * 消息先写入持久化缓冲，再进入连接的出站队列后立即返回，由写线程按顺序推送，调用方不会被阻塞
      */
-    private void waitForHandlerInitialization(SseEmitter emitter, String connectionId) {
-        if (emitter == null) {
-            return;
-        }
-
-        int maxRetries = 20; // 优化：减少重试次数到20次
-        int retryCount = 0;
-        int delayMs = 50; // 优化：增加每次尝试间隔到50ms，总超时时间保持1000ms
-        boolean hasAttemptedSend = false;
-
-        while (retryCount < maxRetries) {
-            try {
-                if (isHandlerInitialized(emitter)) {
-                    log.debug("handler 已初始化，准备发送消息，连接ID: {}", connectionId);
-                    // 初始化成功后立即执行一次刷新，使用正确的连接ID
-                    forceFlushAllBuffers(connectionId);
-                    return;
-                }
-
-                // 优化：只在重试次数过半时尝试发送测试数据，减少不必要的资源消耗
-                if (retryCount == maxRetries / 2 && !hasAttemptedSend) {
-                    // 尝试通过发送极小的测试数据来触发handler初始化
-                    try {
-                        // 尝试发送原始SSE格式的测试事件，更简单更直接
-                        SseEmitter.SseEventBuilder init = SseEmitter.event().name("_init");
-                        emitter.send(init);
-                        log.debug("尝试触发handler初始化，连接ID: {}", connectionId);
-
-                        // 发送后立即刷新，使用正确的连接ID
-                        forceFlushAllBuffers(connectionId);
-                        hasAttemptedSend = true;
-                    } catch (Exception e) {
-                        // 忽略发送测试消息的异常，继续等待
-                        log.debug("测试消息发送异常: {}, 连接ID: {}", e.getMessage(), connectionId);
-                    }
-                }
-
-                Thread.sleep(delayMs);
-                retryCount++;
-            } catch (Exception e) {
-                log.debug("等待handler初始化时发生异常: {}, 连接ID: {}", e.getMessage(), connectionId);
-                break;
-            }
-        }
-
-        // 优化：只在必要时记录警告日志，减少日志噪音
-        if (!isHandlerInitialized(emitter)) {
-            log.warn("等待handler初始化超时，将尝试强制发送，连接ID: {}", connectionId);
+    public void sendEvent(String connectionId, String eventType, Object message) {
+        // 持久化缓冲为内存操作，在调用方线程完成，保证与流式回答结束标记的先后顺序
+        saveSseMessageToDatabase(connectionId, eventType, message);
+        SseConnectionWriter writer = writers.get(connectionId);
+        if (writer != null && isConnectionActive(connectionId)) {
+            writer.offer(new SseConnectionWriter.OutboundEvent(eventType, message));
+        } else {
+            log.warn("无法发送SSE事件：连接不存在或已关闭，连接ID: {}", connectionId);
         }
     }
 
-
     /**
-     * 发送SSE事件
+     * 标记一次流式回答结束（正常完成或出错）
+     * 聚合存储模式下将该连接累积的回答片段作为一条完整消息写出
+     * @param connectionId 连接ID
      */
-    public void sendEvent(String connectionId, Object message) {
-        sendEvent(connectionId, "message", message);
+    public void completeMessageStream(String connectionId) {
+        sseMessageWriteBuffer.completeAnswer(connectionId);
+        runCallbacks(answerCallbacks, connectionId);
     }
 
     /**
-     * 发送带类型的SSE事件，并确保实时推送
+     * 按智能体配置调整连接的回答片段合并策略，未配置的项沿用全局配置
+     * @param connectionId 连接ID
+     * @param maxBytes 单帧最大字节数，0表示不合并
+     * @param maxLatencyMs 片段最大等待毫秒数
      */
-    public void sendEvent(String connectionId, String eventType, Object message) {
-        SseEmitter emitter = emitters.get(connectionId);
-        boolean initialized = isHandlerInitialized(emitter);
-        // 记录handler状态，但不再因为handler未初始化而提前退出
-        if (!initialized) {
-            log.warn("handler 未初始化，尝试强制发送，连接ID: {}", connectionId);
-            // 在handler未初始化情况下，强制尝试等待和刷新，传入正确的connectionId
-            waitForHandlerInitialization(emitter, connectionId);
+    public void configureBatching(String connectionId, Integer maxBytes, Integer maxLatencyMs) {
+        SseConnectionWriter writer = writers.get(connectionId);
+        if (writer != null) {
+            writer.setBatchingPolicy(sseProperties.getBatch().toPolicy().override(maxBytes, maxLatencyMs));
         }
+    }
 
-        if (emitter != null && isConnectionActive(connectionId)) {
-            try {
-                // 创建标准化的SSE事件
-                SseEmitter.SseEventBuilder event = SseEmitter.event()
-                        .id(connectionId)
-                        .name(eventType)
-                        .data(message)
-                        .reconnectTime(1000); // 重连时间
-
-                // 发送事件 - 即使handler未初始化也尝试发送
-                try {
-                    emitter.send(event);
-                    // 发送成功后立即执行强制刷新
-                    forceFlushAllBuffers(connectionId);
-
-                    // 保存SSE消息到数据库（在发送成功后执行，确保不会影响SSE流）
-                    saveSseMessageToDatabase(connectionId, eventType, message);
-
-                } catch (IllegalStateException e) {
-                    // 如果因为handler未初始化导致异常，记录并尝试等待后重试
-                    log.warn("发送事件时遇到IllegalStateException(可能是handler未初始化)，连接ID: {}", connectionId, e);
-
-                    // 尝试等待一小段时间后重试
-                    try {
-                        Thread.sleep(50);
-                        emitter.send(event);
-                        log.info("重试后成功发送SSE事件，连接ID: {}, 事件类型: {}", connectionId, eventType);
-
-                        // 发送成功后立即执行强制刷新
-                        forceFlushAllBuffers(connectionId);
-                        
-                        // 保存SSE消息到数据库（在发送成功后执行，确保不会影响SSE流）
-                        saveSseMessageToDatabase(connectionId, eventType, message);
-                    } catch (Exception retryEx) {
-                        log.error("重试发送SSE事件失败，连接ID: {}", connectionId, retryEx);
-                        
-                        // 即使发送失败，也尝试保存消息到数据库
-                        try {
-                            saveSseMessageToDatabase(connectionId, eventType, message);
-                        } catch (Exception dbEx) {
-                            log.error("保存SSE消息到数据库失败，连接ID: {}", connectionId, dbEx);
-                        }
-                    }
-                }
-
-                // 短时间暂停，确保数据有时间发送
-                Thread.sleep(20); // 增加暂停时间确保数据传输
+    /**
+     * 登记不经过SseEmitter的响应式流，建立连接ID与会话ID的映射，供消息持久化使用
+     * 会访问数据库，需在阻塞线程中调用
+     * @param connectionId 连接ID
+     * @param sessionId 会话ID
+     */
+    public void openDetachedStream(String connectionId, String sessionId) {
+        createOrUpdateSession(sessionId, getUserId(), connectionId);
+    }
 
-                // 再次刷新以确保数据完全发送
-                try {
-                    forceFlushAllBuffers(connectionId);
-                } catch (Exception e) {
-                    log.debug("二次刷新失败: {}", e.getMessage());
-                }
+    /**
+     * 只记录事件，不推送，用于响应式流的持久化旁路
+     * 写入内存缓冲后立即返回，不阻塞调用线程
+     * @param connectionId 连接ID
+     * @param eventType 事件类型
+     * @param message 消息
+     */
+    public void recordEvent(String connectionId, String eventType, Object message) {
+        saveSseMessageToDatabase(connectionId, eventType, message);
+    }
 
-            } catch (Exception e) {
-                log.error("发送SSE事件失败，连接ID: {}", connectionId, e);
-            }
-        } else {
-            log.warn("无法发送SSE事件：连接不存在或已关闭，连接ID: {}", connectionId);
-            // 即使连接关闭，也保存消息到数据库
-            saveSseMessageToDatabase(connectionId, eventType, message);
+    /**
+     * 结束响应式流：写出聚合的回答，释放消息缓冲并清理会话映射
+     * @param connectionId 连接ID
+     */
+    public void closeDetachedStream(String connectionId) {
+        completeMessageStream(connectionId);
+        sseMessageWriteBuffer.release(connectionId);
+        String sessionId = connectIdToSessionId.remove(connectionId);
+        if (sessionId != null) {
+            sessionIdToConnectId.remove(sessionId, connectionId);
         }
     }
-    
+
     /**
      * 保存SSE消息到数据库
      */
@@ -419,6 +325,8 @@ public class AiGlobalSseEmitterManager {
             
             // 将消息转换为字符串，处理可能的序列化异常
             String messageContent;
+            // 流式回答片段可与同一连接的相邻片段合并为一行
+            String mergeableAnswer = null;
             try {
                 if (message instanceof ResponseAi) {
                     // 处理ResponseAi类型，确保data字段能正确序列化
@@ -426,6 +334,10 @@ public class AiGlobalSseEmitterManager {
                     // 创建一个副本，只保留可序列化的字段
                     ResponseAi serializableResponseAi = ResponseAi.ofMessage(responseAi.getAnswer());
                     messageContent = serializableResponseAi.toString();
+                    if ("message".equals(eventType) && ResponseEventConstant.AGENT_MESSAGE.equals(responseAi.getEvent())
+                            && responseAi.getAnswer() != null) {
+                        mergeableAnswer = responseAi.getAnswer();
+                    }
                 } else {
                     // 其他类型直接转换
                     messageContent = message.toString();
@@ -445,38 +357,13 @@ public class AiGlobalSseEmitterManager {
                     .messageContent(messageContent) // 使用处理后的消息内容
                     .build();
             
-            // 保存到数据库
-            sseMessageRepository.save(sseMessage);
+            // 交给写缓冲异步批量保存
+            sseMessageWriteBuffer.add(sseMessage, mergeableAnswer);
         } catch (Exception e) {
             log.error("保存SSE消息到数据库失败，连接ID: {}", connectionId, e);
         }
     }
 
-    /**
-     * 强制刷新所有可能的缓冲区，确保消息立即推送
-     * 这是一个综合刷新方法，尝试通过多种方式刷新不同层次的缓冲区
-     */
-    private void forceFlushAllBuffers(String connectionId) {
-        log.debug("开始强制刷新所有缓冲区，连接ID: {}", connectionId);
-
-        // 尝试直接从请求上下文刷新响应（主要刷新方式）
-        try {
-            ServletRequestAttributes requestAttributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-            if (requestAttributes != null) {
-                HttpServletResponse response = requestAttributes.getResponse();
-                if (response != null) {
-                    // 强制刷新响应缓冲区（只保留必要的刷新操作）
-                    response.flushBuffer();
-                    log.debug("成功直接刷新响应缓冲区，连接ID: {}", connectionId);
-                }
-            }
-        } catch (Exception e) {
-            log.debug("直接刷新响应缓冲区失败，连接ID: {}", connectionId, e);
-        }
-
-        log.debug("强制刷新所有缓冲区完成，连接ID: {}", connectionId);
-    }
-
     /**
      * 发送错误事件
      */
@@ -504,6 +391,7 @@ public class AiGlobalSseEmitterManager {
                 })
                 .doFinally(signal -> {
                     log.info("Flux处理完成，信号: {}, 连接ID: {}", signal, connectionId);
+                    completeMessageStream(connectionId);
                     synchronized (fluxPublisher) {
                         condition.set(true);
                         fluxPublisher.notifyAll();
@@ -548,16 +436,64 @@ public class AiGlobalSseEmitterManager {
      * 完成连接，并清理相关映射关系
      */
     public void completeConnection(String connId) {
-        SseEmitter emitter = emitters.get(connId);
+        // 写出该连接已缓冲的消息
+        sseMessageWriteBuffer.flush(connId);
+        SseConnectionWriter writer = writers.get(connId);
         // 使用我们自己维护的连接状态来判断是否需要完成连接
-        if (emitter != null) {
-            emitter.complete();
-            
-            // 调用markConnectionInactive来清理所有相关映射关系，确保连接ID失效
-            markConnectionInactive(connId);
+        if (writer != null) {
+            // 出站队列写完后再结束emitter，emitter的完成回调会清理映射关系
+            writer.complete();
+        } else {
+            SseEmitter emitter = emitters.get(connId);
+            if (emitter != null) {
+                emitter.complete();
+                // 调用markConnectionInactive来清理所有相关映射关系，确保连接ID失效
+                markConnectionInactive(connId);
+            }
+        }
+    }
+
+
+    /**
+     * 注册连接关闭回调，连接完成、出错或超时时执行一次
+     * 连接已关闭时立即执行
+     * @param connectionId 连接ID
+     * @param callback 回调
+     */
+    public void onConnectionClosed(String connectionId, Runnable callback) {
+        closeCallbacks.computeIfAbsent(connectionId, key -> new CopyOnWriteArrayList<>()).add(callback);
+        // 注册期间连接可能已关闭，此时由注册方负责执行
+        if (!isConnectionActive(connectionId)) {
+            runCallbacks(closeCallbacks, connectionId);
+        }
+    }
+
+    /**
+     * 注册回答结束回调，流式回答结束（正常完成或出错）时执行一次
+     * 回答结束前连接已关闭时随连接关闭执行，连接已关闭时立即执行
+     * @param connectionId 连接ID
+     * @param callback 回调
+     */
+    public void onMessageStreamComplete(String connectionId, Runnable callback) {
+        answerCallbacks.computeIfAbsent(connectionId, key -> new CopyOnWriteArrayList<>()).add(callback);
+        if (!isConnectionActive(connectionId)) {
+            runCallbacks(answerCallbacks, connectionId);
         }
     }
 
+    private void runCallbacks(ConcurrentMap<String, List<Runnable>> registry, String connectionId) {
+        List<Runnable> callbacks = registry.remove(connectionId);
+        if (callbacks == null) {
+            return;
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                log.warn("执行连接回调失败，连接ID: {}", connectionId, e);
+            }
+        }
+    }
 
     /**
      * 检查连接是否激活
@@ -578,6 +514,7 @@ public class AiGlobalSseEmitterManager {
             // 清理所有与连接ID相关的映射关系，确保连接ID失效
             // 1. 清理emitters映射
             emitters.remove(connectionId);
+            writers.remove(connectionId);
             
             // 2. 清理connectionStates映射
             connectionStates.remove(connectionId);
@@ -590,6 +527,13 @@ public class AiGlobalSseEmitterManager {
             
             // 4. 清理connectIdToSessionId映射
             connectIdToSessionId.remove(connectionId);
+
+            // 5. 写出并释放该连接的消息缓冲
+            sseMessageWriteBuffer.release(connectionId);
+
+            // 6. 执行连接关闭回调，尚未结束的回答按结束处理
+            runCallbacks(answerCallbacks, connectionId);
+            runCallbacks(closeCallbacks, connectionId);
             
             log.info("已清理连接ID相关映射，连接ID: {}, 会话ID: {}", connectionId, sessionId);
         }
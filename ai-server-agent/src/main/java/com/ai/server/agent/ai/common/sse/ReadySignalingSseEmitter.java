@@ -0,0 +1,65 @@
+package com.ai.server.agent.ai.common.sse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 在Spring MVC接管发射器时发出就绪信号的SseEmitter
+ * 控制器返回发射器后，框架在设置响应并绑定处理器前回调extendResponse，此时起写出的事件会被直接推送或由发射器自身按序回放，
+ * 因此写入器只需等待该信号，无需轮询或反射检查处理器状态
+ */
+@Slf4j
+public class ReadySignalingSseEmitter extends SseEmitter {
+
+    private final Object readyLock = new Object();
+
+    private boolean ready;
+
+    private Runnable readyCallback;
+
+    public ReadySignalingSseEmitter(Long timeout) {
+        super(timeout);
+    }
+
+    /**
+     * 注册就绪回调，已就绪时立即执行
+     * @param callback 回调
+     */
+    public void onReady(Runnable callback) {
+        boolean runNow;
+        synchronized (readyLock) {
+            runNow = ready;
+            if (!runNow) {
+                readyCallback = callback;
+            }
+        }
+        if (runNow) {
+            callback.run();
+        }
+    }
+
+    public boolean isReady() {
+        synchronized (readyLock) {
+            return ready;
+        }
+    }
+
+    @Override
+    protected void extendResponse(ServerHttpResponse outputMessage) {
+        super.extendResponse(outputMessage);
+        Runnable callback;
+        synchronized (readyLock) {
+            ready = true;
+            callback = readyCallback;
+            readyCallback = null;
+        }
+        if (callback != null) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                log.warn("SSE发射器就绪回调执行失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ai.server.agent.ai.common.sse;
+
+import lombok.Getter;
+
+/**
+ * SSE回答片段合并策略
+ * 同一连接中相邻的回答片段合并为一帧推送，满足字节上限或最长等待时间任一条件即写出
+ */
+@Getter
+public class SseBatchingPolicy {
+
+    /**
+     * 不合并，每个片段单独推送
+     */
+    public static final SseBatchingPolicy DISABLED = new SseBatchingPolicy(0, 0, false, 1, 0);
+
+    /**
+     * 合并后单帧回答的字节上限（UTF-8），小于等于0表示不合并
+     */
+    private final int maxBytes;
+
+    /**
+     * 第一个片段入队后的最长等待时间（毫秒）
+     */
+    private final long maxLatencyMs;
+
+    /**
+     * 是否根据客户端消费速度自适应放大阈值
+     */
+    private final boolean adaptive;
+
+    /**
+     * 自适应时阈值的最大放大倍数
+     */
+    private final int adaptiveMaxFactor;
+
+    /**
+     * 单帧写出耗时超过该值（毫秒）视为客户端消费变慢
+     */
+    private final long slowSendMs;
+
+    public SseBatchingPolicy(int maxBytes, long maxLatencyMs, boolean adaptive, int adaptiveMaxFactor, long slowSendMs) {
+        this.maxBytes = maxBytes;
+        this.maxLatencyMs = Math.max(0, maxLatencyMs);
+        this.adaptive = adaptive;
+        this.adaptiveMaxFactor = Math.max(1, adaptiveMaxFactor);
+        this.slowSendMs = Math.max(0, slowSendMs);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * 使用智能体配置覆盖字节上限和等待时间，未配置的项沿用当前值
+     * @param agentMaxBytes 智能体配置的字节上限
+     * @param agentMaxLatencyMs 智能体配置的最长等待时间
+     * @return 新的策略
+     */
+    public SseBatchingPolicy override(Integer agentMaxBytes, Integer agentMaxLatencyMs) {
+        if (agentMaxBytes == null && agentMaxLatencyMs == null) {
+            return this;
+        }
+        return new SseBatchingPolicy(
+                agentMaxBytes != null ? agentMaxBytes : maxBytes,
+                agentMaxLatencyMs != null ? agentMaxLatencyMs : maxLatencyMs,
+                adaptive, adaptiveMaxFactor, slowSendMs);
+    }
+}
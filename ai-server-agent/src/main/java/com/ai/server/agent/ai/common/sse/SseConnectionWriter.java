@@ -0,0 +1,455 @@
+package com.ai.server.agent.ai.common.sse;
+
+import com.ai.server.agent.ai.constant.ResponseEventConstant;
+import com.ai.server.agent.ai.rest.response.ResponseAi;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个SSE连接的出站写入器
+ * 生产者只负责入队，不阻塞；由共享写线程池按连接串行排空队列，保证同一连接内事件顺序
+ * 相邻的回答片段按合并策略合并为一帧写出，减少帧头、JSON包装和刷新次数
+ * 持久化不经过写入器，由生产者在入队前写入内存缓冲
+ * 发射器交给Spring MVC之前入队的事件暂存在队列中，就绪后按序写出
+ * 队列满时回答片段不会被丢弃：丢弃策略只丢弃非回答事件，无可丢弃事件时向客户端推送错误事件并结束连接
+ */
+@Slf4j
+public class SseConnectionWriter {
+
+    // 写出耗时的指数移动平均权重
+    private static final double SEND_EWMA_ALPHA = 0.2;
+
+    private final String connectionId;
+    private final SseEmitter emitter;
+    private final BlockingQueue<OutboundEvent> queue;
+    private final SseOverflowPolicy overflowPolicy;
+    private final int maxDrainBatch;
+    private final ThreadPoolTaskScheduler writerScheduler;
+
+    // 同一时刻只允许一个写任务排空该连接的队列
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // 是否已安排延迟写出合并中的片段
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong writtenFrames = new AtomicLong();
+    private final AtomicLong mergedEvents = new AtomicLong();
+
+    private volatile boolean closed;
+    private volatile boolean completeRequested;
+    // 队列溢出且无法丢弃非回答事件，由写线程推送错误事件后结束连接
+    private volatile boolean overflowed;
+    // 发射器是否已由Spring MVC接管，未就绪前只入队不写出
+    private volatile boolean ready;
+    private volatile SseBatchingPolicy batchingPolicy;
+
+    // 以下字段只在持有draining的写线程中访问
+    private final StringBuilder pendingAnswer = new StringBuilder();
+    private int pendingBytes;
+    private int pendingEvents;
+    private long pendingSinceNanos;
+    private double avgSendNanos;
+    // 自适应放大倍数，客户端变慢时增大，恢复后逐步回落
+    private int adaptiveFactor = 1;
+
+    public SseConnectionWriter(String connectionId, SseEmitter emitter, int capacity,
+                               SseOverflowPolicy overflowPolicy, int maxDrainBatch,
+                               SseBatchingPolicy batchingPolicy,
+                               ThreadPoolTaskScheduler writerScheduler) {
+        this.connectionId = connectionId;
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : SseOverflowPolicy.CLOSE;
+        this.maxDrainBatch = Math.max(1, maxDrainBatch);
+        this.batchingPolicy = batchingPolicy != null ? batchingPolicy : SseBatchingPolicy.DISABLED;
+        this.writerScheduler = writerScheduler;
+    }
+
+    /**
+     * 事件入队，立即返回
+     * @param event 出站事件
+     * @return 是否被接受（被丢弃或连接已关闭时返回false）
+     */
+    public boolean offer(OutboundEvent event) {
+        if (closed || completeRequested) {
+            return false;
+        }
+        if (!queue.offer(event)) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    OutboundEvent oldest = oldestDroppable();
+                    if (oldest == null || !queue.remove(oldest)) {
+                        overflow();
+                        return false;
+                    }
+                    onDropped(oldest);
+                    if (!queue.offer(event)) {
+                        overflow();
+                        return false;
+                    }
+                    break;
+                case DROP_LATEST:
+                    if (isAnswer(event)) {
+                        overflow();
+                        return false;
+                    }
+                    onDropped(event);
+                    return false;
+                case CLOSE:
+                default:
+                    overflow();
+                    return false;
+            }
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * 标记发射器已就绪，开始写出队列中暂存的事件
+     */
+    public void markReady() {
+        ready = true;
+        scheduleDrain();
+    }
+
+    /**
+     * 设置回答片段合并策略，对之后写出的片段生效
+     * @param batchingPolicy 合并策略
+     */
+    public void setBatchingPolicy(SseBatchingPolicy batchingPolicy) {
+        this.batchingPolicy = batchingPolicy != null ? batchingPolicy : SseBatchingPolicy.DISABLED;
+    }
+
+    /**
+     * 请求完成连接：队列中已有事件全部写出后再结束emitter
+     */
+    public void complete() {
+        completeRequested = true;
+        scheduleDrain();
+    }
+
+    /**
+     * 立即关闭连接，尚未写出的事件不再推送
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("关闭SSE连接异常，连接ID: {}, 错误: {}", connectionId, e.getMessage());
+        }
+        scheduleDrain();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public int getQueuedEvents() {
+        return queue.size();
+    }
+
+    public long getWrittenFrames() {
+        return writtenFrames.get();
+    }
+
+    public long getMergedEvents() {
+        return mergedEvents.get();
+    }
+
+    private void scheduleDrain() {
+        if (!ready && !closed) {
+            return;
+        }
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writerScheduler.execute(this::drain);
+            } catch (Exception e) {
+                draining.set(false);
+                log.error("提交SSE写任务失败，连接ID: {}", connectionId, e);
+            }
+        }
+    }
+
+    /**
+     * 排空队列，每次最多处理maxDrainBatch个事件后让出线程
+     * 回答片段先进入合并缓冲，遇到其他事件、达到字节上限或等待超时时写出
+     */
+    private void drain() {
+        try {
+            if (overflowed) {
+                drainOverflowed();
+                return;
+            }
+            SseBatchingPolicy policy = batchingPolicy;
+            int processed = 0;
+            OutboundEvent event;
+            while (processed < maxDrainBatch && (event = queue.poll()) != null) {
+                processed++;
+                String answer = policy.isEnabled() ? mergeableAnswer(event) : null;
+                if (answer == null) {
+                    flushPending();
+                    write(event.getEventType(), event.getData());
+                    continue;
+                }
+                int bytes = utf8Length(answer);
+                if (pendingEvents > 0 && pendingBytes + bytes > effectiveMaxBytes(policy)) {
+                    flushPending();
+                }
+                if (pendingEvents == 0) {
+                    pendingSinceNanos = event.getEnqueuedNanos();
+                }
+                pendingAnswer.append(answer);
+                pendingBytes += bytes;
+                pendingEvents++;
+                if (pendingBytes >= effectiveMaxBytes(policy)) {
+                    flushPending();
+                }
+            }
+            if (pendingEvents > 0 && queue.isEmpty()) {
+                long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingSinceNanos);
+                long maxLatencyMs = effectiveMaxLatencyMs(policy);
+                if (completeRequested || closed || !policy.isEnabled() || waitedMs >= maxLatencyMs) {
+                    flushPending();
+                } else {
+                    scheduleDelayedFlush(maxLatencyMs - waitedMs);
+                }
+            }
+            if (queue.isEmpty() && pendingEvents == 0 && completeRequested && !closed) {
+                closed = true;
+                try {
+                    emitter.complete();
+                } catch (Exception e) {
+                    log.debug("完成SSE连接异常，连接ID: {}, 错误: {}", connectionId, e.getMessage());
+                }
+            }
+        } finally {
+            draining.set(false);
+            // 排空期间可能有新事件入队，或完成、溢出的请求在检查之后才到达，
+            // 此时其他线程的scheduleDrain因本线程仍在排空而未提交任务，由本线程补充调度
+            if (needsDrain()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    /**
+     * 是否还有需要排空线程处理的工作：未写出的事件、未执行的完成或溢出处理
+     */
+    private boolean needsDrain() {
+        return !queue.isEmpty() || ((completeRequested || overflowed) && !closed);
+    }
+
+    /**
+     * 队列溢出后丢弃尚未写出的事件，写出已合并的片段和错误事件后结束连接
+     * 已合并的片段在丢弃的事件之前，写出后回答在客户端只缺少末尾部分，由错误事件告知客户端
+     */
+    private void drainOverflowed() {
+        int discarded = 0;
+        while (queue.poll() != null) {
+            discarded++;
+        }
+        if (closed) {
+            return;
+        }
+        droppedEvents.addAndGet(discarded);
+        flushPending();
+        write("error", ResponseAi.ofError("客户端接收速度过慢，回答未能完整推送，请重新提问"));
+        closed = true;
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("完成SSE连接异常，连接ID: {}, 错误: {}", connectionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 等待时间到达后重新排空，写出合并中的片段
+     */
+    private void scheduleDelayedFlush(long delayMs) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writerScheduler.schedule(() -> {
+                    flushScheduled.set(false);
+                    scheduleDrain();
+                }, Instant.now().plusMillis(Math.max(1, delayMs)));
+            } catch (Exception e) {
+                flushScheduled.set(false);
+                log.error("安排SSE延迟写出失败，连接ID: {}", connectionId, e);
+            }
+        }
+    }
+
+    /**
+     * 写出合并缓冲中的回答片段
+     */
+    private void flushPending() {
+        if (pendingEvents == 0) {
+            return;
+        }
+        if (pendingEvents > 1) {
+            mergedEvents.addAndGet(pendingEvents - 1);
+        }
+        String answer = pendingAnswer.toString();
+        pendingAnswer.setLength(0);
+        pendingBytes = 0;
+        pendingEvents = 0;
+        write("message", ResponseAi.ofMessage(answer));
+    }
+
+    private void write(String eventType, Object data) {
+        try {
+            if (!closed) {
+                long start = System.nanoTime();
+                SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                        .id(connectionId)
+                        .name(eventType)
+                        .reconnectTime(1000);
+                if (data != null) {
+                    builder.data(data);
+                }
+                emitter.send(builder);
+                writtenFrames.incrementAndGet();
+                adapt(System.nanoTime() - start);
+            }
+        } catch (Exception e) {
+            // 客户端断开等写失败场景，后续事件不再尝试写出
+            log.warn("发送SSE事件失败，停止向该连接写出，连接ID: {}, 错误: {}", connectionId, e.getMessage());
+            closed = true;
+            try {
+                emitter.completeWithError(e);
+            } catch (Exception ignore) {
+                // emitter已结束
+            }
+        }
+    }
+
+    /**
+     * 根据写出耗时调整合并阈值：写出变慢说明客户端或网络消费不及时，放大阈值以减少帧数；恢复后逐步回落到配置值
+     */
+    private void adapt(long sendNanos) {
+        SseBatchingPolicy policy = batchingPolicy;
+        if (!policy.isAdaptive() || !policy.isEnabled()) {
+            adaptiveFactor = 1;
+            return;
+        }
+        avgSendNanos = avgSendNanos == 0 ? sendNanos : avgSendNanos + SEND_EWMA_ALPHA * (sendNanos - avgSendNanos);
+        long slowNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowSendMs());
+        boolean backlog = queue.size() > maxDrainBatch;
+        if (avgSendNanos > slowNanos || backlog) {
+            adaptiveFactor = Math.min(policy.getAdaptiveMaxFactor(), adaptiveFactor * 2);
+        } else if (avgSendNanos < slowNanos / 4.0 && adaptiveFactor > 1) {
+            adaptiveFactor = Math.max(1, adaptiveFactor / 2);
+        }
+    }
+
+    private int effectiveMaxBytes(SseBatchingPolicy policy) {
+        return policy.getMaxBytes() * adaptiveFactor;
+    }
+
+    private long effectiveMaxLatencyMs(SseBatchingPolicy policy) {
+        return policy.getMaxLatencyMs() * adaptiveFactor;
+    }
+
+    /**
+     * 可合并的回答片段返回其文本，否则返回null
+     */
+    private static String mergeableAnswer(OutboundEvent event) {
+        if (!"message".equals(event.getEventType()) || !(event.getData() instanceof ResponseAi)) {
+            return null;
+        }
+        ResponseAi responseAi = (ResponseAi) event.getData();
+        if (!ResponseEventConstant.AGENT_MESSAGE.equals(responseAi.getEvent())
+                || responseAi.getAnswer() == null || responseAi.getData() != null) {
+            return null;
+        }
+        return responseAi.getAnswer();
+    }
+
+    private static int utf8Length(String s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 队列溢出且没有可丢弃的事件，不再接受新事件，由写线程推送错误事件后结束连接
+     */
+    private void overflow() {
+        if (overflowed) {
+            return;
+        }
+        overflowed = true;
+        completeRequested = true;
+        log.warn("SSE出站队列已满且没有可丢弃的非回答事件，推送错误事件后关闭连接，连接ID: {}, 策略: {}",
+                connectionId, overflowPolicy);
+        scheduleDrain();
+    }
+
+    /**
+     * 队列中最早的非回答事件
+     */
+    private OutboundEvent oldestDroppable() {
+        for (OutboundEvent queued : queue) {
+            if (!isAnswer(queued)) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否为回答片段，回答片段丢弃后客户端看到的回答会缺字，不允许丢弃
+     */
+    private static boolean isAnswer(OutboundEvent event) {
+        return "message".equals(event.getEventType()) && event.getData() instanceof ResponseAi
+                && ResponseEventConstant.AGENT_MESSAGE.equals(((ResponseAi) event.getData()).getEvent());
+    }
+
+    private void onDropped(OutboundEvent event) {
+        long dropped = droppedEvents.incrementAndGet();
+        if (dropped == 1 || dropped % 100 == 0) {
+            log.warn("SSE出站队列已满，按策略{}丢弃事件，连接ID: {}, 累计丢弃: {}", overflowPolicy, connectionId, dropped);
+        }
+    }
+
+    /**
+     * 出站事件
+     */
+    @Getter
+    public static class OutboundEvent {
+        private final String eventType;
+        private final Object data;
+        private final long enqueuedNanos;
+
+        public OutboundEvent(String eventType, Object data) {
+            this.eventType = eventType;
+            this.data = data;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.ai.server.agent.ai.common.sse;
+
+import com.ai.server.agent.ai.common.sse.entity.SseMessage;
+import com.ai.server.agent.ai.common.sse.repository.SseMessageRepository;
+import com.ai.server.agent.ai.config.SseProperties;
+import com.ai.server.agent.ai.rest.response.ResponseAi;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SSE消息异步写缓冲
+ * 按连接缓存待写消息，同一连接连续的流式消息片段合并为一行，按数量或时间批量写入sse_message
+ * 聚合存储模式下，一次回答的片段在内存中累积为一条消息，回答结束时写出，期间定时写检查点
+ */
+@Component
+@Slf4j
+public class SseMessageWriteBuffer {
+
+    // 空闲连接缓冲的清理时间
+    private static final long IDLE_BUFFER_EXPIRE_MS = 10 * 60 * 1000L;
+
+    @Autowired
+    private SseMessageRepository sseMessageRepository;
+
+    @Autowired
+    private SseProperties sseProperties;
+
+    @Autowired
+    @Qualifier("ssePersistScheduler")
+    private ThreadPoolTaskScheduler ssePersistScheduler;
+
+    // 按连接ID组织的待写消息，所有访问都需持有lock
+    private final Map<String, ConnectionBuffer> buffers = new LinkedHashMap<>();
+    private final Object lock = new Object();
+    private int pendingCount;
+
+    // 等待重试写入的消息，key为消息ID，同一消息有更新的内容写入或等待重试时旧的重试作废
+    private final Map<String, SseMessage> retrying = new ConcurrentHashMap<>();
+
+    // 避免达到批量阈值时重复提交刷新任务
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void start() {
+        long interval = Math.max(100, sseProperties.getPersist().getFlushIntervalMs());
+        ssePersistScheduler.scheduleWithFixedDelay(this::flushAll, Duration.ofMillis(interval));
+        long checkpointInterval = Math.max(interval, sseProperties.getPersist().getCheckpointIntervalMs());
+        ssePersistScheduler.scheduleWithFixedDelay(this::checkpoint, Duration.ofMillis(checkpointInterval));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 停机前写出所有缓冲消息
+        flushAll();
+    }
+
+    /**
+     * 添加待写消息
+     * @param message SSE消息，messageContent已序列化
+     * @param mergeableAnswer 可合并的流式回答片段，非流式消息传null
+     */
+    public void add(SseMessage message, String mergeableAnswer) {
+        boolean reachBatch;
+        synchronized (lock) {
+            ConnectionBuffer buffer = buffers.computeIfAbsent(message.getConnectId(), k -> new ConnectionBuffer());
+            long now = System.currentTimeMillis();
+            // 同一连接内发送时间严格递增，保证按send_time读取时顺序不乱
+            long sendMillis = Math.max(now, buffer.lastSendMillis + 1);
+            buffer.lastSendMillis = sendMillis;
+            buffer.lastAccessMillis = now;
+
+            if (isAggregateMode()) {
+                if (mergeableAnswer != null) {
+                    appendAnswer(buffer, message, mergeableAnswer, sendMillis);
+                    return;
+                }
+                // 非回答片段到达时结束当前回答，保持消息先后顺序
+                closeAnswer(buffer);
+            }
+
+            PendingMessage last = buffer.messages.peekLast();
+            if (mergeableAnswer != null && last != null && last.canMerge(message, mergeableAnswer,
+                    sseProperties.getPersist().getMergeMaxChars())) {
+                last.answer.append(mergeableAnswer);
+                return;
+            }
+
+            if (message.getId() == null || message.getId().isEmpty()) {
+                message.setId(UUID.randomUUID().toString());
+            }
+            message.setSendTime(toLocalDateTime(sendMillis));
+            buffer.messages.addLast(new PendingMessage(message, mergeableAnswer));
+            pendingCount++;
+            reachBatch = pendingCount >= sseProperties.getPersist().getBatchSize();
+        }
+        if (reachBatch) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * 结束指定连接当前的流式回答，聚合模式下将累积的回答作为完整消息写出
+     * @param connectId 连接ID
+     */
+    public void completeAnswer(String connectId) {
+        if (connectId == null || !isAggregateMode()) {
+            return;
+        }
+        boolean closed;
+        synchronized (lock) {
+            ConnectionBuffer buffer = buffers.get(connectId);
+            closed = buffer != null && closeAnswer(buffer);
+        }
+        if (closed) {
+            flush(connectId);
+        }
+    }
+
+    /**
+     * 聚合模式下为未结束的回答写检查点，使用同一消息ID覆盖写入
+     */
+    public void checkpoint() {
+        if (!isAggregateMode()) {
+            return;
+        }
+        List<SseMessage> snapshots = new ArrayList<>();
+        synchronized (lock) {
+            for (ConnectionBuffer buffer : buffers.values()) {
+                PendingMessage answer = buffer.openAnswer;
+                if (answer != null && answer.dirty) {
+                    snapshots.add(answer.snapshot());
+                    answer.dirty = false;
+                }
+            }
+        }
+        write(snapshots);
+    }
+
+    /**
+     * 异步写出指定连接的缓冲消息
+     * @param connectId 连接ID
+     */
+    public void flush(String connectId) {
+        ssePersistScheduler.execute(() -> write(drain(connectId, false)));
+    }
+
+    /**
+     * 写出并释放指定连接的缓冲，连接结束时调用
+     * @param connectId 连接ID
+     */
+    public void release(String connectId) {
+        ssePersistScheduler.execute(() -> write(drain(connectId, true)));
+    }
+
+    /**
+     * 写出所有缓冲消息
+     */
+    public void flushAll() {
+        List<SseMessage> messages = new ArrayList<>();
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, ConnectionBuffer>> iterator = buffers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                ConnectionBuffer buffer = iterator.next().getValue();
+                boolean idle = now - buffer.lastAccessMillis > IDLE_BUFFER_EXPIRE_MS;
+                if (idle) {
+                    // 长时间无消息的连接缓冲写出后清理，包括未正常结束的回答
+                    closeAnswer(buffer);
+                    drainTo(buffer, messages);
+                    iterator.remove();
+                    continue;
+                }
+                drainTo(buffer, messages);
+            }
+        }
+        write(messages);
+    }
+
+    private boolean isAggregateMode() {
+        return sseProperties.getPersist().getStorageMode() == SseStorageMode.AGGREGATE;
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            ssePersistScheduler.execute(() -> {
+                flushRequested.set(false);
+                flushAll();
+            });
+        }
+    }
+
+    /**
+     * 追加回答片段，超过单行上限时结束当前行并续写到新行，需持有lock
+     */
+    private void appendAnswer(ConnectionBuffer buffer, SseMessage message, String answer, long sendMillis) {
+        PendingMessage open = buffer.openAnswer;
+        if (open != null && open.canMerge(message, answer, sseProperties.getPersist().getAggregateMaxChars())) {
+            open.answer.append(answer);
+            open.dirty = true;
+            return;
+        }
+        closeAnswer(buffer);
+        if (message.getId() == null || message.getId().isEmpty()) {
+            message.setId(UUID.randomUUID().toString());
+        }
+        message.setSendTime(toLocalDateTime(sendMillis));
+        PendingMessage pending = new PendingMessage(message, answer);
+        pending.dirty = true;
+        buffer.openAnswer = pending;
+    }
+
+    /**
+     * 结束当前回答并转入待写队列，需持有lock
+     * @return 是否存在未结束的回答
+     */
+    private boolean closeAnswer(ConnectionBuffer buffer) {
+        PendingMessage open = buffer.openAnswer;
+        if (open == null) {
+            return false;
+        }
+        buffer.openAnswer = null;
+        buffer.messages.addLast(open);
+        pendingCount++;
+        return true;
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private List<SseMessage> drain(String connectId, boolean release) {
+        if (connectId == null) {
+            return Collections.emptyList();
+        }
+        List<SseMessage> messages = new ArrayList<>();
+        synchronized (lock) {
+            ConnectionBuffer buffer = release ? buffers.remove(connectId) : buffers.get(connectId);
+            if (buffer != null) {
+                // 连接完成或释放时，未结束的回答按已接收内容写出
+                closeAnswer(buffer);
+                drainTo(buffer, messages);
+            }
+        }
+        return messages;
+    }
+
+    private void drainTo(ConnectionBuffer buffer, List<SseMessage> messages) {
+        PendingMessage pending;
+        while ((pending = buffer.messages.pollFirst()) != null) {
+            messages.add(pending.toMessage());
+            pendingCount--;
+        }
+    }
+
+    /**
+     * 按批量大小分批写入，失败时有限次重试
+     */
+    private void write(List<SseMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(1, sseProperties.getPersist().getBatchSize());
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<SseMessage> batch = new ArrayList<>(messages.subList(from, Math.min(from + batchSize, messages.size())));
+            writeBatch(batch, 0);
+        }
+    }
+
+    /**
+     * 写入一批消息，失败时通过调度器延迟重试，不在唯一的写线程上休眠等待
+     * 重试前剔除已被更新内容覆盖写入的消息，避免聚合模式下旧的检查点覆盖较新的回答
+     */
+    private void writeBatch(List<SseMessage> batch, int attempt) {
+        if (attempt > 0) {
+            batch.removeIf(message -> retrying.get(message.getId()) != message);
+            if (batch.isEmpty()) {
+                return;
+            }
+        }
+        if (sseMessageRepository.saveAll(batch) >= 0) {
+            batch.forEach(message -> retrying.remove(message.getId()));
+            return;
+        }
+        int maxRetries = Math.max(0, sseProperties.getPersist().getMaxRetries());
+        if (attempt < maxRetries) {
+            batch.forEach(message -> retrying.put(message.getId(), message));
+            try {
+                // 退避重试，避免数据库异常时频繁重试
+                ssePersistScheduler.schedule(() -> writeBatch(batch, attempt + 1),
+                        Instant.now().plusMillis(200L * (attempt + 1)));
+                return;
+            } catch (Exception e) {
+                log.warn("安排SSE消息重试写入失败: {}", e.getMessage());
+            }
+        }
+        batch.forEach(message -> retrying.remove(message.getId(), message));
+        log.error("批量保存SSE消息失败，已重试{}次，丢弃{}条消息，连接ID: {}", attempt, batch.size(),
+                batch.get(0).getConnectId());
+    }
+
+    /**
+     * 单个连接的写缓冲
+     */
+    private static class ConnectionBuffer {
+        private final Deque<PendingMessage> messages = new ArrayDeque<>();
+        // 聚合模式下尚未结束的回答
+        private PendingMessage openAnswer;
+        private long lastSendMillis;
+        private long lastAccessMillis;
+    }
+
+    /**
+     * 待写消息，流式回答片段保存原文以便合并
+     */
+    private static class PendingMessage {
+        private final SseMessage message;
+        private final StringBuilder answer;
+        // 自上次检查点以来是否有新片段
+        private boolean dirty;
+
+        PendingMessage(SseMessage message, String mergeableAnswer) {
+            this.message = message;
+            this.answer = mergeableAnswer != null ? new StringBuilder(mergeableAnswer) : null;
+        }
+
+        boolean canMerge(SseMessage next, String nextAnswer, int maxChars) {
+            return answer != null
+                    && answer.length() + nextAnswer.length() <= maxChars
+                    && equalsNullable(message.getMessageType(), next.getMessageType())
+                    && equalsNullable(message.getUserId(), next.getUserId())
+                    && equalsNullable(message.getSessionId(), next.getSessionId())
+                    && equalsNullable(message.getAgentId(), next.getAgentId());
+        }
+
+        SseMessage snapshot() {
+            return SseMessage.builder()
+                    .id(message.getId())
+                    .userId(message.getUserId())
+                    .sessionId(message.getSessionId())
+                    .connectId(message.getConnectId())
+                    .agentId(message.getAgentId())
+                    .messageType(message.getMessageType())
+                    .messageContent(ResponseAi.ofMessage(answer.toString()).toString())
+                    .sendTime(message.getSendTime())
+                    .isDeleted(message.isDeleted())
+                    .build();
+        }
+
+        SseMessage toMessage() {
+            if (answer != null) {
+                message.setMessageContent(ResponseAi.ofMessage(answer.toString()).toString());
+            }
+            return message;
+        }
+
+        private static boolean equalsNullable(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ai.server.agent.ai.common.sse;
+
+/**
+ * SSE出站队列溢出策略
+ * 客户端消费速度跟不上生产速度时，决定如何处理新到达的事件
+ * 回答片段不参与丢弃，丢弃策略下没有可丢弃的非回答事件时按CLOSE处理
+ */
+public enum SseOverflowPolicy {
+
+    /**
+     * 丢弃队列中最早的非回答事件，保留最新事件
+     */
+    DROP_OLDEST,
+
+    /**
+     * 丢弃新到达的非回答事件
+     */
+    DROP_LATEST,
+
+    /**
+     * 向客户端推送错误事件后关闭连接
+     */
+    CLOSE
+}
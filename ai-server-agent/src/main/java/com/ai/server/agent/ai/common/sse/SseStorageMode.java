@@ -0,0 +1,17 @@
+package com.ai.server.agent.ai.common.sse;
+
+/**
+ * SSE流式消息存储模式
+ */
+public enum SseStorageMode {
+
+    /**
+     * 按片段存储：相邻片段在同一批次内合并，每次刷新写出一行
+     */
+    CHUNK,
+
+    /**
+     * 按回答聚合：一次回答的全部片段在内存中累积，回答结束时写出一条完整消息，期间定时写检查点
+     */
+    AGGREGATE
+}
@@ -41,7 +41,7 @@ public class SseMessage {
     private String agentId;
     
     /**
-     * 消息类型：message(普通消息)、log(日志消息)、error(错误消息)、table(表格消息)
+     * 消息类型：message(普通消息)、log(日志消息)、error(错误消息)、table(表格消息)、user(用户消息)、intent(意图识别结果)
      */
     private String messageType;
 
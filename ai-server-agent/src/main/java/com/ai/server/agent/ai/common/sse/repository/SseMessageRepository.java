@@ -15,6 +15,13 @@ public interface SseMessageRepository {
      * @return 保存后的SSE消息实体
      */
     SseMessage save(SseMessage sseMessage);
+
+    /**
+     * 批量保存SSE消息，使用单条多行INSERT，主键冲突时更新消息内容（重试幂等）
+     * @param sseMessages SSE消息实体列表
+     * @return 影响行数，失败返回-1
+     */
+    int saveAll(List<SseMessage> sseMessages);
     
     /**
      * 根据用户ID和会话ID查询SSE消息
@@ -44,6 +51,14 @@ public interface SseMessageRepository {
      * @return SSE消息列表
      */
     List<SseMessage> findByAgentId(String agentId);
+
+    /**
+     * 按消息类型查询最近的SSE消息，按发送时间倒序
+     * @param messageType 消息类型
+     * @param limit 最大条数
+     * @return SSE消息列表
+     */
+    List<SseMessage> findRecentByMessageType(String messageType, int limit);
     
     /**
      * 根据会话ID逻辑删除SSE消息
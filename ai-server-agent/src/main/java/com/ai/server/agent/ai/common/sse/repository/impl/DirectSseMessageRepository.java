@@ -52,6 +52,52 @@ public class DirectSseMessageRepository implements SseMessageRepository {
         }
     }
     
+    @Override
+    public int saveAll(List<SseMessage> sseMessages) {
+        if (sseMessages == null || sseMessages.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<Object> params = new ArrayList<>(sseMessages.size() * 9);
+            String sql = buildBatchInsertSql(sseMessages, params);
+            return jdbcTemplate.update(sql, params.toArray());
+        } catch (Exception e) {
+            log.error("批量保存SSE消息到数据库失败，消息数: {}, 错误: {}", sseMessages.size(), e.getMessage(), e);
+            return -1;
+        }
+    }
+
+    /**
+     * 构建多行INSERT语句并填充参数
+     * @param sseMessages SSE消息实体列表
+     * @param params 参数列表
+     * @return SQL语句
+     */
+    private String buildBatchInsertSql(List<SseMessage> sseMessages, List<Object> params) {
+        StringBuilder sql = new StringBuilder("INSERT INTO sse_message (id, user_id, session_id, connect_id, agent_id, message_type, message_content, send_time, is_deleted) VALUES ");
+        for (int i = 0; i < sseMessages.size(); i++) {
+            SseMessage sseMessage = sseMessages.get(i);
+            if (sseMessage.getId() == null || sseMessage.getId().isEmpty()) {
+                sseMessage.setId(java.util.UUID.randomUUID().toString());
+            }
+            if (sseMessage.getSendTime() == null) {
+                sseMessage.setSendTime(LocalDateTime.now());
+            }
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            params.add(sseMessage.getId());
+            params.add(sseMessage.getUserId());
+            params.add(sseMessage.getSessionId());
+            params.add(sseMessage.getConnectId());
+            params.add(sseMessage.getAgentId());
+            params.add(sseMessage.getMessageType());
+            params.add(sseMessage.getMessageContent());
+            params.add(sseMessage.getSendTime());
+            params.add(sseMessage.isDeleted());
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE message_content = VALUES(message_content)");
+        return sql.toString();
+    }
+    
     @Override
     public List<SseMessage> findByUserIdAndSessionId(String userId, String sessionId) {
         try {
@@ -96,6 +142,17 @@ public class DirectSseMessageRepository implements SseMessageRepository {
         }
     }
 
+    @Override
+    public List<SseMessage> findRecentByMessageType(String messageType, int limit) {
+        try {
+            String sql = "SELECT * FROM sse_message WHERE message_type = ? AND is_deleted = 0 ORDER BY send_time DESC LIMIT ?";
+            return jdbcTemplate.query(sql, (rs, rowNum) -> mapToSseMessage(rs), messageType, limit);
+        } catch (Exception e) {
+            log.error("按类型查询最近消息失败: {}", messageType, e);
+            return new ArrayList<>();
+        }
+    }
+
     @Override
     public int deleteBySessionId(String sessionId) {
         try {
@@ -83,6 +83,61 @@ public class FeignSseMessageRepository implements SseMessageRepository {
         }
     }
     
+    @Override
+    public int saveAll(List<SseMessage> sseMessages) {
+        if (sseMessages == null || sseMessages.isEmpty()) {
+            return 0;
+        }
+        try {
+            // 构建多行插入SQL，一次远程调用写入整批消息
+            StringBuilder sql = new StringBuilder("INSERT INTO sse_message (id, user_id, session_id, connect_id, agent_id, message_type, message_content, send_time, is_deleted) VALUES ");
+            List<Object> params = new ArrayList<>(sseMessages.size() * 9);
+            for (int i = 0; i < sseMessages.size(); i++) {
+                SseMessage sseMessage = sseMessages.get(i);
+                if (sseMessage.getId() == null || sseMessage.getId().isEmpty()) {
+                    sseMessage.setId(UUID.randomUUID().toString());
+                }
+                if (sseMessage.getSendTime() == null) {
+                    sseMessage.setSendTime(LocalDateTime.now());
+                }
+                sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                params.add(sseMessage.getId());
+                params.add(sseMessage.getUserId());
+                params.add(sseMessage.getSessionId());
+                params.add(sseMessage.getConnectId());
+                params.add(sseMessage.getAgentId());
+                params.add(sseMessage.getMessageType());
+                params.add(sseMessage.getMessageContent());
+                params.add(sseMessage.getSendTime());
+                params.add(sseMessage.isDeleted());
+            }
+            // 主键冲突时更新内容，保证重试幂等
+            sql.append(" ON DUPLICATE KEY UPDATE message_content = VALUES(message_content)");
+            
+            // 构建RemoteSqlDTO
+            RemoteSqlDTO remoteSqlDTO = RemoteSqlDTO.builder()
+                    .appId(appId)
+                    .sql(sql.toString())
+                    .params(params)
+                    .dataSource(dataSource)
+                    .build();
+            
+            // 执行插入操作
+            R<Integer> result = dataAccessMysqlClient.update(remoteSqlDTO);
+            
+            if (result != null && result.getData() != null) {
+                log.debug("SSE消息批量保存成功，消息数: {}", sseMessages.size());
+                return result.getData();
+            } else {
+                log.error("SSE消息批量保存失败，返回结果: {}", result);
+                return -1;
+            }
+        } catch (Exception e) {
+            log.error("SSE消息批量保存异常，消息数: {}", sseMessages.size(), e);
+            return -1;
+        }
+    }
+    
     @Override
     public List<SseMessage> findByUserIdAndSessionId(String userId, String sessionId) {
         try {
@@ -176,6 +231,38 @@ public class FeignSseMessageRepository implements SseMessageRepository {
             return new ArrayList<>();
         }
     }
+
+    @Override
+    public List<SseMessage> findRecentByMessageType(String messageType, int limit) {
+        try {
+            // 构建查询SQL
+            String sql = "SELECT id, user_id, session_id, connect_id, agent_id, message_type, message_content, send_time, is_deleted " +
+                        "FROM sse_message " +
+                        "WHERE message_type = ? AND is_deleted = 0 " +
+                        "ORDER BY send_time DESC LIMIT ?";
+            
+            // 构建参数列表
+            List<Object> params = new ArrayList<>();
+            params.add(messageType);
+            params.add(limit);
+            
+            // 构建RemoteSqlDTO
+            RemoteSqlDTO remoteSqlDTO = RemoteSqlDTO.builder()
+                    .appId(appId)
+                    .sql(sql)
+                    .params(params)
+                    .dataSource(dataSource)
+                    .build();
+            
+            // 执行查询操作
+            R<List<Map<String, Object>>> result = dataAccessMysqlClient.queryForList(remoteSqlDTO);
+            
+            return mapToSseMessages(result);
+        } catch (Exception e) {
+            log.error("按类型查询最近SSE消息异常，消息类型: {}", messageType, e);
+            return new ArrayList<>();
+        }
+    }
     
     @Override
     public List<SseMessage> findByUserId(String userId) {
@@ -0,0 +1,22 @@
+package com.ai.server.agent.ai.common.vector;
+
+/**
+ * 文本向量化接口
+ * 返回的向量必须经过L2归一化，索引直接以内积作为余弦相似度
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * 实现名称，通过chat.vector-index.embedding-provider选择，同时写入索引文件头，更换实现后旧索引自动失效
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 向量化文本
+     * @param text 文本
+     * @param dimension 向量维度
+     * @return 归一化后的向量，文本无有效内容时返回null
+     */
+    float[] embed(String text, int dimension);
+}
@@ -0,0 +1,88 @@
+package com.ai.server.agent.ai.common.vector;
+
+import cn.hutool.core.convert.Convert;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * 基于字符n-gram特征哈希的本地向量化实现
+ * 结果只取决于输入文本，不依赖模型服务，可离线使用和复现
+ */
+@Component
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String NAME = "hashing";
+
+    // 标点、符号和空白
+    private static final Pattern PUNCTUATION_AND_SPACE = Pattern.compile("[\\p{P}\\p{S}\\s]+");
+
+    // 单字权重低于二元和三元组合，避免只是用字相同的问题过于相似
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+    private static final float BIGRAM_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 1.0f;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public float[] embed(String text, int dimension) {
+        if (text == null) {
+            return null;
+        }
+        String normalized = PUNCTUATION_AND_SPACE.matcher(Convert.toDBC(text).toLowerCase()).replaceAll("");
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        float[] vector = new float[dimension];
+        int length = normalized.length();
+        for (int i = 0; i < length; i++) {
+            addFeature(vector, normalized, i, 1, UNIGRAM_WEIGHT);
+            if (i + 2 <= length) {
+                addFeature(vector, normalized, i, 2, BIGRAM_WEIGHT);
+            }
+            if (i + 3 <= length) {
+                addFeature(vector, normalized, i, 3, TRIGRAM_WEIGHT);
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    /**
+     * 将一个n-gram哈希到向量的某一维，用哈希的另一位决定符号以抵消冲突
+     */
+    private static void addFeature(float[] vector, String text, int start, int size, float weight) {
+        int hash = size;
+        for (int i = start; i < start + size; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        hash = mix(hash);
+        int index = Math.floorMod(hash, vector.length);
+        vector[index] += (hash & 0x40000000) == 0 ? weight : -weight;
+    }
+
+    /**
+     * murmur3的最终混合步骤，使相近的字符串哈希值均匀分布
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,458 @@
+package com.ai.server.agent.ai.common.vector;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内HNSW近似最近邻索引
+ * 向量和附带数据存放在堆外内存中，持久化时使用内存映射文件，图结构在堆内维护，加载时按原顺序重建
+ * 向量需经过L2归一化，距离为1减内积；写入互斥，查询并发
+ */
+@Slf4j
+public class HnswIndex implements Closeable {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int FORMAT_VERSION = 1;
+
+    // 文件头：magic, version, dimension, capacity, payloadBytes, embedderId, count
+    private static final int HEADER_BYTES = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_DIMENSION = 8;
+    private static final int OFFSET_CAPACITY = 12;
+    private static final int OFFSET_PAYLOAD_BYTES = 16;
+    private static final int OFFSET_EMBEDDER_ID = 20;
+    private static final int OFFSET_COUNT = 24;
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int dimension;
+    @Getter
+    private final int capacity;
+    private final int payloadBytes;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long vectorOffset;
+    private final long payloadOffset;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // links[node][level]：第0位为邻居数，之后为邻居ID
+    private int[][][] links;
+    private int count;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private HnswIndex(String name, int dimension, int capacity, int payloadBytes, int m, int efConstruction,
+                      FileChannel channel, ByteBuffer buffer) {
+        this.name = name;
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.payloadBytes = payloadBytes;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.channel = channel;
+        this.buffer = buffer;
+        this.vectorOffset = HEADER_BYTES;
+        this.payloadOffset = vectorOffset + (long) capacity * dimension * Float.BYTES;
+        this.links = new int[capacity][][];
+    }
+
+    /**
+     * 创建仅存放在堆外内存中的索引
+     */
+    public static HnswIndex inMemory(String name, int dimension, int capacity, int payloadBytes,
+                                     int m, int efConstruction) {
+        long size = sizeOf(dimension, capacity, payloadBytes);
+        HnswIndex index = new HnswIndex(name, dimension, capacity, payloadBytes, m, efConstruction,
+                null, ByteBuffer.allocateDirect((int) size));
+        index.writeHeader(0);
+        return index;
+    }
+
+    /**
+     * 打开或创建内存映射文件索引
+     * 文件头中的维度、容量、附带数据长度或向量化实现与当前配置不一致时丢弃旧数据
+     */
+    public static HnswIndex open(String name, Path file, int dimension, int capacity, int payloadBytes,
+                                 int m, int efConstruction, int embedderId) throws IOException {
+        long size = sizeOf(dimension, capacity, payloadBytes);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean compatible = false;
+        if (channel.size() == size) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            compatible = header.getInt(OFFSET_MAGIC) == MAGIC
+                    && header.getInt(OFFSET_VERSION) == FORMAT_VERSION
+                    && header.getInt(OFFSET_DIMENSION) == dimension
+                    && header.getInt(OFFSET_CAPACITY) == capacity
+                    && header.getInt(OFFSET_PAYLOAD_BYTES) == payloadBytes
+                    && header.getInt(OFFSET_EMBEDDER_ID) == embedderId;
+        }
+        if (!compatible && channel.size() > 0) {
+            log.warn("索引文件与当前配置不一致，重新创建: {}", file);
+        }
+        if (!compatible) {
+            channel.truncate(0);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        HnswIndex index = new HnswIndex(name, dimension, capacity, payloadBytes, m, efConstruction, channel, buffer);
+        if (compatible) {
+            int stored = Math.min(buffer.getInt(OFFSET_COUNT), capacity);
+            index.rebuild(stored);
+            log.info("已加载索引: {}, 记录数: {}", name, stored);
+        } else {
+            buffer.putInt(OFFSET_EMBEDDER_ID, embedderId);
+            index.writeHeader(0);
+        }
+        return index;
+    }
+
+    private static long sizeOf(int dimension, int capacity, int payloadBytes) {
+        long size = HEADER_BYTES + (long) capacity * dimension * Float.BYTES + (long) capacity * payloadBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("索引大小超过2GB，请减小容量或维度");
+        }
+        return size;
+    }
+
+    /**
+     * 写入一条记录
+     * @param vector 归一化后的向量
+     * @param payload 附带数据
+     * @return 是否写入，容量已满或附带数据过长时返回false
+     */
+    public boolean add(float[] vector, String payload) {
+        if (vector == null || vector.length != dimension) {
+            return false;
+        }
+        byte[] payloadData = payload.getBytes(StandardCharsets.UTF_8);
+        if (payloadData.length > payloadBytes - Short.BYTES) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (count >= capacity) {
+                return false;
+            }
+            int id = count;
+            long base = vectorOffset + (long) id * dimension * Float.BYTES;
+            for (int i = 0; i < dimension; i++) {
+                buffer.putFloat((int) (base + (long) i * Float.BYTES), vector[i]);
+            }
+            int payloadBase = (int) (payloadOffset + (long) id * payloadBytes);
+            buffer.putShort(payloadBase, (short) payloadData.length);
+            buffer.put(payloadBase + Short.BYTES, payloadData);
+            link(id);
+            count++;
+            buffer.putInt(OFFSET_COUNT, count);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询近邻
+     * @param vector 归一化后的查询向量
+     * @param topK 返回的最大近邻数
+     * @param efSearch 候选集大小
+     * @return 按相似度从高到低排列的近邻
+     */
+    public List<Neighbor> search(float[] vector, int topK, int efSearch) {
+        List<Neighbor> result = new ArrayList<>();
+        if (vector == null || vector.length != dimension) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return result;
+            }
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedySearch(vector, current, level);
+            }
+            PriorityQueue<Candidate> found = searchLayer(vector, current, Math.max(efSearch, topK), 0);
+            List<Candidate> ordered = new ArrayList<>(found);
+            ordered.sort(Comparator.comparingDouble(c -> c.distance));
+            for (int i = 0; i < ordered.size() && i < topK; i++) {
+                Candidate candidate = ordered.get(i);
+                result.add(new Neighbor(readPayload(candidate.id), 1 - candidate.distance));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            links = new int[capacity][][];
+            entryPoint = -1;
+            maxLevel = -1;
+            writeHeader(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (buffer instanceof MappedByteBuffer mapped) {
+                mapped.force();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按写入顺序重建图结构，层数由记录ID决定，重建结果与写入时一致
+     */
+    private void rebuild(int stored) {
+        for (int id = 0; id < stored; id++) {
+            link(id);
+            count = id + 1;
+        }
+    }
+
+    private void writeHeader(int newCount) {
+        count = newCount;
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        buffer.putInt(OFFSET_VERSION, FORMAT_VERSION);
+        buffer.putInt(OFFSET_DIMENSION, dimension);
+        buffer.putInt(OFFSET_CAPACITY, capacity);
+        buffer.putInt(OFFSET_PAYLOAD_BYTES, payloadBytes);
+        buffer.putInt(OFFSET_COUNT, newCount);
+    }
+
+    /**
+     * 将已写入向量的记录接入图中
+     */
+    private void link(int id) {
+        int level = randomLevel(id);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        links[id] = nodeLinks;
+        if (entryPoint < 0) {
+            entryPoint = id;
+            maxLevel = level;
+            return;
+        }
+        float[] vector = readVector(id);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedySearch(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+            List<Candidate> ordered = new ArrayList<>(candidates);
+            ordered.sort(Comparator.comparingDouble(c -> c.distance));
+            int maxNeighbors = l == 0 ? maxM0 : m;
+            int[] own = nodeLinks[l];
+            for (int i = 0; i < ordered.size() && own[0] < maxNeighbors; i++) {
+                int neighbor = ordered.get(i).id;
+                own[++own[0]] = neighbor;
+                connect(neighbor, id, l, maxNeighbors);
+            }
+            current = ordered.get(0).id;
+        }
+        if (level > maxLevel) {
+            entryPoint = id;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * 为已有节点添加反向连接，邻居已满时保留距离最近的邻居
+     */
+    private void connect(int node, int neighbor, int level, int maxNeighbors) {
+        int[] nodeLinks = links[node][level];
+        if (nodeLinks[0] < maxNeighbors) {
+            nodeLinks[++nodeLinks[0]] = neighbor;
+            return;
+        }
+        int farthest = -1;
+        double farthestDistance = distance(node, neighbor);
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            double d = distance(node, nodeLinks[i]);
+            if (d > farthestDistance) {
+                farthestDistance = d;
+                farthest = i;
+            }
+        }
+        if (farthest > 0) {
+            nodeLinks[farthest] = neighbor;
+        }
+    }
+
+    private int greedySearch(float[] vector, int start, int level) {
+        int current = start;
+        double currentDistance = distance(vector, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nodeLinks = links[current][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                double d = distance(vector, nodeLinks[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = nodeLinks[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层上搜索，返回最多ef个最近的候选（大顶堆）
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] vector, int start, int ef, int level) {
+        BitSet visited = new BitSet(count + 1);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(c -> c.distance));
+        PriorityQueue<Candidate> found = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+        Candidate first = new Candidate(start, distance(vector, start));
+        visited.set(start);
+        candidates.add(first);
+        found.add(first);
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (closest.distance > found.peek().distance) {
+                break;
+            }
+            int[][] nodeLinks = links[closest.id];
+            if (nodeLinks.length <= level) {
+                continue;
+            }
+            int[] levelLinks = nodeLinks[level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int neighbor = levelLinks[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                double d = distance(vector, neighbor);
+                if (found.size() < ef || d < found.peek().distance) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 层数按几何分布随机生成，以记录ID为种子保证重建结果一致
+     */
+    private int randomLevel(int id) {
+        double random = new SplittableRandom(id * 0x9E3779B97F4A7C15L).nextDouble();
+        return (int) (-Math.log(1 - random) * levelMultiplier);
+    }
+
+    private double distance(float[] vector, int id) {
+        int base = (int) (vectorOffset + (long) id * dimension * Float.BYTES);
+        double dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += vector[i] * buffer.getFloat(base + i * Float.BYTES);
+        }
+        return 1 - dot;
+    }
+
+    private double distance(int a, int b) {
+        return distance(readVector(a), b);
+    }
+
+    private float[] readVector(int id) {
+        int base = (int) (vectorOffset + (long) id * dimension * Float.BYTES);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = buffer.getFloat(base + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    private String readPayload(int id) {
+        int base = (int) (payloadOffset + (long) id * payloadBytes);
+        int length = buffer.getShort(base);
+        byte[] data = new byte[length];
+        buffer.get(base + Short.BYTES, data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 查询结果
+     */
+    @Getter
+    public static class Neighbor {
+        private final String payload;
+        private final double similarity;
+
+        Neighbor(String payload, double similarity) {
+            this.payload = payload;
+            this.similarity = similarity;
+        }
+    }
+
+    private static class Candidate {
+        private final int id;
+        private final double distance;
+
+        Candidate(int id, double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ai.server.agent.ai.common.vector;
+
+import com.ai.server.agent.ai.config.VectorIndexProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 相似问题索引
+ * 将问题向量化后写入按用途划分的HNSW索引，精确缓存未命中时按相似度阈值查找相似的历史问题
+ */
+@Slf4j
+@Component
+public class SimilarQuestionIndex {
+
+    /**
+     * 意图缓存使用的索引名称
+     */
+    public static final String INTENT = "intent";
+
+    /**
+     * 回答缓存使用的索引名称
+     */
+    public static final String RESPONSE = "response";
+
+    @Autowired
+    private VectorIndexProperties vectorIndexProperties;
+
+    @Autowired
+    private List<EmbeddingProvider> embeddingProviders;
+
+    private final Map<String, HnswIndex> indexes = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 是否启用相似问题查找
+     */
+    public boolean isEnabled() {
+        return vectorIndexProperties.isEnabled();
+    }
+
+    /**
+     * 查找最相似的历史问题
+     * @param indexName 索引名称
+     * @param question 问题
+     * @param accept 附带数据的过滤条件，如只接受当前配置版本写入的记录
+     * @return 相似度不低于阈值且满足过滤条件的最相似记录的附带数据，没有时返回null
+     */
+    public String findSimilar(String indexName, String question, Predicate<String> accept) {
+        if (!isEnabled() || question == null) {
+            return null;
+        }
+        try {
+            HnswIndex index = index(indexName);
+            if (index == null || index.size() == 0) {
+                return null;
+            }
+            float[] vector = embed(question);
+            double threshold = config(indexName).getThreshold();
+            for (HnswIndex.Neighbor neighbor : index.search(vector, vectorIndexProperties.getTopK(),
+                    vectorIndexProperties.getEfSearch())) {
+                if (neighbor.getSimilarity() < threshold) {
+                    break;
+                }
+                if (accept.test(neighbor.getPayload())) {
+                    hits.increment();
+                    log.debug("相似问题命中，索引: {}, 相似度: {}", indexName, neighbor.getSimilarity());
+                    return neighbor.getPayload();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("相似问题查找失败，索引: {}, 错误: {}", indexName, e.getMessage());
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 记录问题
+     * @param indexName 索引名称
+     * @param question 问题
+     * @param payload 附带数据
+     */
+    public void add(String indexName, String question, String payload) {
+        if (!isEnabled() || question == null || payload == null) {
+            return;
+        }
+        try {
+            HnswIndex index = index(indexName);
+            if (index == null) {
+                return;
+            }
+            float[] vector = embed(question);
+            if (vector == null) {
+                return;
+            }
+            if (!index.add(vector, payload) && index.size() >= index.getCapacity()) {
+                log.info("索引已达到容量上限，清空重建: {}", indexName);
+                index.clear();
+                index.add(vector, payload);
+            }
+        } catch (Exception e) {
+            log.warn("写入相似问题索引失败，索引: {}, 错误: {}", indexName, e.getMessage());
+        }
+    }
+
+    /**
+     * 清空索引，用于配置变更后旧记录整体失效
+     * @param indexName 索引名称
+     */
+    public void clear(String indexName) {
+        HnswIndex index = indexes.get(indexName);
+        if (index != null) {
+            index.clear();
+        }
+    }
+
+    /**
+     * 统计快照
+     * @return 统计项
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        stats.put("enabled", isEnabled());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0 : (double) hitCount / total);
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        indexes.forEach((name, index) -> sizes.put(name, index.size()));
+        stats.put("sizes", sizes);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexes.forEach((name, index) -> {
+            try {
+                index.close();
+            } catch (Exception e) {
+                log.warn("关闭索引失败: {}, 错误: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    private float[] embed(String question) {
+        return embeddingProvider().embed(question, vectorIndexProperties.getDimension());
+    }
+
+    private EmbeddingProvider embeddingProvider() {
+        String name = vectorIndexProperties.getEmbeddingProvider();
+        for (EmbeddingProvider provider : embeddingProviders) {
+            if (provider.name().equals(name)) {
+                return provider;
+            }
+        }
+        throw new IllegalStateException("未找到向量化实现: " + name);
+    }
+
+    private VectorIndexProperties.Index config(String indexName) {
+        return RESPONSE.equals(indexName) ? vectorIndexProperties.getResponse() : vectorIndexProperties.getIntent();
+    }
+
+    /**
+     * 获取索引，首次使用时创建或从文件加载
+     */
+    private HnswIndex index(String indexName) {
+        return indexes.computeIfAbsent(indexName, name -> {
+            VectorIndexProperties.Index config = config(name);
+            VectorIndexProperties p = vectorIndexProperties;
+            try {
+                if (config.isPersistent()) {
+                    Path file = Paths.get(p.getDirectory(), name + ".hnsw");
+                    return HnswIndex.open(name, file, p.getDimension(), config.getCapacity(), p.getPayloadBytes(),
+                            p.getM(), p.getEfConstruction(), embeddingProvider().name().hashCode());
+                }
+                return HnswIndex.inMemory(name, p.getDimension(), config.getCapacity(), p.getPayloadBytes(),
+                        p.getM(), p.getEfConstruction());
+            } catch (Exception e) {
+                log.error("创建相似问题索引失败: {}", name, e);
+                return null;
+            }
+        });
+    }
+}
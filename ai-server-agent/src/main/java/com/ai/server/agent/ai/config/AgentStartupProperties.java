@@ -0,0 +1,26 @@
+package com.ai.server.agent.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时创建Agent的配置，在yml中配置agent.startup，启动时生效
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.startup")
+@RefreshScope
+public class AgentStartupProperties {
+
+    /**
+     * 并行创建Agent的线程数，小于等于0时取CPU核数
+     */
+    private int parallelism = 0;
+
+    /**
+     * 是否延迟创建，开启后启动时只注册提示词模板，Agent在首次使用时创建
+     */
+    private boolean lazy = false;
+}
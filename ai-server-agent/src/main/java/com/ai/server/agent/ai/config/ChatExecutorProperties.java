@@ -0,0 +1,43 @@
+package com.ai.server.agent.ai.config;
+
+import com.ai.server.agent.ai.common.executor.ChatExecutorMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天任务执行器配置，在yml中配置chat.executor
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.executor")
+@RefreshScope
+public class ChatExecutorProperties {
+
+    /**
+     * 执行器模式，启动时生效
+     */
+    private ChatExecutorMode mode = ChatExecutorMode.PLATFORM;
+
+    /**
+     * 平台线程池核心线程数
+     */
+    private int corePoolSize = 10;
+
+    /**
+     * 平台线程池最大线程数
+     */
+    private int maxPoolSize = 20;
+
+    /**
+     * 平台线程池队列容量
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * 单个租户（机构，无机构时按用户）同时处理的最大对话数，小于等于0表示不限制
+     * 许可数在租户首次请求时确定，许可用完时新请求立即返回错误，不排队等待
+     */
+    private int tenantMaxConcurrency = 20;
+}
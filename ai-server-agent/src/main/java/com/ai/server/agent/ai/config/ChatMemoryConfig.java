@@ -1,11 +1,16 @@
 package com.ai.server.agent.ai.config;
 
+import com.ai.server.agent.ai.common.memory.CachingChatMemoryRepository;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepositoryDialect;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import javax.sql.DataSource;
 
 /**
@@ -13,10 +18,13 @@ import javax.sql.DataSource;
  */
 @Configuration
 public class ChatMemoryConfig {
-    
+
     @Autowired
     private DataSource dataSource;
-    
+
+    @Autowired
+    private ChatMemoryProperties chatMemoryProperties;
+
     /**
      * 创建JdbcChatMemoryRepository实例，用于将聊天记忆存储到MySQL数据库
      * @return JdbcChatMemoryRepository实例
@@ -29,4 +37,18 @@ public class ChatMemoryConfig {
                 .dialect(JdbcChatMemoryRepositoryDialect.from(dataSource))
                 .build();
     }
+
+    /**
+     * 创建带内存缓存的聊天记忆仓库，作为默认的ChatMemoryRepository
+     * 未启用缓存时缓存容量为0，读取直接访问数据库，保存时同步写入增量并填充字段
+     * @return ChatMemoryRepository实例
+     */
+    @Bean
+    @Primary
+    public ChatMemoryRepository cachingChatMemoryRepository(JdbcChatMemoryRepository chatMemoryRepository,
+                                                            @Qualifier("chatMemoryWriteExecutor") ThreadPoolTaskExecutor chatMemoryWriteExecutor) {
+        long maxBytes = chatMemoryProperties.isCacheEnabled() ? chatMemoryProperties.getCacheMaxBytes() : 0;
+        return new CachingChatMemoryRepository(chatMemoryRepository, new JdbcTemplate(dataSource),
+                chatMemoryWriteExecutor, maxBytes);
+    }
 }
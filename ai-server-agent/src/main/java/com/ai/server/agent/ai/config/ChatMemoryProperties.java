@@ -0,0 +1,38 @@
+package com.ai.server.agent.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天记忆配置，在yml中配置chat.memory
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.memory")
+@RefreshScope
+public class ChatMemoryProperties {
+
+    /**
+     * 是否启用聊天记忆内存缓存
+     * 缓存按实例维护，多实例部署时同一会话需路由到同一实例，因此默认关闭，确认会话固定路由后再开启
+     * 关闭后读取直接访问数据库，保存时与数据库中的窗口比较并同步写入增量，填充智能体和会话字段
+     */
+    private boolean cacheEnabled = false;
+
+    /**
+     * 缓存的最大消息字节数，按消息文本估算
+     */
+    private long cacheMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 增量写入队列容量，队列满时丢弃增量并使对应会话缓存失效
+     */
+    private int writeQueueCapacity = 10000;
+
+    /**
+     * 调试用：对话前查询并打印会话记忆记录的采样比例，取值0~1，0表示关闭
+     */
+    private double debugSampleRate = 0;
+}
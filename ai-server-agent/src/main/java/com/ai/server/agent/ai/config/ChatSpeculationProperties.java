@@ -0,0 +1,28 @@
+package com.ai.server.agent.ai.config;
+
+import com.ai.server.agent.ai.constant.IntentConstant;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 意图推测执行配置，在yml中配置chat.speculation
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.speculation")
+@RefreshScope
+public class ChatSpeculationProperties {
+
+    /**
+     * 是否在意图识别的同时推测执行最可能的策略
+     * 推测未命中时已发出的模型调用会被取消，但仍会消耗部分调用量
+     */
+    private boolean enabled = false;
+
+    /**
+     * 推测的意图，按该意图选择推测执行的策略
+     */
+    private String intent = IntentConstant.OTHER;
+}
@@ -0,0 +1,108 @@
+package com.ai.server.agent.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地意图预分类配置，在yml中配置chat.intent-classifier
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.intent-classifier")
+@RefreshScope
+public class IntentClassifierProperties {
+
+    /**
+     * 是否在调用大模型识别意图前先进行本地预分类
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地分类结果的最低置信度，低于该值时交由大模型识别
+     */
+    private double minConfidence = 0.9;
+
+    /**
+     * 关键词/正则规则，按顺序匹配，命中即返回对应意图
+     */
+    private List<Rule> rules = new ArrayList<>();
+
+    /**
+     * n-gram模型配置
+     */
+    private Ngram ngram = new Ngram();
+
+    /**
+     * 意图识别结果缓存配置
+     */
+    private Cache cache = new Cache();
+
+    @Data
+    public static class Rule {
+        /**
+         * 命中后返回的意图
+         */
+        private String intent;
+
+        /**
+         * 正则表达式，在用户消息中查找匹配
+         */
+        private String pattern;
+    }
+
+    @Data
+    public static class Ngram {
+        /**
+         * 是否启用n-gram模型，置信度阈值需按实际样本验证后再开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 消息中在训练样本里出现过的特征的最低占比，低于该值时交由大模型识别
+         */
+        private double minCoverage = 0.8;
+
+        /**
+         * 字符n-gram的最大长度
+         */
+        private int size = 2;
+
+        /**
+         * 训练样本数少于该值时不使用模型
+         */
+        private int minSamples = 200;
+
+        /**
+         * 每次训练读取的最大样本数，取最近的记录
+         */
+        private int maxSamples = 5000;
+
+        /**
+         * 模型重新训练的间隔（毫秒）
+         */
+        private long retrainIntervalMs = 60 * 60 * 1000;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否缓存大模型的意图识别结果
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大缓存条数，超出后按最近最少使用淘汰
+         */
+        private int capacity = 10000;
+
+        /**
+         * 缓存有效期（毫秒）
+         */
+        private long ttlMs = 10 * 60 * 1000;
+    }
+}
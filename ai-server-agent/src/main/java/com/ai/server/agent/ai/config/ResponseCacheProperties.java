@@ -0,0 +1,32 @@
+package com.ai.server.agent.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 智能体回答缓存配置，在yml中配置chat.response-cache
+ * 是否缓存由agent_config.response_cache_enabled按智能体开启
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.response-cache")
+@RefreshScope
+public class ResponseCacheProperties {
+
+    /**
+     * 最大缓存条数，超出后按最近最少使用淘汰
+     */
+    private int capacity = 2000;
+
+    /**
+     * 默认有效期（秒），可在agent_config中按智能体覆盖
+     */
+    private long defaultTtlSeconds = 3600;
+
+    /**
+     * 可缓存回答的最大字符数，超出的回答不缓存
+     */
+    private int maxAnswerChars = 20000;
+}
@@ -0,0 +1,140 @@
+package com.ai.server.agent.ai.config;
+
+import com.ai.server.agent.ai.common.sse.SseBatchingPolicy;
+import com.ai.server.agent.ai.common.sse.SseOverflowPolicy;
+import com.ai.server.agent.ai.common.sse.SseStorageMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * SSE推送配置，在yml中配置sse
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sse")
+@RefreshScope
+public class SseProperties {
+
+    /**
+     * 单个连接出站队列容量（事件数）
+     */
+    private int queueCapacity = 2048;
+
+    /**
+     * 出站队列满时的处理策略，回答片段在任何策略下都不会被丢弃
+     */
+    private SseOverflowPolicy overflowPolicy = SseOverflowPolicy.CLOSE;
+
+    /**
+     * 写线程数，所有连接共享
+     */
+    private int writerThreads = 4;
+
+    /**
+     * 单次排空最多写出的事件数，超过后让出写线程，避免单个连接长期占用
+     */
+    private int maxDrainBatch = 64;
+
+    /**
+     * 响应式接口微批的最大事件数
+     */
+    private int fluxBatchSize = 32;
+
+    /**
+     * 响应式接口微批的最长等待时间（毫秒），到时未凑满也立即推送
+     */
+    private long fluxBatchDelayMs = 50;
+
+    /**
+     * SSE消息持久化配置
+     */
+    private Persist persist = new Persist();
+
+    /**
+     * 回答片段合并推送配置
+     */
+    private Batch batch = new Batch();
+
+    @Data
+    public static class Batch {
+        /**
+         * 是否合并相邻的回答片段
+         */
+        private boolean enabled = true;
+
+        /**
+         * 合并后单帧回答的字节上限，可在agent_config中按智能体覆盖
+         */
+        private int maxBytes = 2048;
+
+        /**
+         * 第一个片段入队后的最长等待时间（毫秒），可在agent_config中按智能体覆盖
+         */
+        private long maxLatencyMs = 30;
+
+        /**
+         * 是否根据客户端消费速度自适应放大阈值
+         */
+        private boolean adaptive = true;
+
+        /**
+         * 自适应时阈值的最大放大倍数
+         */
+        private int adaptiveMaxFactor = 4;
+
+        /**
+         * 单帧写出耗时超过该值（毫秒）视为客户端消费变慢
+         */
+        private long slowSendMs = 2;
+
+        /**
+         * 转换为合并策略
+         */
+        public SseBatchingPolicy toPolicy() {
+            if (!enabled) {
+                return SseBatchingPolicy.DISABLED;
+            }
+            return new SseBatchingPolicy(maxBytes, maxLatencyMs, adaptive, adaptiveMaxFactor, slowSendMs);
+        }
+    }
+
+    @Data
+    public static class Persist {
+        /**
+         * 流式消息存储模式
+         */
+        private SseStorageMode storageMode = SseStorageMode.CHUNK;
+
+        /**
+         * 聚合模式下未结束回答的检查点间隔（毫秒），限制进程崩溃时的数据丢失
+         */
+        private long checkpointIntervalMs = 5000;
+
+        /**
+         * 聚合模式下单行回答的最大字符数，超过后续写到新行
+         */
+        private int aggregateMaxChars = 16000;
+
+        /**
+         * 缓冲消息数达到该值时立即触发批量写入，同时也是单条INSERT的最大行数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 定时刷新间隔（毫秒）
+         */
+        private long flushIntervalMs = 1000;
+
+        /**
+         * 批量写入失败时的最大重试次数
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 合并后单行消息的最大字符数，message_content为TEXT类型，utf8mb4下需控制在16K字符以内
+         */
+        private int mergeMaxChars = 8000;
+    }
+}
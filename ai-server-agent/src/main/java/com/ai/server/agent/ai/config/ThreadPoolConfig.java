@@ -1,40 +1,140 @@
 package com.ai.server.agent.ai.config;
 
+import com.ai.server.agent.ai.common.executor.ChatExecutorMode;
+import com.ai.server.agent.ai.common.executor.ContextPropagatingTaskDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 全局线程池配置类
  * 统一管理系统中的线程资源
  */
+@Slf4j
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class ThreadPoolConfig {
 
+    @Autowired
+    private SseProperties sseProperties;
+
+    @Autowired
+    private ChatMemoryProperties chatMemoryProperties;
+
+    @Autowired
+    private ChatExecutorProperties chatExecutorProperties;
+
     /**
-     * 创建用于异步任务的线程池
-     * @return 线程池执行器
+     * 创建用于聊天任务的执行器
+     * 平台线程模式下为固定线程池；虚拟线程模式下每个任务一个虚拟线程，并发度由租户限制器和大模型服务能力约束
+     * 两种模式都会把用户上下文和连接ID传递到执行线程
+     * @return 任务执行器
      */
     @Bean("chatTaskExecutor")
-    public ThreadPoolTaskExecutor taskExecutor() {
+    public AsyncTaskExecutor taskExecutor() {
+        if (chatExecutorProperties.getMode() == ChatExecutorMode.VIRTUAL) {
+            try {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("chat-vt-");
+                executor.setVirtualThreads(true);
+                executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+                log.info("聊天任务执行器使用虚拟线程模式");
+                return executor;
+            } catch (UnsupportedOperationException e) {
+                log.warn("当前JDK不支持虚拟线程，聊天任务执行器回退到平台线程池: {}", e.getMessage());
+            }
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         // 核心线程数
-        executor.setCorePoolSize(10);
+        executor.setCorePoolSize(chatExecutorProperties.getCorePoolSize());
         // 最大线程数
-        executor.setMaxPoolSize(20);
+        executor.setMaxPoolSize(Math.max(chatExecutorProperties.getCorePoolSize(), chatExecutorProperties.getMaxPoolSize()));
         // 队列容量
-        executor.setQueueCapacity(100);
+        executor.setQueueCapacity(chatExecutorProperties.getQueueCapacity());
         // 线程名称前缀
         executor.setThreadNamePrefix("async-task-");
         // 线程活跃时间（秒）
         executor.setKeepAliveSeconds(120);
         // 拒绝策略
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 传递用户上下文和连接ID
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
         // 初始化
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * SSE出站写线程池，所有连接共享，按连接串行排空出站队列
+     * 排队任务数受连接数约束（每个连接同一时刻最多一个写任务），因此不设队列上限
+     * 使用调度器以便按最大等待时间延迟写出合并中的回答片段
+     * @return 调度器
+     */
+    @Bean("sseWriterExecutor")
+    public ThreadPoolTaskScheduler sseWriterExecutor() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, sseProperties.getWriterThreads()));
+        scheduler.setThreadNamePrefix("sse-writer-");
+        // 连接关闭后取消的延迟任务直接移出队列
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * SSE消息持久化调度线程，单线程执行定时刷新和批量写入，保证写入顺序
+     * @return 调度器
+     */
+    @Bean("ssePersistScheduler")
+    public ThreadPoolTaskScheduler ssePersistScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("sse-persist-");
+        // 停机时等待已提交的写入任务完成
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * 意图预分类模型训练线程，单线程执行，训练查询sse_message不占用聊天任务线程
+     * @return 调度器
+     */
+    @Bean("intentTrainingScheduler")
+    public ThreadPoolTaskScheduler intentTrainingScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("intent-train-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * 聊天记忆增量写入线程，单线程保证同一会话的删除和追加按提交顺序执行
+     * @return 线程池执行器
+     */
+    @Bean("chatMemoryWriteExecutor")
+    public ThreadPoolTaskExecutor chatMemoryWriteExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(Math.max(1, chatMemoryProperties.getWriteQueueCapacity()));
+        executor.setThreadNamePrefix("chat-memory-writer-");
+        // 队列满时抛出异常，由调用方使缓存失效，避免调用线程并发写入打乱顺序
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        // 停机时等待已提交的写入完成
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -20,10 +20,28 @@ public class TranscodingConfig {
     private String parentOrg;
     private List<Transcoding> trance;
 
+    /**
+     * 转码字典内存索引配置
+     */
+    private Dict dict = new Dict();
+
     @Data
     public static class Transcoding {
         private String header;
         private String target;
     }
 
+    @Data
+    public static class Dict {
+        /**
+         * 是否将ai_transcode_dict加载到内存索引，关闭后每次查询都执行SQL
+         */
+        private boolean enabled = true;
+
+        /**
+         * 检查字典版本的间隔（毫秒），启动时生效
+         */
+        private long refreshIntervalMs = 5 * 60 * 1000;
+    }
+
 }
@@ -0,0 +1,99 @@
+package com.ai.server.agent.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 语义相似问题索引配置，在yml中配置chat.vector-index
+ * 维度、容量和图参数在索引首次创建时读取，运行期间修改需重启生效
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.vector-index")
+@RefreshScope
+public class VectorIndexProperties {
+
+    /**
+     * 是否启用相似问题查找，关闭时意图缓存和回答缓存只做精确匹配
+     */
+    private boolean enabled = false;
+
+    /**
+     * 向量化实现名称，对应EmbeddingProvider.name()
+     */
+    private String embeddingProvider = "hashing";
+
+    /**
+     * 向量维度
+     */
+    private int dimension = 256;
+
+    /**
+     * 索引文件目录
+     */
+    private String directory = "data/vector-index";
+
+    /**
+     * HNSW每层的最大邻居数，第0层为其两倍
+     */
+    private int m = 16;
+
+    /**
+     * 构建索引时的候选集大小
+     */
+    private int efConstruction = 100;
+
+    /**
+     * 查询时的候选集大小
+     */
+    private int efSearch = 64;
+
+    /**
+     * 每次查询返回的最大近邻数
+     */
+    private int topK = 5;
+
+    /**
+     * 每条记录附带数据的最大字节数
+     */
+    private int payloadBytes = 256;
+
+    /**
+     * 意图缓存使用的索引
+     */
+    private Index intent = new Index(50000, 0.92, true);
+
+    /**
+     * 回答缓存使用的索引，回答本身只在内存中缓存，索引无需持久化
+     */
+    private Index response = new Index(20000, 0.95, false);
+
+    @Data
+    public static class Index {
+        /**
+         * 最大记录数，达到上限后清空重建
+         */
+        private int capacity;
+
+        /**
+         * 余弦相似度阈值，不低于该值才视为相似问题
+         */
+        private double threshold;
+
+        /**
+         * 是否持久化到内存映射文件，重启后直接加载
+         */
+        private boolean persistent;
+
+        public Index() {
+        }
+
+        public Index(int capacity, double threshold, boolean persistent) {
+            this.capacity = capacity;
+            this.threshold = threshold;
+            this.persistent = persistent;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.ai.server.agent.ai.rest.controller;
 
+import com.ai.server.agent.ai.common.executor.TenantConcurrencyLimiter;
 import com.ai.server.agent.ai.rest.request.RequestAi;
+import com.ai.server.agent.ai.rest.response.ResponseAi;
 import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
 import com.ai.server.agent.ai.common.sse.service.SessionManagementService;
 import com.ai.server.agent.ai.strategy.context.IntentBasedRequestContext;
@@ -9,11 +11,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/c2000/ai")
@@ -25,11 +33,13 @@ public class WebAiController {
 
     @Autowired
     @Qualifier("chatTaskExecutor")
-    private ThreadPoolTaskExecutor taskExecutor;
+    private AsyncTaskExecutor taskExecutor;
     @Autowired
     private AiGlobalSseEmitterManager sseEmitterManager;
     @Autowired
     private SessionManagementService sessionManagementService;
+    @Autowired
+    private TenantConcurrencyLimiter tenantConcurrencyLimiter;
 
 
     /**
@@ -66,17 +76,74 @@ public class WebAiController {
         } catch (Exception e) {
             log.warn("刷新响应头失败: {}", e.getMessage());
         }
-        taskExecutor.execute(() -> {
-            try {
-                intentBasedRequestContext.handleRequest(requestAi);
-            } catch (Exception e) {
-
-                log.error("任务执行失败，connectionId: {}, 错误信息: {}", connId, e.getMessage());
-                log.error(e.getStackTrace().toString());
-            }
-            // 移除finally块中的completeConnection调用，让SSE连接自然结束
-            // 或者在AI模型响应完成后由SSE管理器自动处理连接关闭
-        });
+        // 在请求线程中获取租户许可，许可用完时立即返回错误，不占用聊天任务线程
+        TenantConcurrencyLimiter.Permit permit = tenantConcurrencyLimiter.tryAcquire(tenantConcurrencyLimiter.currentTenant());
+        if (permit == null) {
+            sseEmitterManager.sendErrorEvent(connId, ResponseAi.ofError("当前并发对话数过多，请稍后再试"));
+            sseEmitterManager.completeConnection(connId);
+            return emitter;
+        }
+        // 流式回答在任务返回后仍在进行，许可在回答结束时释放；回答结束前连接关闭时随连接关闭释放
+        sseEmitterManager.onMessageStreamComplete(connId, permit::release);
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    intentBasedRequestContext.handleRequest(requestAi);
+                } catch (Exception e) {
+                    permit.release();
+                    log.error("任务执行失败，connectionId: {}, 错误信息: {}", connId, e.getMessage());
+                    log.error(e.getStackTrace().toString());
+                }
+                // 移除finally块中的completeConnection调用，让SSE连接自然结束
+                // 或者在AI模型响应完成后由SSE管理器自动处理连接关闭
+            });
+        } catch (RejectedExecutionException e) {
+            permit.release();
+            log.warn("聊天任务队列已满，connectionId: {}", connId);
+            sseEmitterManager.sendErrorEvent(connId, ResponseAi.ofError("当前并发对话数过多，请稍后再试"));
+            sseEmitterManager.completeConnection(connId);
+        }
         return emitter;
     }
+
+    /**
+     * 响应式聊天接口
+     * 返回由模型输出直接组合的事件流，不创建SseEmitter，也不占用线程等待回答结束
+     * 事件格式与/chat一致，消息持久化经内存缓冲旁路写入
+     *
+     * @return 服务器推送事件流
+     */
+    @PostMapping(value = "/chat/flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ResponseAi>> chatFlux(@RequestPart RequestAi requestAi,
+                                                      HttpServletResponse response) {
+        response.setHeader("Cache-Control", "no-cache, no-store, max-age=0, must-revalidate");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        // 会话管理逻辑
+        sessionManagementService.handleSessionManagement(requestAi);
+
+        // 生成连接ID，作为本次问答消息的分组标识
+        String connId = UUID.randomUUID().toString();
+        requestAi.setConnId(connId);
+
+        Flux<ServerSentEvent<ResponseAi>> connected = Flux.just(ServerSentEvent.<ResponseAi>builder()
+                .id(connId)
+                .event("connected")
+                .build());
+        Flux<ServerSentEvent<ResponseAi>> events = connected.concatWith(intentBasedRequestContext.handleRequestFlux(requestAi)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(connId)
+                        .event("message")
+                        .retry(Duration.ofSeconds(1))
+                        .build()));
+
+        // 与/chat共用租户许可，订阅时非阻塞获取，事件流结束、出错或客户端断开时释放
+        String tenant = tenantConcurrencyLimiter.currentTenant();
+        return Mono.fromCallable(() -> tenantConcurrencyLimiter.tryAcquire(tenant))
+                .flatMapMany(permit -> events.doFinally(signal -> permit.release()))
+                .switchIfEmpty(Flux.just(ServerSentEvent.builder(ResponseAi.ofError("当前并发对话数过多，请稍后再试"))
+                        .id(connId)
+                        .event("error")
+                        .build()));
+    }
 }
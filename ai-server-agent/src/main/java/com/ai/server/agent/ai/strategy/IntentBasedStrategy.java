@@ -1,6 +1,8 @@
 package com.ai.server.agent.ai.strategy;
 
 import com.ai.server.agent.ai.rest.request.RequestAi;
+import com.ai.server.agent.ai.rest.response.ResponseAi;
+import reactor.core.publisher.Flux;
 
 /**
  * 基于意图的聊天请求处理策略接口
@@ -15,6 +17,26 @@ public interface IntentBasedStrategy {
      * @throws Exception 处理异常
      */
     void handleRequest(RequestAi requestAi, String intent);
+
+    /**
+     * 响应式处理聊天请求，返回推送给前端的事件流
+     * 不支持响应式处理的策略返回错误事件，调用方应改用handleRequest
+     * @param requestAi 请求参数
+     * @param intent 识别出的意图
+     * @return 事件流
+     */
+    default Flux<ResponseAi> handleRequestFlux(RequestAi requestAi, String intent) {
+        return Flux.just(ResponseAi.ofError("该意图暂不支持响应式接口"));
+    }
+    
+    /**
+     * 在意图识别完成前推测执行该策略，输出暂存，由调用方在意图确认后采用或取消
+     * @param requestAi 请求参数
+     * @return 推测执行，不支持推测执行的策略返回null
+     */
+    default IntentSpeculation speculate(RequestAi requestAi) {
+        return null;
+    }
     
     /**
      * 判断是否支持当前意图
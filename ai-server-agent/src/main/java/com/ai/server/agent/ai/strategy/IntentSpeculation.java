@@ -0,0 +1,166 @@
+package com.ai.server.agent.ai.strategy;
+
+import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
+import com.ai.server.agent.ai.rest.response.ResponseAi;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 意图识别期间推测执行的策略
+ * 模型输出先暂存，意图确认与推测一致时采用：按序推送暂存内容并转为直接推送；不一致时取消订阅并丢弃
+ * 推测执行不写入聊天记忆，采用且回答完整结束后通过提交回调写入
+ */
+@Slf4j
+public class IntentSpeculation {
+
+    private final IntentBasedStrategy strategy;
+    private final String connId;
+    private final AiGlobalSseEmitterManager sseEmitterManager;
+    // 采用时先于回答推送的事件，与策略正常执行时的提示保持一致
+    private final List<ResponseAi> leadingEvents;
+    private final Consumer<String> commitCallback;
+
+    private final Object lock = new Object();
+    private final List<String> bufferedChunks = new ArrayList<>();
+    private final StringBuilder answer = new StringBuilder();
+    private boolean adopted;
+    private boolean cancelled;
+    private boolean finished;
+    private Throwable error;
+    private long firstChunkNanos;
+    private Disposable subscription;
+
+    public IntentSpeculation(IntentBasedStrategy strategy, String connId, AiGlobalSseEmitterManager sseEmitterManager,
+                             List<ResponseAi> leadingEvents, Consumer<String> commitCallback) {
+        this.strategy = strategy;
+        this.connId = connId;
+        this.sseEmitterManager = sseEmitterManager;
+        this.leadingEvents = leadingEvents;
+        this.commitCallback = commitCallback;
+    }
+
+    /**
+     * 订阅模型输出，开始推测执行
+     * @param source 模型输出
+     */
+    public void start(Flux<String> source) {
+        Disposable disposable = source.subscribe(this::onChunk, this::onError, this::onComplete);
+        synchronized (lock) {
+            if (cancelled) {
+                disposable.dispose();
+            } else {
+                subscription = disposable;
+            }
+        }
+    }
+
+    public IntentBasedStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 采用推测结果：推送暂存的输出，之后的输出直接推送
+     * @return 采用时是否已收到模型输出
+     */
+    public boolean adopt() {
+        synchronized (lock) {
+            if (cancelled || adopted) {
+                return false;
+            }
+            adopted = true;
+            for (ResponseAi event : leadingEvents) {
+                sseEmitterManager.sendEvent(connId, event);
+            }
+            for (String chunk : bufferedChunks) {
+                sseEmitterManager.sendEvent(connId, ResponseAi.ofMessage(chunk));
+            }
+            bufferedChunks.clear();
+            if (finished) {
+                finish();
+            }
+            return firstChunkNanos != 0;
+        }
+    }
+
+    /**
+     * 取消推测执行，丢弃已暂存的输出
+     */
+    public void cancel() {
+        Disposable disposable;
+        synchronized (lock) {
+            if (adopted || cancelled) {
+                return;
+            }
+            cancelled = true;
+            bufferedChunks.clear();
+            answer.setLength(0);
+            disposable = subscription;
+        }
+        if (disposable != null) {
+            disposable.dispose();
+        }
+    }
+
+    private void onChunk(String chunk) {
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            if (firstChunkNanos == 0) {
+                firstChunkNanos = System.nanoTime();
+            }
+            answer.append(chunk);
+            if (adopted) {
+                sseEmitterManager.sendEvent(connId, ResponseAi.ofMessage(chunk));
+            } else {
+                bufferedChunks.add(chunk);
+            }
+        }
+    }
+
+    private void onError(Throwable e) {
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            log.error("推测执行的流式聊天发生错误，连接ID: {}", connId, e);
+            error = e;
+            finished = true;
+            if (adopted) {
+                finish();
+            }
+        }
+    }
+
+    private void onComplete() {
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            finished = true;
+            if (adopted) {
+                finish();
+            }
+        }
+    }
+
+    /**
+     * 回答结束：完整回答写入聊天记忆，并通知SSE管理器结束本次流式回答
+     */
+    private void finish() {
+        if (error == null) {
+            try {
+                commitCallback.accept(answer.toString());
+            } catch (Exception e) {
+                log.error("提交推测执行结果到聊天记忆失败，连接ID: {}", connId, e);
+            }
+            log.info("已完成推测执行的流式响应，连接ID: {}", connId);
+        }
+        sseEmitterManager.completeMessageStream(connId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+import cn.hutool.core.convert.Convert;
+
+import java.util.regex.Pattern;
+
+/**
+ * 意图缓存的消息归一化
+ * 全角转半角、转小写、日期字面量替换为占位符、去除标点和空白，使同义的提问得到相同的缓存键
+ */
+public final class IntentMessageNormalizer {
+
+    // 日期占位符，在转小写之后替换，不会与用户输入的小写字母冲突
+    private static final String DATE_PLACEHOLDER = "DATE";
+
+    // 数字日期：2024-01-01、2024/1/1、2024.01.01、2024年1月1日、2024年1月、1月1日、1月、2024年
+    private static final Pattern NUMERIC_DATE = Pattern.compile(
+            "\\d{4}[-/.]\\d{1,2}([-/.]\\d{1,2})?"
+                    + "|\\d{4}年(\\d{1,2}月(\\d{1,2}[日号])?)?"
+                    + "|\\d{1,2}月(\\d{1,2}[日号])?"
+                    + "|\\d{1,2}[日号]");
+
+    // 相对日期
+    private static final Pattern RELATIVE_DATE = Pattern.compile(
+            "今天|今日|昨天|昨日|前天|明天|后天|本周|上周|下周|本月|上月|下月|上个月|下个月|本季度|上季度|今年|去年|明年|前年");
+
+    // 标点、符号和空白
+    private static final Pattern PUNCTUATION_AND_SPACE = Pattern.compile("[\\p{P}\\p{S}\\s]+");
+
+    private IntentMessageNormalizer() {
+    }
+
+    /**
+     * 归一化用户消息
+     * @param message 用户消息
+     * @return 归一化后的消息
+     */
+    public static String normalize(String message) {
+        if (message == null) {
+            return "";
+        }
+        String normalized = Convert.toDBC(message).toLowerCase();
+        normalized = NUMERIC_DATE.matcher(normalized).replaceAll(DATE_PLACEHOLDER);
+        normalized = RELATIVE_DATE.matcher(normalized).replaceAll(DATE_PLACEHOLDER);
+        return PUNCTUATION_AND_SPACE.matcher(normalized).replaceAll("");
+    }
+}
@@ -0,0 +1,16 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+/**
+ * 本地意图预分类器
+ * 在调用大模型识别意图前执行，只对有把握的消息给出结果，其余交由大模型识别
+ * 多个实现按@Order顺序执行，第一个达到置信度要求的结果生效
+ */
+public interface IntentPreClassifier {
+
+    /**
+     * 对用户消息进行分类
+     * @param message 用户消息
+     * @return 分类结果，无法判断时返回null
+     */
+    IntentPrediction classify(String message);
+}
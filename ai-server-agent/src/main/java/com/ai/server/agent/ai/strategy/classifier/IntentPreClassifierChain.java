@@ -0,0 +1,68 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+import com.ai.server.agent.ai.config.IntentClassifierProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地意图预分类链
+ * 按顺序执行所有预分类器，返回第一个达到置信度要求的结果，并统计本地命中和回退到大模型的次数
+ */
+@Slf4j
+@Component
+public class IntentPreClassifierChain {
+
+    @Autowired
+    private List<IntentPreClassifier> classifiers;
+
+    @Autowired
+    private IntentClassifierProperties intentClassifierProperties;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * 本地分类
+     * @param message 用户消息
+     * @return 达到置信度要求的结果，没有时返回null，调用方应使用大模型识别
+     */
+    public IntentPrediction classify(String message) {
+        if (!intentClassifierProperties.isEnabled() || message == null || message.isEmpty()) {
+            return null;
+        }
+        double minConfidence = intentClassifierProperties.getMinConfidence();
+        for (IntentPreClassifier classifier : classifiers) {
+            try {
+                IntentPrediction prediction = classifier.classify(message);
+                if (prediction != null && prediction.getConfidence() >= minConfidence) {
+                    localHits.increment();
+                    return prediction;
+                }
+            } catch (Exception e) {
+                log.warn("意图预分类失败，分类器: {}, 错误: {}", classifier.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    /**
+     * 统计快照
+     * @return 统计项
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = localHits.sum();
+        long total = hits + fallbacks.sum();
+        stats.put("localHits", hits);
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("localHitRate", total == 0 ? 0 : (double) hits / total);
+        return stats;
+    }
+}
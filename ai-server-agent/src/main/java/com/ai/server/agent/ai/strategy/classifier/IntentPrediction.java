@@ -0,0 +1,29 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 本地意图预分类结果
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class IntentPrediction {
+
+    /**
+     * 意图
+     */
+    private final String intent;
+
+    /**
+     * 置信度，取值0~1
+     */
+    private final double confidence;
+
+    /**
+     * 给出结果的分类器
+     */
+    private final String classifier;
+}
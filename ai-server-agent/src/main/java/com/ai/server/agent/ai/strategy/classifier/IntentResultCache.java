@@ -0,0 +1,165 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.SecureUtil;
+import com.ai.server.agent.ai.agent.constant.AgentType;
+import com.ai.server.agent.ai.agent.dynamic.AgentReloadedEvent;
+import com.ai.server.agent.ai.common.vector.SimilarQuestionIndex;
+import com.ai.server.agent.ai.config.IntentClassifierProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 大模型意图识别结果缓存
+ * 缓存键为配置版本加归一化消息的摘要，SYSTEM Agent重新加载后版本递增，旧版本的结果不再命中
+ * 启用相似问题索引时，精确匹配未命中再查找相似的历史问题
+ */
+@Slf4j
+@Component
+public class IntentResultCache {
+
+    @Autowired
+    private IntentClassifierProperties intentClassifierProperties;
+
+    @Autowired
+    private SimilarQuestionIndex similarQuestionIndex;
+
+    // SYSTEM Agent的配置版本，作为缓存键的命名空间
+    private final AtomicLong configVersion = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile CacheHolder holder;
+
+    /**
+     * 计算缓存键，查询前计算并在写入时复用，避免识别期间配置变更后把旧结果写入新版本
+     * @param message 用户消息
+     * @return 缓存键，未启用时返回null
+     */
+    public String keyOf(String message) {
+        if (!intentClassifierProperties.getCache().isEnabled() || message == null) {
+            return null;
+        }
+        return configVersion.get() + ":" + SecureUtil.md5(IntentMessageNormalizer.normalize(message));
+    }
+
+    /**
+     * 查询缓存的意图
+     * @param key 缓存键
+     * @param message 用户消息，精确匹配未命中时用于查找相似问题
+     * @return 意图，未命中或未启用时返回null
+     */
+    public String get(String key, String message) {
+        IntentClassifierProperties.Cache config = intentClassifierProperties.getCache();
+        if (!config.isEnabled() || key == null) {
+            return null;
+        }
+        String intent = cache(config).get(key, false);
+        if (intent != null) {
+            hits.increment();
+            return intent;
+        }
+        intent = similarQuestionIndex.findSimilar(SimilarQuestionIndex.INTENT, message, payload -> true);
+        if (intent != null) {
+            similarHits.increment();
+        } else {
+            misses.increment();
+        }
+        return intent;
+    }
+
+    /**
+     * 缓存大模型识别出的意图
+     * @param key 查询时计算的缓存键
+     * @param message 用户消息
+     * @param intent 意图
+     */
+    public void put(String key, String message, String intent) {
+        IntentClassifierProperties.Cache config = intentClassifierProperties.getCache();
+        if (!config.isEnabled() || key == null || intent == null || intent.isEmpty()) {
+            return;
+        }
+        cache(config).put(key, intent);
+        // 相似问题索引不区分版本，识别期间配置已变更的结果不写入
+        if (key.startsWith(configVersion.get() + ":")) {
+            similarQuestionIndex.add(SimilarQuestionIndex.INTENT, message, intent);
+        }
+    }
+
+    /**
+     * SYSTEM Agent配置变更后切换命名空间并清空旧结果
+     */
+    @EventListener
+    public void onAgentReloaded(AgentReloadedEvent event) {
+        if (!AgentType.SYSTEM.equals(event.getAgentName())) {
+            return;
+        }
+        long version = configVersion.incrementAndGet();
+        invalidations.increment();
+        CacheHolder current = this.holder;
+        if (current != null) {
+            current.cache.clear();
+        }
+        similarQuestionIndex.clear(SimilarQuestionIndex.INTENT);
+        log.info("SYSTEM Agent已重新加载，意图缓存切换到版本: {}", version);
+    }
+
+    /**
+     * 统计快照
+     * @return 统计项
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum() + similarHits.sum();
+        long total = hitCount + misses.sum();
+        CacheHolder current = this.holder;
+        stats.put("hits", hits.sum());
+        stats.put("similarHits", similarHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0 : (double) hitCount / total);
+        stats.put("size", current != null ? current.cache.size() : 0);
+        stats.put("configVersion", configVersion.get());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 获取缓存，容量或有效期配置变化时重建
+     */
+    private LRUCache<String, String> cache(IntentClassifierProperties.Cache config) {
+        CacheHolder current = this.holder;
+        if (current == null || current.capacity != config.getCapacity() || current.ttlMs != config.getTtlMs()) {
+            synchronized (this) {
+                current = this.holder;
+                if (current == null || current.capacity != config.getCapacity() || current.ttlMs != config.getTtlMs()) {
+                    current = new CacheHolder(config.getCapacity(), config.getTtlMs());
+                    this.holder = current;
+                }
+            }
+        }
+        return current.cache;
+    }
+
+    private static class CacheHolder {
+        private final int capacity;
+        private final long ttlMs;
+        private final LRUCache<String, String> cache;
+
+        CacheHolder(int capacity, long ttlMs) {
+            this.capacity = capacity;
+            this.ttlMs = ttlMs;
+            this.cache = CacheUtil.newLRUCache(Math.max(1, capacity), ttlMs);
+        }
+    }
+}
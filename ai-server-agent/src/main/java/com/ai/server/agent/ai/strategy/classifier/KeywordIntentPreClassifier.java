@@ -0,0 +1,87 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+import com.ai.server.agent.ai.config.IntentClassifierProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 关键词/正则规则预分类器
+ * 规则来自chat.intent-classifier.rules，配置刷新后重新编译
+ */
+@Slf4j
+@Component
+@Order(1)
+public class KeywordIntentPreClassifier implements IntentPreClassifier {
+
+    @Autowired
+    private IntentClassifierProperties intentClassifierProperties;
+
+    // 已编译的规则及其对应的配置列表，配置列表变化时重新编译
+    private volatile CompiledRules compiledRules = new CompiledRules(null, Collections.emptyList());
+
+    @Override
+    public IntentPrediction classify(String message) {
+        for (CompiledRule rule : currentRules()) {
+            if (rule.pattern.matcher(message).find()) {
+                return new IntentPrediction(rule.intent, 1.0, "keyword");
+            }
+        }
+        return null;
+    }
+
+    private List<CompiledRule> currentRules() {
+        List<IntentClassifierProperties.Rule> rules = intentClassifierProperties.getRules();
+        CompiledRules compiled = this.compiledRules;
+        if (compiled.source != rules) {
+            compiled = new CompiledRules(rules, compile(rules));
+            this.compiledRules = compiled;
+        }
+        return compiled.rules;
+    }
+
+    private static List<CompiledRule> compile(List<IntentClassifierProperties.Rule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<CompiledRule> compiled = new ArrayList<>(rules.size());
+        for (IntentClassifierProperties.Rule rule : rules) {
+            if (rule.getIntent() == null || rule.getPattern() == null) {
+                continue;
+            }
+            try {
+                compiled.add(new CompiledRule(rule.getIntent(), Pattern.compile(rule.getPattern())));
+            } catch (PatternSyntaxException e) {
+                log.warn("意图规则正则表达式无效，已忽略，意图: {}, 表达式: {}", rule.getIntent(), rule.getPattern());
+            }
+        }
+        return compiled;
+    }
+
+    private static class CompiledRules {
+        private final List<IntentClassifierProperties.Rule> source;
+        private final List<CompiledRule> rules;
+
+        CompiledRules(List<IntentClassifierProperties.Rule> source, List<CompiledRule> rules) {
+            this.source = source;
+            this.rules = rules;
+        }
+    }
+
+    private static class CompiledRule {
+        private final String intent;
+        private final Pattern pattern;
+
+        CompiledRule(String intent, Pattern pattern) {
+            this.intent = intent;
+            this.pattern = pattern;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.ai.server.agent.ai.strategy.classifier;
+
+import com.ai.server.agent.ai.common.sse.entity.SseMessage;
+import com.ai.server.agent.ai.common.sse.repository.SseMessageRepository;
+import com.ai.server.agent.ai.config.IntentClassifierProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 字符n-gram朴素贝叶斯预分类器
+ * 训练样本来自sse_message：大模型识别出的意图以intent类型记录，与同一连接的user类型消息配对
+ * 模型在后台定期重新训练，训练期间继续使用旧模型
+ * 1..n的重叠n-gram彼此不独立，直接相乘的后验概率对几乎任何输入都接近1，因此：
+ * 1. 消息中在训练样本里出现过的特征占比低于minCoverage时不作判断，与训练样本差异较大的消息交由大模型识别
+ * 2. 置信度按每个已知特征的平均对数似然计算，不随特征数量膨胀
+ */
+@Slf4j
+@Component
+@Order(2)
+public class NgramIntentPreClassifier implements IntentPreClassifier {
+
+    /**
+     * 记录大模型意图识别结果的消息类型
+     */
+    public static final String LABEL_MESSAGE_TYPE = "intent";
+
+    private static final String USER_MESSAGE_TYPE = "user";
+
+    // 用户消息以ResponseAi的toString形式存储
+    private static final String USER_CONTENT_PREFIX = "ResponseAi(answer=";
+    private static final String USER_CONTENT_SUFFIX = ", event=";
+
+    // 参与训练和分类的消息最大字符数
+    private static final int MAX_MESSAGE_CHARS = 200;
+
+    // 意图标识的最大长度，超出视为大模型输出异常，不作为样本
+    private static final int MAX_INTENT_LENGTH = 64;
+
+    @Autowired
+    private IntentClassifierProperties intentClassifierProperties;
+
+    @Autowired
+    private SseMessageRepository sseMessageRepository;
+
+    @Autowired
+    @Qualifier("intentTrainingScheduler")
+    private ThreadPoolTaskScheduler intentTrainingScheduler;
+
+    private volatile Model model;
+
+    private volatile long lastTrainMillis;
+
+    private final AtomicBoolean training = new AtomicBoolean(false);
+
+    @Override
+    public IntentPrediction classify(String message) {
+        IntentClassifierProperties.Ngram config = intentClassifierProperties.getNgram();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        retrainIfStale(config);
+        Model current = this.model;
+        if (current == null || current.samples < config.getMinSamples()) {
+            return null;
+        }
+        return current.predict(normalize(message), config.getSize(), config.getMinCoverage());
+    }
+
+    /**
+     * 模型过期时在独立的训练线程中重新训练
+     */
+    private void retrainIfStale(IntentClassifierProperties.Ngram config) {
+        if (System.currentTimeMillis() - lastTrainMillis < config.getRetrainIntervalMs()
+                || !training.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            intentTrainingScheduler.execute(() -> {
+                try {
+                    train(config);
+                } finally {
+                    lastTrainMillis = System.currentTimeMillis();
+                    training.set(false);
+                }
+            });
+        } catch (Exception e) {
+            training.set(false);
+            log.warn("提交意图模型训练任务失败: {}", e.getMessage());
+        }
+    }
+
+    private void train(IntentClassifierProperties.Ngram config) {
+        long start = System.currentTimeMillis();
+        List<SseMessage> labels = sseMessageRepository.findRecentByMessageType(LABEL_MESSAGE_TYPE, config.getMaxSamples());
+        if (labels.isEmpty()) {
+            return;
+        }
+        Map<String, String> intentByConnId = new HashMap<>(labels.size() * 2);
+        for (SseMessage label : labels) {
+            String intent = label.getMessageContent() != null ? label.getMessageContent().trim() : null;
+            if (intent != null && !intent.isEmpty() && intent.length() <= MAX_INTENT_LENGTH) {
+                intentByConnId.putIfAbsent(label.getConnectId(), intent);
+            }
+        }
+        // 同一连接只有一条用户消息，但未识别意图的连接也有用户消息，多取一些以覆盖配对
+        List<SseMessage> userMessages = sseMessageRepository.findRecentByMessageType(USER_MESSAGE_TYPE, config.getMaxSamples() * 2);
+        Trainer trainer = new Trainer(config.getSize());
+        for (SseMessage userMessage : userMessages) {
+            String intent = intentByConnId.get(userMessage.getConnectId());
+            String text = extractUserText(userMessage.getMessageContent());
+            if (intent != null && text != null && !text.isEmpty()) {
+                trainer.add(normalize(text), intent);
+            }
+        }
+        Model trained = trainer.build();
+        this.model = trained;
+        log.info("意图n-gram模型训练完成，样本数: {}, 意图数: {}, 特征数: {}, 耗时: {}ms",
+                trained.samples, trained.intents.length, trained.logLikelihoods.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 从存储内容中取出用户消息文本
+     */
+    static String extractUserText(String content) {
+        if (content == null) {
+            return null;
+        }
+        if (content.startsWith(USER_CONTENT_PREFIX)) {
+            int end = content.lastIndexOf(USER_CONTENT_SUFFIX);
+            if (end > USER_CONTENT_PREFIX.length()) {
+                return content.substring(USER_CONTENT_PREFIX.length(), end);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * 去除空白并转为小写，截取前MAX_MESSAGE_CHARS个字符
+     */
+    private static String normalize(String message) {
+        StringBuilder normalized = new StringBuilder(Math.min(message.length(), MAX_MESSAGE_CHARS));
+        for (int i = 0; i < message.length() && normalized.length() < MAX_MESSAGE_CHARS; i++) {
+            char c = message.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * 提取1到size长度的字符n-gram，同一消息中重复的特征只计一次
+     */
+    private static Set<String> features(String text, int size) {
+        Set<String> features = new HashSet<>();
+        for (int n = 1; n <= size; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                features.add(text.substring(i, i + n));
+            }
+        }
+        return features;
+    }
+
+    /**
+     * 训练时的计数器
+     */
+    private static class Trainer {
+        private final int size;
+        private final Map<String, Integer> intentIndex = new HashMap<>();
+        private final List<String> intents = new ArrayList<>();
+        private final List<int[]> docCounts = new ArrayList<>();
+        private final Map<String, Map<Integer, Integer>> featureCounts = new HashMap<>();
+        private final List<long[]> featureTotals = new ArrayList<>();
+        private int samples;
+
+        Trainer(int size) {
+            this.size = Math.max(1, size);
+        }
+
+        void add(String text, String intent) {
+            int index = intentIndex.computeIfAbsent(intent, key -> {
+                intents.add(key);
+                docCounts.add(new int[1]);
+                featureTotals.add(new long[1]);
+                return intents.size() - 1;
+            });
+            docCounts.get(index)[0]++;
+            for (String feature : features(text, size)) {
+                featureCounts.computeIfAbsent(feature, key -> new HashMap<>()).merge(index, 1, Integer::sum);
+                featureTotals.get(index)[0]++;
+            }
+            samples++;
+        }
+
+        Model build() {
+            int classes = intents.size();
+            int vocabulary = featureCounts.size();
+            double[] logPriors = new double[classes];
+            for (int c = 0; c < classes; c++) {
+                logPriors[c] = Math.log((double) docCounts.get(c)[0] / samples);
+            }
+            // 拉普拉斯平滑
+            Map<String, double[]> logLikelihoods = new HashMap<>(vocabulary * 2);
+            for (Map.Entry<String, Map<Integer, Integer>> entry : featureCounts.entrySet()) {
+                double[] values = new double[classes];
+                for (int c = 0; c < classes; c++) {
+                    int count = entry.getValue().getOrDefault(c, 0);
+                    values[c] = Math.log((count + 1.0) / (featureTotals.get(c)[0] + vocabulary));
+                }
+                logLikelihoods.put(entry.getKey(), values);
+            }
+            return new Model(intents.toArray(new String[0]), logPriors, logLikelihoods, samples);
+        }
+    }
+
+    /**
+     * 训练完成的模型，不可变
+     */
+    private static class Model {
+        private final String[] intents;
+        private final double[] logPriors;
+        private final Map<String, double[]> logLikelihoods;
+        private final int samples;
+
+        Model(String[] intents, double[] logPriors, Map<String, double[]> logLikelihoods, int samples) {
+            this.intents = intents;
+            this.logPriors = logPriors;
+            this.logLikelihoods = logLikelihoods;
+            this.samples = samples;
+        }
+
+        IntentPrediction predict(String text, int size, double minCoverage) {
+            // 只有一种意图时无法区分，交由大模型识别
+            if (intents.length < 2 || text.isEmpty()) {
+                return null;
+            }
+            double[] scores = new double[intents.length];
+            Set<String> features = features(text, size);
+            int known = 0;
+            for (String feature : features) {
+                double[] values = logLikelihoods.get(feature);
+                if (values == null) {
+                    continue;
+                }
+                known++;
+                for (int c = 0; c < scores.length; c++) {
+                    scores[c] += values[c];
+                }
+            }
+            // 已知特征占比过低说明消息与训练样本差异较大，结果不可信
+            if (known == 0 || (double) known / features.size() < minCoverage) {
+                return null;
+            }
+            // 按已知特征数取平均后再加先验，相当于按单个特征的几何平均似然比较各意图
+            for (int c = 0; c < scores.length; c++) {
+                scores[c] = logPriors[c] + scores[c] / known;
+            }
+            int best = 0;
+            for (int c = 1; c < scores.length; c++) {
+                if (scores[c] > scores[best]) {
+                    best = c;
+                }
+            }
+            double sum = 0;
+            for (double score : scores) {
+                sum += Math.exp(score - scores[best]);
+            }
+            return new IntentPrediction(intents[best], 1.0 / sum, "ngram");
+        }
+    }
+}
@@ -8,17 +8,34 @@ import com.ai.server.agent.ai.agent.constant.AgentType;
 import com.ai.server.agent.ai.agent.core.Agent;
 import com.ai.server.agent.ai.agent.factory.AgentFactory;
 
+import com.ai.server.agent.ai.common.executor.RequestContextSnapshot;
 import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
+import com.ai.server.agent.ai.config.ChatSpeculationProperties;
+import com.ai.server.agent.ai.config.SseProperties;
+import com.ai.server.agent.ai.constant.ResponseEventConstant;
+import com.ai.server.agent.ai.util.ChatResponseToEntity;
 import com.ai.server.agent.ai.constant.AgentTypeConstant;
 import com.ai.server.agent.ai.interceptor.UserContextHolder;
 import com.ai.server.agent.ai.strategy.IntentBasedStrategy;
+import com.ai.server.agent.ai.strategy.IntentSpeculation;
+import com.ai.server.agent.ai.strategy.classifier.IntentPreClassifierChain;
+import com.ai.server.agent.ai.strategy.classifier.IntentPrediction;
+import com.ai.server.agent.ai.strategy.classifier.IntentResultCache;
+import com.ai.server.agent.ai.strategy.classifier.NgramIntentPreClassifier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.stream.Collectors;
 
 
 /**
@@ -36,6 +53,16 @@ public class IntentBasedRequestContext {
     private AgentFactory agentFactory;
     @Autowired
     private AiGlobalSseEmitterManager sseEmitterManager;
+    @Autowired
+    private SseProperties sseProperties;
+    @Autowired
+    private ChatSpeculationProperties chatSpeculationProperties;
+    @Autowired
+    private IntentSpeculationStats intentSpeculationStats;
+    @Autowired
+    private IntentPreClassifierChain intentPreClassifierChain;
+    @Autowired
+    private IntentResultCache intentResultCache;
 
     /**
      * 处理聊天请求
@@ -77,18 +104,214 @@ public class IntentBasedRequestContext {
         }
         
         sseEmitterManager.sendEvent(requestAi.getConnId(), ResponseAi.ofLog("意图识别："));
-        // 使用SystemAgent进行意图识别
-        String intent = determineIntent(requestAi);
+        // 依次使用缓存的识别结果和本地预分类，都没有把握时才调用大模型识别意图
+        String cacheKey = intentResultCache.keyOf(message);
+        String cachedIntent = intentResultCache.get(cacheKey, message);
+        IntentPrediction prediction = cachedIntent == null ? intentPreClassifierChain.classify(message) : null;
+        // 推测执行最可能的策略，与意图识别并行
+        IntentSpeculation speculation = cachedIntent == null && prediction == null ? startSpeculation(requestAi) : null;
+        long intentStart = System.nanoTime();
+        String intent;
+        try {
+            if (cachedIntent != null) {
+                intent = cachedIntent;
+                log.info("意图缓存命中：{}", intent);
+            } else if (prediction != null) {
+                intent = prediction.getIntent();
+                log.info("本地意图预分类结果：{}", prediction);
+            } else {
+                // 使用SystemAgent进行意图识别，结果作为预分类模型的训练样本记录
+                intent = determineIntent(requestAi);
+                recordIntentLabel(connId, intent);
+                intentResultCache.put(cacheKey, message, intent);
+            }
+        } catch (RuntimeException e) {
+            if (speculation != null) {
+                speculation.cancel();
+            }
+            throw e;
+        }
+        long intentMillis = (System.nanoTime() - intentStart) / 1_000_000;
         // 根据意图选择合适的策略
         IntentBasedStrategy strategy = selectStrategy(intent, requestAi);
+        if (speculation != null && resolveSpeculation(speculation, strategy, intentMillis)) {
+            return;
+        }
         if (strategy != null) {
             log.info("选择策略：{}", strategy.getClass().getSimpleName());
             strategy.handleRequest(requestAi, intent);
         } else {
             log.warn("未找到合适的策略处理意图：{}", intent);
             sseEmitterManager.sendEvent(requestAi.getConnId(), ResponseAi.ofError("未找到合适的处理策略"));
+            // 没有回答流，直接标记本次回答结束
+            sseEmitterManager.completeMessageStream(requestAi.getConnId());
+        }
+
+    }
+
+    /**
+     * 按配置的推测意图启动推测执行
+     * @return 推测执行，未启用或策略不支持时返回null
+     */
+    private IntentSpeculation startSpeculation(RequestAi requestAi) {
+        if (!chatSpeculationProperties.isEnabled()) {
+            return null;
+        }
+        IntentBasedStrategy strategy = selectStrategy(chatSpeculationProperties.getIntent(), requestAi);
+        if (strategy == null) {
+            return null;
+        }
+        try {
+            IntentSpeculation speculation = strategy.speculate(requestAi);
+            if (speculation != null) {
+                intentSpeculationStats.recordAttempt();
+            }
+            return speculation;
+        } catch (Exception e) {
+            log.warn("启动推测执行失败，将按意图识别结果执行：{}", e.getMessage());
+            return null;
         }
+    }
 
+    /**
+     * 意图确认后处理推测执行：策略一致时采用，否则取消
+     * @return 是否已采用推测结果
+     */
+    private boolean resolveSpeculation(IntentSpeculation speculation, IntentBasedStrategy strategy, long intentMillis) {
+        if (speculation.getStrategy() == strategy && strategy != null) {
+            speculation.adopt();
+            // 推测执行与意图识别同时开始，节省的等待时间即意图识别耗时
+            intentSpeculationStats.recordHit(intentMillis);
+            log.info("推测执行命中，策略：{}，节省等待：{}ms，累计命中率：{}",
+                    strategy.getClass().getSimpleName(), intentMillis, String.format("%.2f", intentSpeculationStats.getHitRate()));
+            return true;
+        }
+        speculation.cancel();
+        intentSpeculationStats.recordMiss();
+        log.info("推测执行未命中，已取消，累计命中率：{}", String.format("%.2f", intentSpeculationStats.getHitRate()));
+        return false;
+    }
+
+    /**
+     * 响应式处理聊天请求
+     * 事件流直接由模型输出组合而成，按微批合并相邻的回答片段；持久化经内存缓冲旁路写入，整个过程不占用线程等待
+     *
+     * @param requestAi 请求参数，connId需已生成
+     * @return 推送给前端的事件流
+     */
+    public Flux<ResponseAi> handleRequestFlux(RequestAi requestAi) {
+        String connId = requestAi.getConnId();
+        // 后续阶段在Reactor线程中执行，需要恢复请求线程的用户上下文
+        RequestContextSnapshot snapshot = RequestContextSnapshot.capture();
+
+        // 建立会话映射并记录用户消息，会话表读写为阻塞操作，放到弹性线程中执行
+        Mono<Void> open = Mono.fromRunnable(snapshot.wrap(() -> {
+                    sseEmitterManager.openDetachedStream(connId, requestAi.getSessionId());
+                    sseEmitterManager.recordEvent(connId, "user", ResponseAi.ofUserMessage(requestAi.getMessage()));
+                }))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+
+        Flux<ResponseAi> events = Flux.concat(
+                Flux.just(ResponseAi.ofLog("意图识别：")),
+                determineIntentFlux(requestAi, snapshot).flatMapMany(intent -> {
+                    IntentBasedStrategy strategy = selectStrategy(intent, requestAi);
+                    if (strategy == null) {
+                        log.warn("未找到合适的策略处理意图：{}", intent);
+                        return Flux.just(ResponseAi.ofError("未找到合适的处理策略"));
+                    }
+                    log.info("选择策略：{}", strategy.getClass().getSimpleName());
+                    return Flux.defer(snapshot.wrapSupplier(() -> strategy.handleRequestFlux(requestAi, intent)));
+                }));
+
+        return open.thenMany(events)
+                .onErrorResume(e -> {
+                    log.error("响应式处理请求失败，connectionId: {}", connId, e);
+                    return Flux.just(ResponseAi.ofError("处理失败：" + e.getMessage()));
+                })
+                .bufferTimeout(Math.max(1, sseProperties.getFluxBatchSize()), Duration.ofMillis(sseProperties.getFluxBatchDelayMs()))
+                .flatMapIterable(IntentBasedRequestContext::coalesceMessages)
+                .doOnNext(event -> snapshot.wrap(() -> sseEmitterManager.recordEvent(connId, "message", event)).run())
+                .doFinally(signal -> {
+                    log.info("响应式请求结束，信号: {}, 连接ID: {}", signal, connId);
+                    sseEmitterManager.closeDetachedStream(connId);
+                });
+    }
+
+    /**
+     * 使用SystemAgent响应式识别意图，模型输出拼接完整后解析
+     * 缓存命中或本地预分类有把握时直接返回
+     */
+    private Mono<String> determineIntentFlux(RequestAi requestAi, RequestContextSnapshot snapshot) {
+        String cacheKey = intentResultCache.keyOf(requestAi.getMessage());
+        String cachedIntent = intentResultCache.get(cacheKey, requestAi.getMessage());
+        if (cachedIntent != null) {
+            log.info("意图缓存命中：{}", cachedIntent);
+            return Mono.just(cachedIntent);
+        }
+        IntentPrediction prediction = intentPreClassifierChain.classify(requestAi.getMessage());
+        if (prediction != null) {
+            log.info("本地意图预分类结果：{}", prediction);
+            return Mono.just(prediction.getIntent());
+        }
+        Agent.ChatRequest intentRequest = Agent.ChatRequest.builder()
+                .message(requestAi.getMessage())
+                .context(new HashMap<>())
+                .sessionId(requestAi.getSessionId())
+                .build();
+        return Flux.defer(snapshot.wrapSupplier(() -> {
+                    Agent<String> systemAgent = agentFactory.createAgent(AgentType.SYSTEM);
+                    return systemAgent.chatFlux(intentRequest);
+                }))
+                .collect(Collectors.joining())
+                .map(content -> {
+                    log.info("意图识别结果：{}", content);
+                    return normalizeIntent(ChatResponseToEntity.getJson(ThinkContentUtil.removeBeforeThink(content)));
+                })
+                .doOnNext(intent -> {
+                    snapshot.wrap(() -> recordIntentLabel(requestAi.getConnId(), intent)).run();
+                    intentResultCache.put(cacheKey, requestAi.getMessage(), intent);
+                });
+    }
+
+    /**
+     * 记录大模型识别出的意图，只持久化不推送，供本地预分类模型训练
+     */
+    private void recordIntentLabel(String connId, String intent) {
+        if (intent != null && !intent.isEmpty()) {
+            sseEmitterManager.recordEvent(connId, NgramIntentPreClassifier.LABEL_MESSAGE_TYPE, intent);
+        }
+    }
+
+    /**
+     * 合并一个微批中相邻的回答片段，减少推送和持久化的事件数
+     */
+    private static List<ResponseAi> coalesceMessages(List<ResponseAi> batch) {
+        if (batch.size() < 2) {
+            return batch;
+        }
+        List<ResponseAi> merged = new ArrayList<>(batch.size());
+        StringBuilder answer = null;
+        for (ResponseAi event : batch) {
+            boolean mergeable = ResponseEventConstant.AGENT_MESSAGE.equals(event.getEvent())
+                    && event.getAnswer() != null && event.getData() == null;
+            if (mergeable) {
+                if (answer == null) {
+                    answer = new StringBuilder();
+                }
+                answer.append(event.getAnswer());
+                continue;
+            }
+            if (answer != null) {
+                merged.add(ResponseAi.ofMessage(answer.toString()));
+                answer = null;
+            }
+            merged.add(event);
+        }
+        if (answer != null) {
+            merged.add(ResponseAi.ofMessage(answer.toString()));
+        }
+        return merged;
     }
 
     /**
@@ -108,8 +331,14 @@ public class IntentBasedRequestContext {
         Agent<String> systemAgent = agentFactory.createAgent(AgentType.SYSTEM);
         String intent = systemAgent.chat(intentRequest, AgentTypeConstant.SYS_DETERMIN_INTENT);
         log.info("意图识别结果：{}", intent);
-        String s = ThinkContentUtil.removeBeforeThink(intent);
-        return s.trim();
+        return normalizeIntent(intent);
+    }
+
+    /**
+     * 去除思考内容和首尾空白，得到意图标识
+     */
+    private static String normalizeIntent(String intent) {
+        return ThinkContentUtil.removeBeforeThink(intent).trim();
     }
 
     /**
@@ -0,0 +1,67 @@
+package com.ai.server.agent.ai.strategy.context;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 意图推测执行统计：命中率和节省的等待时间
+ */
+@Component
+public class IntentSpeculationStats {
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder savedMillis = new LongAdder();
+
+    /**
+     * 记录一次推测执行
+     */
+    public void recordAttempt() {
+        attempts.increment();
+    }
+
+    /**
+     * 记录一次命中
+     * @param saved 节省的等待时间（毫秒），即推测执行与意图识别重叠的时间
+     */
+    public void recordHit(long saved) {
+        hits.increment();
+        savedMillis.add(Math.max(0, saved));
+    }
+
+    /**
+     * 记录一次未命中
+     */
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * 命中率，未发生推测执行时返回0
+     * @return 命中率
+     */
+    public double getHitRate() {
+        long resolved = hits.sum() + misses.sum();
+        return resolved == 0 ? 0 : (double) hits.sum() / resolved;
+    }
+
+    /**
+     * 统计快照
+     * @return 统计项
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        stats.put("attempts", attempts.sum());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", getHitRate());
+        stats.put("savedMillis", savedMillis.sum());
+        stats.put("avgSavedMillis", hitCount == 0 ? 0 : savedMillis.sum() / hitCount);
+        return stats;
+    }
+}
@@ -4,12 +4,17 @@ import com.ai.server.agent.ai.rest.request.RequestAi;
 import com.ai.server.agent.ai.rest.response.ResponseAi;
 import com.ai.server.agent.ai.agent.core.Agent;
 import com.ai.server.agent.ai.agent.factory.AgentFactory;
+import com.ai.server.agent.ai.common.executor.RequestContextSnapshot;
 import com.ai.server.agent.ai.common.sse.AiGlobalSseEmitterManager;
 import com.ai.server.agent.ai.constant.IntentConstant;
 import com.ai.server.agent.ai.strategy.IntentBasedStrategy;
+import com.ai.server.agent.ai.strategy.IntentSpeculation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
 
 /**
  * 通用聊天策略实现
@@ -49,7 +54,49 @@ public class GeneralChatStrategy implements IntentBasedStrategy {
             } catch (Exception ex) {
                 log.error("发送错误信息失败", ex);
             }
+            // 未能发起流式回答，标记本次回答结束
+            sseEmitterManager.completeMessageStream(requestAi.getConnId());
+        }
+    }
+
+    @Override
+    public Flux<ResponseAi> handleRequestFlux(RequestAi requestAi, String intent) {
+        // 回答流在日志事件之后才订阅，订阅前被取消时不创建模型请求
+        RequestContextSnapshot snapshot = RequestContextSnapshot.capture();
+        return Flux.concat(
+                Flux.just(ResponseAi.ofLog("执行通用任务\n")),
+                Flux.defer(snapshot.wrapSupplier(() -> {
+                    Agent<Object> simpleChatClient = agentFactory.createAgentByName("simpleChatClient");
+                    Agent.Request request = Agent.ChatRequest.builder()
+                            .connId(requestAi.getConnId())
+                            .message(requestAi.getMessage())
+                            .context(new java.util.HashMap<>())
+                            .sessionId(requestAi.getSessionId())
+                            .build();
+                    return simpleChatClient.chatFlux(request);
+                })).map(ResponseAi::ofMessage));
+    }
+
+    @Override
+    public IntentSpeculation speculate(RequestAi requestAi) {
+        Agent<Object> simpleChatClient = agentFactory.createAgentByName("simpleChatClient");
+        Agent.Request request = Agent.ChatRequest.builder()
+                .connId(requestAi.getConnId())
+                .message(requestAi.getMessage())
+                .context(new java.util.HashMap<>())
+                .sessionId(requestAi.getSessionId())
+                .build();
+        Flux<String> source = simpleChatClient.speculativeFlux(request);
+        if (source == null) {
+            return null;
         }
+        // 提交记忆在模型输出线程中执行，需要恢复请求线程的用户上下文
+        RequestContextSnapshot snapshot = RequestContextSnapshot.capture();
+        IntentSpeculation speculation = new IntentSpeculation(this, requestAi.getConnId(), sseEmitterManager,
+                List.of(ResponseAi.ofLog("执行通用任务\n")),
+                answer -> snapshot.wrap(() -> simpleChatClient.commitSpeculation(request, answer)).run());
+        speculation.start(source);
+        return speculation;
     }
 
     @Override
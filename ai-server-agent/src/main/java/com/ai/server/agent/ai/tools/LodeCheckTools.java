@@ -1,6 +1,7 @@
 package com.ai.server.agent.ai.tools;
 
 import com.ai.server.agent.ai.common.data.DataSqlExec;
+import com.ai.server.agent.ai.common.data.TranscodeDictIndex;
 import com.ai.server.agent.ai.feign.dto.R;
 import com.alibaba.nacos.common.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +20,10 @@ public class LodeCheckTools {
 
     @Autowired
     private DataSqlExec dataSqlExec;
+
+    @Autowired
+    private TranscodeDictIndex transcodeDictIndex;
+
     private final String dictBaseSql = "select * from ai_transcode_dict where 1 = 1";
     @Tool(description = "查询组织机构编码字典")
     public String getOrgDict(
@@ -32,6 +37,9 @@ public class LodeCheckTools {
             likeValue = likeValue.replace("市","");
             likeValue = likeValue.replace("县","");
         }
+        if (transcodeDictIndex.isReady()){
+            return join(transcodeDictIndex.findByValueLike("管理单位", likeValue));
+        }
         if (StringUtils.isNotBlank(likeValue)){
             sql += " and dict_value like '"+likeValue+"'";
         }
@@ -43,6 +51,9 @@ public class LodeCheckTools {
     public String getChildOrgDict(
             @ToolParam(description = "父组织机构/管理单位编码")
             String parentCode){
+        if (transcodeDictIndex.isReady()){
+            return join(transcodeDictIndex.findChildren("管理单位", parentCode));
+        }
         String sql = dictBaseSql;
         sql += " and dict_type = '管理单位'";
         if (StringUtils.isNotBlank(parentCode)){
@@ -57,6 +68,9 @@ public class LodeCheckTools {
     public String getVoltageDict(
             @ToolParam(description = "模糊查询编码值(如:需要查询电压等级为220kv的编码，则输入'%220%")
             String likeValue){
+        if (transcodeDictIndex.isReady()){
+            return join(transcodeDictIndex.findByValueLike("电压等级kv", null));
+        }
         String sql = dictBaseSql;
         sql += " and dict_type = '电压等级kv'";
         log.info("查询Voltage字典sql:{}",sql);
@@ -67,6 +81,9 @@ public class LodeCheckTools {
     public String getIndustryDict(
             @ToolParam(description = "模糊查询编码值(如:需要查询行业为陶瓷制造业的编码，则输入'%陶瓷%'))")
             String likeValue){
+        if (transcodeDictIndex.isReady()){
+            return join(transcodeDictIndex.findByValueLike("行业编码", likeValue));
+        }
         String sql = dictBaseSql;
         sql += " and dict_type = '行业编码'";
         if (StringUtils.isNotBlank(likeValue)){
@@ -80,6 +97,10 @@ public class LodeCheckTools {
     public String getChildIndustryDict(
             @ToolParam(description = "父行业编码")
             String parentCode){
+        // 与SQL查询保持一致，按管理单位类型查询下级
+        if (transcodeDictIndex.isReady()){
+            return join(transcodeDictIndex.findChildren("管理单位", parentCode));
+        }
         String sql = dictBaseSql;
         sql += " and dict_type = '管理单位'";
         if (StringUtils.isNotBlank(parentCode)){
@@ -96,6 +117,9 @@ public class LodeCheckTools {
      * @return
      */
     public String getDictCode(String dictType,String dictCode){
+        if (transcodeDictIndex.isReady()){
+            return transcodeDictIndex.valueOf(dictType, dictCode);
+        }
         String sql = "select dict_value from ai_transcode_dict where 1 = 1";
         sql += " and dict_type = '"+dictType+"'";
         sql += " and dict_code = '"+dictCode+"'";
@@ -109,6 +133,14 @@ public class LodeCheckTools {
     }
 
 
+    private String join(List<TranscodeDictIndex.DictEntry> entries){
+        ArrayList<String> list = new ArrayList<>();
+        for (TranscodeDictIndex.DictEntry entry : entries) {
+            list.add(String.format("%s=%s",entry.getDictValue(),entry.getDictCode()));
+        }
+        return StringUtils.join(list, ",");
+    }
+
     private String getRes(String sql){
         R<List<Map<String, Object>>> select = dataSqlExec.runSql(sql);
         ArrayList<String> list = new ArrayList<>();
@@ -7,7 +7,11 @@ CREATE TABLE IF NOT EXISTS `agent_config` (
   `has_tools` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否使用工具，0=不使用，1=使用',
   `enabled` TINYINT(1) NOT NULL DEFAULT 1 COMMENT '是否启用，0=禁用，1=启用',
   `description` TEXT COMMENT 'Agent描述信息',
-  `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间（预留字段，未来可用于扩展）',
+  `sse_batch_max_bytes` INT NULL COMMENT 'SSE回答片段合并的字节上限，NULL表示使用全局配置',
+  `sse_batch_max_latency_ms` INT NULL COMMENT 'SSE回答片段合并的最长等待时间（毫秒），NULL表示使用全局配置',
+  `response_cache_enabled` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否缓存回答，仅适用于与用户无关的问答，0=不缓存，1=缓存',
+  `response_cache_ttl_seconds` INT NULL COMMENT '回答缓存有效期（秒），NULL表示使用全局配置',
+  `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间，用于配置变更检测',
   PRIMARY KEY (`agent_id`),
   UNIQUE KEY `uk_agent_name` (`agent_name`),
   CHECK (`agent_type` IN ('chat', 'stream'))